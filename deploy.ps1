@@ -1105,14 +1105,14 @@ try {
         Write-Host "⚠️ Maven wrapper script not found. Attempting to use system Maven..." -ForegroundColor Yellow
         if (Test-CommandExists "mvn") {
             Write-Host "Using system Maven to build the application..." -ForegroundColor Yellow
-            $buildCommand = "mvn clean package -DskipTests"
+            $buildCommand = "mvn -Pnative clean package -DskipTests"
         }
         else {
             Write-ErrorAndExit "Neither Maven wrapper nor system Maven found. Cannot build application."
         }
     }
     else {
-        $buildCommand = "./mvnw clean package -DskipTests"
+        $buildCommand = "./mvnw -Pnative clean package -DskipTests"
     }
     
     Write-Host "Starting build process (this may take a few minutes)..." -ForegroundColor Yellow
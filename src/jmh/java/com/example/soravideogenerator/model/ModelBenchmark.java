@@ -0,0 +1,83 @@
+package com.example.soravideogenerator.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Request parsing and the JSON (de)serialization done for every call to Azure
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ModelBenchmark {
+
+    private static final String RUNNING_JSON = """
+        {"object":"video.generation.job","id":"task_01jwcet0eje35tc5jy54yjax5q","status":"running",
+         "created_at":1748565890,"finished_at":null,"expires_at":null,"generations":[],
+         "prompt":"A cat playing piano in a jazz bar.","model":"sora","n_variants":1,"n_seconds":5,
+         "height":1080,"width":1080,"failure_reason":null}""";
+
+    private static final String SUCCEEDED_JSON = """
+        {"object":"video.generation.job","id":"task_01jwcet0eje35tc5jy54yjax5q","status":"succeeded",
+         "created_at":1748565890,"finished_at":1748566012,"expires_at":1748652412,
+         "generations":[{"object":"video.generation","id":"gen_01jwcev3gcee5bfqg4jzctnfjx",
+         "job_id":"task_01jwcet0eje35tc5jy54yjax5q","created_at":1748566012,"width":1080,"height":1080,
+         "n_seconds":5,"prompt":"A cat playing piano in a jazz bar."}],
+         "prompt":"A cat playing piano in a jazz bar.","model":"sora","n_variants":1,"n_seconds":5,
+         "height":1080,"width":1080,"failure_reason":null}""";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ObjectWriter requestWriter;
+    private ObjectReader responseReader;
+
+    private VideoRequest videoRequest;
+    private SoraApiRequest apiRequest;
+
+    @Setup
+    public void setUp() {
+        requestWriter = objectMapper.writerFor(SoraApiRequest.class);
+        responseReader = objectMapper.readerFor(SoraApiResponse.class);
+        videoRequest = new VideoRequest("A cat playing piano in a jazz bar.", "1920x1080", 10);
+        apiRequest = new SoraApiRequest(videoRequest.getPrompt(), videoRequest.getWidth(),
+                                        videoRequest.getHeight(), videoRequest.getDuration().toString());
+    }
+
+    @Benchmark
+    public void resolutionParsing(Blackhole blackhole) {
+        blackhole.consume(videoRequest.getWidth());
+        blackhole.consume(videoRequest.getHeight());
+    }
+
+    @Benchmark
+    public String serializeRequest() throws IOException {
+        return requestWriter.writeValueAsString(apiRequest);
+    }
+
+    @Benchmark
+    public SoraApiResponse deserializeRunning() throws IOException {
+        return responseReader.readValue(RUNNING_JSON);
+    }
+
+    @Benchmark
+    public SoraApiResponse deserializeSucceeded() throws IOException {
+        return responseReader.readValue(SUCCEEDED_JSON);
+    }
+}
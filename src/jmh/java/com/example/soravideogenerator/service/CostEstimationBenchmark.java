@@ -0,0 +1,83 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost estimation as done on every form submission: estimate, range, breakdown text and warning
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CostEstimationBenchmark {
+
+    // One fixed-price resolution, one variable-price resolution and the most expensive one
+    @Param({"480x480", "1080x1080", "1920x1080"})
+    private String resolution;
+
+    @Param({"5", "10"})
+    private int duration;
+
+    private final CostEstimationService costEstimationService = new CostEstimationService(new ObjectMapper(),
+        new ClassPathResource("pricing/sora-prices.json"));
+    private final BigDecimal estimatedCost = new BigDecimal("13.50");
+    private List<VideoRequest> batch;
+
+    @Setup
+    public void setUp() {
+        batch = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            batch.add(new VideoRequest("prompt " + i, resolution, duration));
+        }
+    }
+
+    @Benchmark
+    public BigDecimal estimate() {
+        return costEstimationService.calculateEstimatedCost(resolution, duration);
+    }
+
+    @Benchmark
+    public long estimateMicros() {
+        return costEstimationService.estimateMicros(resolution, duration);
+    }
+
+    @Benchmark
+    public Object estimateBatchOf100() {
+        return costEstimationService.estimateBatch(batch);
+    }
+
+    @Benchmark
+    public BigDecimal[] range() {
+        return costEstimationService.getCostRange(resolution, duration);
+    }
+
+    @Benchmark
+    public String breakdown() {
+        return costEstimationService.getCostBreakdown(resolution, duration);
+    }
+
+    @Benchmark
+    public String warning() {
+        return costEstimationService.getCostWarning(estimatedCost);
+    }
+}
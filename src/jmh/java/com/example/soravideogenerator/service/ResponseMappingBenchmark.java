@@ -0,0 +1,57 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.SoraApiResponse;
+import com.example.soravideogenerator.model.VideoResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of Azure job responses to the API model, for running and finished jobs
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseMappingBenchmark {
+
+    private SoraApiResponse running;
+    private SoraApiResponse succeeded;
+
+    @Setup
+    public void setUp() {
+        running = new SoraApiResponse();
+        running.setId("task_01jwcet0eje35tc5jy54yjax5q");
+        running.setStatus("running");
+
+        SoraApiResponse.Generation generation = new SoraApiResponse.Generation();
+        generation.setId("gen_01jwcet0eje35tc5jy54yjax5q");
+        succeeded = new SoraApiResponse();
+        succeeded.setId("task_01jwcet0eje35tc5jy54yjax5q");
+        succeeded.setStatus("succeeded");
+        succeeded.setExpiresAt("1748652290");
+        succeeded.setGenerations(List.of(generation));
+    }
+
+    @Benchmark
+    public VideoResponse mapRunning() {
+        return SoraVideoService.mapToVideoResponse(running);
+    }
+
+    @Benchmark
+    public VideoResponse mapSucceeded() {
+        return SoraVideoService.mapToVideoResponse(succeeded);
+    }
+}
@@ -1,15 +1,17 @@
 package com.example.soravideogenerator;
 
-import com.example.soravideogenerator.config.EnvironmentConfig;
+import com.example.soravideogenerator.config.ApplicationRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
+@ImportRuntimeHints(ApplicationRuntimeHints.class)
 public class SoraVideoGeneratorApplication {
 
 	public static void main(String[] args) {
-		// Force loading of EnvironmentConfig to load .env file
-		new EnvironmentConfig();
 		SpringApplication.run(SoraVideoGeneratorApplication.class, args);
 	}
 
@@ -0,0 +1,339 @@
+package com.example.soravideogenerator.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleUnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Client-side rate limiter shared by every request to one Azure OpenAI endpoint
+ * Combines three controls: a token bucket for request rate, an AIMD concurrency limit that grows
+ * slowly while calls succeed quickly and halves on throttling, and a pause derived from
+ * Retry-After and x-ratelimit-* response headers, so retries wait exactly as long as Azure asks.
+ * Each endpoint has its own quota, so each gets its own limiter; meters are tagged with the endpoint name.
+ */
+public class AdaptiveRateLimiter implements ExchangeFilterFunction {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveRateLimiter.class);
+
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final double minConcurrency;
+    private final double maxConcurrency;
+    private final long latencyTargetNanos;
+    private final String endpoint;
+
+    // Token bucket as a theoretical arrival time (GCRA): lock-free and exact
+    private final AtomicLong nextTokenNanos = new AtomicLong(System.nanoTime());
+    private final AtomicLong pausedUntilNanos = new AtomicLong(System.nanoTime());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Queue<Waiter> waiters = new ConcurrentLinkedQueue<>();
+    // Updated from many response threads at once, so kept as the bits of a double in an AtomicLong
+    private final AtomicLong concurrencyLimitBits;
+
+    private final Counter throttled;
+
+    public AdaptiveRateLimiter(String endpoint, double requestsPerSecond, int burst, int initialConcurrency,
+                               int minConcurrency, int maxConcurrency, Duration latencyTarget,
+                               MeterRegistry meterRegistry) {
+        this.endpoint = endpoint;
+        this.intervalNanos = (long) (1_000_000_000L / requestsPerSecond);
+        this.burstNanos = intervalNanos * Math.max(0, burst - 1);
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.concurrencyLimitBits = new AtomicLong(Double.doubleToLongBits(initialConcurrency));
+
+        this.throttled = Counter.builder("azure.openai.limiter.throttled").tag("endpoint", endpoint)
+            .description("Responses from Azure with status 429").register(meterRegistry);
+        Gauge.builder("azure.openai.limiter.concurrency.limit", this, AdaptiveRateLimiter::concurrencyLimit)
+            .tag("endpoint", endpoint).description("Current adaptive concurrency limit").register(meterRegistry);
+        Gauge.builder("azure.openai.limiter.in.flight", inFlight, AtomicInteger::get)
+            .tag("endpoint", endpoint).description("Requests to Azure currently in flight").register(meterRegistry);
+        Gauge.builder("azure.openai.limiter.queued", waiters, Queue::size)
+            .tag("endpoint", endpoint).description("Requests waiting for a concurrency permit").register(meterRegistry);
+        Gauge.builder("azure.openai.limiter.pause", this, AdaptiveRateLimiter::remainingPauseSeconds)
+            .tag("endpoint", endpoint).baseUnit("seconds").description("Remaining pause requested by Azure")
+            .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(ClientRequest request, ExchangeFunction next) {
+        return awaitPause()
+            .then(awaitToken())
+            .then(acquirePermit())
+            .flatMap(permit -> {
+                long start = System.nanoTime();
+                return next.exchange(request)
+                    .doOnNext(response -> onResponse(response, System.nanoTime() - start))
+                    .doFinally(signal -> permit.release());
+            })
+            // A permit that arrives as the request is cancelled is dropped by the operators above
+            .doOnDiscard(Permit.class, Permit::release);
+    }
+
+    /**
+     * Whether a new request would have to wait: Azure asked for a pause, or every concurrency permit is taken
+     */
+    public boolean isSaturated() {
+        return remainingPauseSeconds() > 0 || inFlight.get() >= (int) concurrencyLimit();
+    }
+
+    private Mono<Void> awaitPause() {
+        return Mono.defer(() -> {
+            long wait = pausedUntilNanos.get() - System.nanoTime();
+            return wait > 0 ? Mono.delay(Duration.ofNanos(wait)).then() : Mono.empty();
+        });
+    }
+
+    private Mono<Void> awaitToken() {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            long slot = nextTokenNanos.getAndUpdate(next -> Math.max(next, now - burstNanos) + intervalNanos);
+            long wait = Math.max(slot, now - burstNanos) - now;
+            return wait > 0 ? Mono.delay(Duration.ofNanos(wait)).then() : Mono.empty();
+        });
+    }
+
+    /**
+     * Wait for a concurrency permit
+     * A permit granted to a request that is cancelled before the permit reaches it is returned,
+     * here or through the discard hook in filter, so timeouts and disconnects cannot leak permits.
+     */
+    private Mono<Permit> acquirePermit() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink, new Permit());
+            sink.onCancel(() -> {
+                if (waiter.cancel()) {
+                    waiters.remove(waiter);
+                } else {
+                    waiter.permit.release();
+                }
+            });
+            if (tryAcquire()) {
+                if (!waiter.grant()) {
+                    waiter.permit.release();
+                }
+                return;
+            }
+            waiters.add(waiter);
+            drain();
+        });
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) concurrencyLimit()) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void drain() {
+        while (!waiters.isEmpty() && tryAcquire()) {
+            Waiter waiter = waiters.poll();
+            if (waiter == null || !waiter.grant()) {
+                // Nobody to hand the permit to
+                inFlight.decrementAndGet();
+                if (waiter == null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void onResponse(ClientResponse response, long latencyNanos) {
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        int status = response.statusCode().value();
+
+        if (status == 429 || status == 503) {
+            if (status == 429) {
+                throttled.increment();
+            }
+            decrease(0.5);
+            Duration retryAfter = retryAfter(headers);
+            pauseFor(retryAfter != null ? retryAfter : Duration.ofSeconds(1));
+            return;
+        }
+
+        Duration reset = quotaReset(headers);
+        if (reset != null) {
+            pauseFor(reset);
+        }
+
+        if (latencyNanos > latencyTargetNanos) {
+            decrease(0.9);
+        } else {
+            // Additive increase: roughly one extra permit per limit's worth of successful calls
+            updateConcurrencyLimit(limit -> Math.min(maxConcurrency, limit + 1.0 / limit));
+            drain();
+        }
+    }
+
+    private void decrease(double factor) {
+        updateConcurrencyLimit(limit -> Math.max(minConcurrency, limit * factor));
+    }
+
+    private double concurrencyLimit() {
+        return Double.longBitsToDouble(concurrencyLimitBits.get());
+    }
+
+    private void updateConcurrencyLimit(DoubleUnaryOperator update) {
+        concurrencyLimitBits.updateAndGet(bits -> Double.doubleToLongBits(update.applyAsDouble(Double.longBitsToDouble(bits))));
+    }
+
+    private void pauseFor(Duration pause) {
+        long until = System.nanoTime() + pause.toNanos();
+        pausedUntilNanos.accumulateAndGet(until, Math::max);
+        logger.warn("Azure OpenAI endpoint {} asked to slow down, pausing requests for {} ms (concurrency limit {})",
+                    endpoint, pause.toMillis(), String.format("%.1f", concurrencyLimit()));
+    }
+
+    private double remainingPauseSeconds() {
+        return Math.max(0, pausedUntilNanos.get() - System.nanoTime()) / 1e9;
+    }
+
+    /**
+     * Wait requested by a throttled response: retry-after-ms, then Retry-After as seconds or an HTTP date
+     */
+    static Duration retryAfter(HttpHeaders headers) {
+        String millis = headers.getFirst("retry-after-ms");
+        if (millis != null) {
+            try {
+                return Duration.ofMillis((long) Double.parseDouble(millis.trim()));
+            } catch (NumberFormatException e) {
+                // Fall through to Retry-After
+            }
+        }
+        String retryAfter = headers.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                ZonedDateTime at = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                Duration wait = Duration.between(ZonedDateTime.now(at.getZone()), at);
+                return wait.isNegative() ? Duration.ZERO : wait;
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Time until the request quota resets, when the response says none is left
+     */
+    static Duration quotaReset(HttpHeaders headers) {
+        String remaining = headers.getFirst("x-ratelimit-remaining-requests");
+        if (remaining == null || !"0".equals(remaining.trim())) {
+            return null;
+        }
+        return parseDuration(headers.getFirst("x-ratelimit-reset-requests"));
+    }
+
+    /**
+     * Parse a reset duration given as plain seconds ("12") or in Go style ("1m30s", "250ms")
+     */
+    static Duration parseDuration(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String trimmed = value.trim();
+        try {
+            return Duration.ofMillis((long) (Double.parseDouble(trimmed) * 1000));
+        } catch (NumberFormatException e) {
+            // Not a plain number
+        }
+        Matcher matcher = DURATION_PART.matcher(trimmed);
+        double millis = 0;
+        boolean matched = false;
+        while (matcher.find()) {
+            matched = true;
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1_000;
+                default -> amount;
+            };
+        }
+        return matched ? Duration.ofMillis((long) millis) : null;
+    }
+
+    /**
+     * One concurrency permit, returned exactly once however many paths try to release it
+     */
+    private class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        void release() {
+            if (released.compareAndSet(false, true)) {
+                inFlight.decrementAndGet();
+                drain();
+            }
+        }
+    }
+
+    private static class Waiter {
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+        private final Permit permit;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+
+        Waiter(MonoSink<Permit> sink, Permit permit) {
+            this.sink = sink;
+            this.permit = permit;
+        }
+
+        /**
+         * Hand the permit over; if the request is cancelled before it arrives, onCancel returns it
+         * @return false if the request was already cancelled and the permit is still the caller's
+         */
+        boolean grant() {
+            if (!state.compareAndSet(WAITING, GRANTED)) {
+                return false;
+            }
+            sink.success(permit);
+            return true;
+        }
+
+        /**
+         * @return false if the permit was already granted
+         */
+        boolean cancel() {
+            return state.compareAndSet(WAITING, CANCELLED);
+        }
+    }
+}
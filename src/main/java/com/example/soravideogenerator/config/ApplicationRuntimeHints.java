@@ -0,0 +1,50 @@
+package com.example.soravideogenerator.config;
+
+import com.example.soravideogenerator.model.BatchEstimate;
+import com.example.soravideogenerator.model.BatchRequest;
+import com.example.soravideogenerator.model.BatchStatus;
+import com.example.soravideogenerator.model.BudgetStatus;
+import com.example.soravideogenerator.model.JobDetails;
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.PriceSheet;
+import com.example.soravideogenerator.model.QueueStatus;
+import com.example.soravideogenerator.model.SoraApiRequest;
+import com.example.soravideogenerator.model.SoraApiResponse;
+import com.example.soravideogenerator.model.VideoMetadata;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+/**
+ * Reflection and resource hints for AOT processing and native images
+ * Spring infers hints for beans and controller signatures, but not for types that are only
+ * handled reflectively at runtime: JSON exchanged with Azure or stored on disk, the form-bound
+ * and validated VideoRequest, and classes named in properties.
+ */
+public class ApplicationRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Jackson models, including their nested types
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+            SoraApiRequest.class, SoraApiResponse.class, VideoResponse.class, VideoMetadata.class,
+            VideoRequest.class, JobRecord.class, JobDetails.class, PriceSheet.class, BatchRequest.class, BatchEstimate.class,
+            BatchStatus.class, BudgetStatus.class, QueueStatus.class, AzureOpenAIEndpoint.class);
+
+        // Hibernate Validator instantiates the class-level constraint's validator reflectively
+        hints.reflection().registerType(
+            TypeReference.of("com.example.soravideogenerator.model.DurationForResolutionValidator"),
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // Created by Resilience4j from resilience4j.circuitbreaker.configs.default.record-failure-predicate
+        hints.reflection().registerType(UpstreamFailurePredicate.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        hints.resources().registerPattern("pricing/*.json");
+        hints.resources().registerPattern("templates/**");
+        hints.resources().registerPattern("static/**");
+    }
+}
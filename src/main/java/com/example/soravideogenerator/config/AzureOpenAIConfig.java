@@ -1,42 +1,257 @@
 package com.example.soravideogenerator.config;
 
+import com.example.soravideogenerator.service.EndpointPool;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
 import org.springframework.web.reactive.function.client.WebClient;
-import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.Http2AllocationStrategy;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
 
 /**
- * Configuration for Azure OpenAI WebClient and application settings
+ * Configuration for Azure OpenAI WebClients and application settings
+ * Jobs can be spread over several deployments listed as azure.openai.endpoints[n].name/url/api-key;
+ * without that list the single azure.openai.endpoint and api-key are used.
  */
 @Configuration
 public class AzureOpenAIConfig {
-    
+
     @Value("${azure.openai.endpoint}")
     private String azureOpenAIEndpoint;
-    
+
     @Value("${azure.openai.api-key}")
     private String azureOpenAIApiKey;
-    
+
     @Value("${azure.openai.api-version:preview}")
     private String apiVersion;
-    
+
+    // Job routing across endpoints
+    @Value("${azure.openai.routing.latency-decay:10s}")
+    private Duration routingLatencyDecay;
+
+    @Value("${azure.openai.routing.failure-penalty:5s}")
+    private Duration routingFailurePenalty;
+
+    // Client-side rate limit, applied to each endpoint separately
+    @Value("${azure.openai.rate-limit.requests-per-second:5}")
+    private double requestsPerSecond;
+
+    @Value("${azure.openai.rate-limit.burst:10}")
+    private int burst;
+
+    @Value("${azure.openai.rate-limit.initial-concurrency:8}")
+    private int initialConcurrency;
+
+    @Value("${azure.openai.rate-limit.min-concurrency:1}")
+    private int minConcurrency;
+
+    @Value("${azure.openai.rate-limit.max-concurrency:32}")
+    private int maxConcurrency;
+
+    @Value("${azure.openai.rate-limit.latency-target:10s}")
+    private Duration latencyTarget;
+
+    // Connection pool settings
+    @Value("${azure.openai.http.max-connections:50}")
+    private int maxConnections;
+
+    @Value("${azure.openai.http.pending-acquire-max-count:500}")
+    private int pendingAcquireMaxCount;
+
+    @Value("${azure.openai.http.pending-acquire-timeout:10s}")
+    private Duration pendingAcquireTimeout;
+
+    @Value("${azure.openai.http.max-idle-time:30s}")
+    private Duration maxIdleTime;
+
+    @Value("${azure.openai.http.max-life-time:5m}")
+    private Duration maxLifeTime;
+
+    @Value("${azure.openai.http.evict-in-background:30s}")
+    private Duration evictInBackground;
+
+    @Value("${azure.openai.http.connect-timeout:5s}")
+    private Duration connectTimeout;
+
+    @Value("${azure.openai.http.keep-alive:true}")
+    private boolean keepAlive;
+
+    @Value("${azure.openai.http.http2.enabled:false}")
+    private boolean http2Enabled;
+
+    @Value("${azure.openai.http.http2.max-concurrent-streams:100}")
+    private int http2MaxConcurrentStreams;
+
+    // Per-operation response timeouts (maximum time between reads of a response)
+    @Value("${azure.openai.timeout.create:30s}")
+    private Duration createTimeout;
+
+    @Value("${azure.openai.timeout.status:10s}")
+    private Duration statusTimeout;
+
+    @Value("${azure.openai.timeout.download:2m}")
+    private Duration downloadTimeout;
+
+    // Legacy result URLs point at storage outside the Azure OpenAI endpoint and get their own pool
+    @Value("${azure.openai.result.max-connections:16}")
+    private int resultMaxConnections;
+
+    @Value("${azure.openai.result.connect-timeout:5s}")
+    private Duration resultConnectTimeout;
+
+    @Value("${azure.openai.result.timeout:30s}")
+    private Duration resultTimeout;
+
+    /**
+     * Dedicated connection pool for Azure OpenAI, with pool metrics published to Micrometer
+     * under reactor.netty.connection.provider.* (name "azure-openai")
+     */
+    @Bean(destroyMethod = "dispose")
+    @Primary
+    public ConnectionProvider azureOpenAIConnectionProvider() {
+        ConnectionProvider.Builder builder = ConnectionProvider.builder("azure-openai")
+            .maxConnections(maxConnections)
+            .pendingAcquireMaxCount(pendingAcquireMaxCount)
+            .pendingAcquireTimeout(pendingAcquireTimeout)
+            .maxIdleTime(maxIdleTime)
+            .maxLifeTime(maxLifeTime)
+            .evictInBackground(evictInBackground)
+            .metrics(true);
+
+        if (http2Enabled) {
+            // Multiplex requests as streams over a few connections instead of one connection per request
+            builder.allocationStrategy(Http2AllocationStrategy.builder()
+                .maxConnections(maxConnections)
+                .maxConcurrentStreams(http2MaxConcurrentStreams)
+                .build());
+        }
+        return builder.build();
+    }
+
+    /**
+     * One client per Azure OpenAI endpoint, each with its own API key and rate limiter
+     * The endpoints share a connection pool, which keeps separate connections per host, and the
+     * application's ObjectMapper, so serializers built for the server codecs are reused.
+     */
     @Bean
-    public WebClient azureOpenAIWebClient() {
-        // Configure larger memory size for handling video responses (100MB)
-        ExchangeStrategies strategies = ExchangeStrategies.builder()
-            .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(100 * 1024 * 1024)) // 100MB
-            .build();
+    public EndpointPool azureOpenAIEndpointPool(ConnectionProvider azureOpenAIConnectionProvider, Environment environment,
+                                                ObjectMapper objectMapper, CircuitBreakerRegistry circuitBreakerRegistry,
+                                                MeterRegistry meterRegistry) {
+        List<AzureOpenAIEndpoint> configured = Binder.get(environment)
+            .bind("azure.openai.endpoints", Bindable.listOf(AzureOpenAIEndpoint.class))
+            .orElse(List.of());
+        if (configured.isEmpty()) {
+            configured = List.of(new AzureOpenAIEndpoint("default", azureOpenAIEndpoint, azureOpenAIApiKey));
+        }
 
+        HttpClient httpClient = httpClient(azureOpenAIConnectionProvider);
+        boolean qualifiedBreakers = configured.size() > 1;
+        List<EndpointPool.Endpoint> endpoints = configured.stream()
+            .map(endpoint -> {
+                if (endpoint.getName() == null || endpoint.getUrl() == null || endpoint.getApiKey() == null) {
+                    throw new IllegalStateException("Each of azure.openai.endpoints needs a name, url and api-key");
+                }
+                AdaptiveRateLimiter rateLimiter = new AdaptiveRateLimiter(endpoint.getName(), requestsPerSecond, burst,
+                    initialConcurrency, minConcurrency, maxConcurrency, latencyTarget, meterRegistry);
+                return new EndpointPool.Endpoint(endpoint.getName(), endpoint.getWeight(), rateLimiter,
+                    webClient(httpClient, objectMapper, endpoint, rateLimiter), circuitBreakerRegistry, qualifiedBreakers,
+                    routingLatencyDecay, routingFailurePenalty, meterRegistry);
+            })
+            .toList();
+        return new EndpointPool(endpoints);
+    }
+
+    private HttpClient httpClient(ConnectionProvider azureOpenAIConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(azureOpenAIConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+            .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+            .keepAlive(keepAlive)
+            .responseTimeout(statusTimeout);
+
+        if (http2Enabled) {
+            // HTTP/2 is negotiated via ALPN on TLS endpoints, with HTTP/1.1 as fallback
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+
+    private static WebClient.Builder webClient(HttpClient httpClient, ObjectMapper objectMapper,
+                                               AzureOpenAIEndpoint endpoint, AdaptiveRateLimiter rateLimiter) {
+        // Video content is streamed as DataBuffers, so the default codec limit only applies to JSON payloads
         return WebClient.builder()
-            .baseUrl(azureOpenAIEndpoint)
+            .baseUrl(endpoint.getUrl())
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .codecs(codecs -> {
+                codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+            })
             .defaultHeader("Content-Type", "application/json")
-            .defaultHeader("Api-key", azureOpenAIApiKey)
-            .exchangeStrategies(strategies)
+            .defaultHeader("Api-key", endpoint.getApiKey())
+            .filter(rateLimiter);
+    }
+
+    /**
+     * Connection pool for legacy result URLs, kept apart so a slow storage host cannot hold
+     * connections needed for Azure OpenAI calls
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider videoResultConnectionProvider() {
+        return ConnectionProvider.builder("video-result")
+            .maxConnections(resultMaxConnections)
+            .pendingAcquireMaxCount(resultMaxConnections * 2)
+            .pendingAcquireTimeout(resultConnectTimeout)
+            .maxIdleTime(maxIdleTime)
+            .maxLifeTime(maxLifeTime)
+            .evictInBackground(evictInBackground)
+            .metrics(true)
             .build();
     }
-    
+
+    /**
+     * Client for downloading legacy result URLs
+     * The URLs are absolute and pre-signed, so no base URL or API key is attached to them.
+     */
+    @Bean
+    public WebClient videoResultWebClient(ConnectionProvider videoResultConnectionProvider) {
+        HttpClient httpClient = HttpClient.create(videoResultConnectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) resultConnectTimeout.toMillis())
+            .responseTimeout(resultTimeout)
+            .followRedirect(true);
+
+        return WebClient.builder()
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
+            .build();
+    }
+
     public String getApiVersion() {
         return apiVersion;
     }
+
+    public Duration getCreateTimeout() {
+        return createTimeout;
+    }
+
+    public Duration getStatusTimeout() {
+        return statusTimeout;
+    }
+
+    public Duration getDownloadTimeout() {
+        return downloadTimeout;
+    }
 }
@@ -0,0 +1,61 @@
+package com.example.soravideogenerator.config;
+
+/**
+ * Settings of one Azure OpenAI deployment, bound from azure.openai.endpoints[n].*
+ */
+public class AzureOpenAIEndpoint {
+
+    private String name;
+    private String url;
+    private String apiKey;
+    private double weight = 1;
+
+    public AzureOpenAIEndpoint() {}
+
+    public AzureOpenAIEndpoint(String name, String url, String apiKey) {
+        this.name = name;
+        this.url = url;
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Name recorded on jobs created through this endpoint and used to tag its meters
+     */
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Base URL of the Azure OpenAI resource
+     */
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public String getApiKey() {
+        return apiKey;
+    }
+
+    public void setApiKey(String apiKey) {
+        this.apiKey = apiKey;
+    }
+
+    /**
+     * Relative share of new jobs, e.g. 2 for a deployment with twice the quota of the others
+     */
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+}
@@ -1,37 +1,56 @@
 package com.example.soravideogenerator.config;
 
 import io.github.cdimascio.dotenv.Dotenv;
-import org.springframework.context.annotation.Configuration;
+import io.github.cdimascio.dotenv.DotenvEntry;
+import org.apache.commons.logging.Log;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.boot.logging.DeferredLogFactory;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
- * Configuration class to load environment variables from .env file
- * This class has a static block that loads the .env file before Spring Boot starts
+ * Loads environment variables from a .env file in the working directory
+ * Runs as an EnvironmentPostProcessor (registered in META-INF/spring.factories) rather than a
+ * static initializer, so the values are in place before any bean resolves its properties, in AOT
+ * and native builds as well. Real environment variables and system properties take precedence.
  */
-@Configuration
-public class EnvironmentConfig {
+public class EnvironmentConfig implements EnvironmentPostProcessor {
+
+    static final String PROPERTY_SOURCE_NAME = "dotenv";
 
-    static {
+    private final Log logger;
+
+    public EnvironmentConfig(DeferredLogFactory logFactory) {
+        this.logger = logFactory.getLog(EnvironmentConfig.class);
+    }
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        Map<String, Object> values = new LinkedHashMap<>();
         try {
             Dotenv dotenv = Dotenv.configure()
                     .directory(".")
                     .filename(".env")
                     .ignoreIfMissing()
                     .load();
-            
-            // Set system properties from .env file
-            dotenv.entries().forEach(entry -> {
-                String key = entry.getKey();
-                String value = entry.getValue();
-                
-                // Only set if not already set by system environment
-                if (System.getProperty(key) == null && System.getenv(key) == null) {
-                    System.setProperty(key, value);
-                }
-            });
-            
-            System.out.println("Loaded environment variables from .env file");
+            for (DotenvEntry entry : dotenv.entries(Dotenv.Filter.DECLARED_IN_ENV_FILE)) {
+                values.put(entry.getKey(), entry.getValue());
+            }
         } catch (Exception e) {
-            System.err.println("Warning: Could not load .env file: " + e.getMessage());
+            logger.warn("Could not load .env file: " + e.getMessage());
+            return;
+        }
+
+        if (!values.isEmpty()) {
+            // Ranked just after the system environment, so variables set there still win
+            environment.getPropertySources().addAfter(StandardEnvironment.SYSTEM_ENVIRONMENT_PROPERTY_SOURCE_NAME,
+                new MapPropertySource(PROPERTY_SOURCE_NAME, values));
+            logger.info("Loaded " + values.size() + " environment variables from .env file");
         }
     }
 }
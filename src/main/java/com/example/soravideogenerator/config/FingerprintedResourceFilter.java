@@ -0,0 +1,67 @@
+package com.example.soravideogenerator.config;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.resource.ResourceUrlProvider;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Rewrites links to static assets in rendered pages to their fingerprinted URLs
+ * With spring.web.resources.chain.strategy.content enabled (the prod profile), /css/index.css is
+ * also served as /css/index-{content hash}.css, which browsers may cache for as long as the
+ * cache headers allow, since a changed file gets a new URL. Thymeleaf passes every @{...} link
+ * through ServerWebExchange#transformUrl, and WebFlux has no counterpart of the servlet
+ * ResourceUrlEncodingFilter, so this filter looks the URLs of the assets up once and registers a
+ * transformer that maps them. Without a versioning strategy every asset maps to itself.
+ */
+@Component
+public class FingerprintedResourceFilter implements WebFilter {
+
+    private static final String[] ASSET_PATTERNS = {"classpath:/static/**/*.css", "classpath:/static/**/*.js"};
+
+    private final ResourceUrlProvider resourceUrlProvider;
+    private final List<String> assets;
+    private final AtomicReference<Mono<Map<String, String>>> urls = new AtomicReference<>();
+
+    public FingerprintedResourceFilter(ResourceUrlProvider resourceUrlProvider) throws IOException {
+        this.resourceUrlProvider = resourceUrlProvider;
+        this.assets = new ArrayList<>();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+        for (String pattern : ASSET_PATTERNS) {
+            for (Resource resource : resolver.getResources(pattern)) {
+                String url = resource.getURL().toString();
+                assets.add(url.substring(url.lastIndexOf("/static/") + "/static".length()));
+            }
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (assets.isEmpty()) {
+            return chain.filter(exchange);
+        }
+        if (urls.get() == null) {
+            // Resolved with the first request, since the lookup needs an exchange, and reused after that
+            urls.compareAndSet(null, Flux.fromIterable(assets)
+                .flatMap(asset -> resourceUrlProvider.getForUriString(asset, exchange)
+                    .map(url -> Map.entry(asset, url))
+                    .onErrorResume(error -> Mono.empty()))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                .cache());
+        }
+        return urls.get()
+            .doOnNext(fingerprinted -> exchange.addUrlTransformer(url -> fingerprinted.getOrDefault(url, url)))
+            .then(chain.filter(exchange));
+    }
+}
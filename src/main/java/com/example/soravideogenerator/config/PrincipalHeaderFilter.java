@@ -0,0 +1,45 @@
+package com.example.soravideogenerator.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Drops the principal header from requests unless an authentication layer in front of the app sets it
+ * Budgets and queue shares are keyed on this header. Container Apps authentication
+ * (or a gateway) replaces whatever the client sent, but without one any caller could claim any
+ * principal, so by default the header is removed and every request counts as the anonymous principal.
+ */
+@Component
+public class PrincipalHeaderFilter implements WebFilter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PrincipalHeaderFilter.class);
+
+    private final String header;
+    private final boolean trusted;
+
+    public PrincipalHeaderFilter(@Value("${video.budget.principal-header:X-MS-CLIENT-PRINCIPAL-NAME}") String header,
+                                 @Value("${video.budget.trust-principal-header:false}") boolean trusted) {
+        this.header = header;
+        this.trusted = trusted;
+        if (!trusted) {
+            logger.info("Ignoring the {} header: all requests share the anonymous principal until "
+                        + "video.budget.trust-principal-header is set behind authentication", header);
+        }
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        if (trusted || !exchange.getRequest().getHeaders().containsKey(header)) {
+            return chain.filter(exchange);
+        }
+        return chain.filter(exchange.mutate()
+            .request(request -> request.headers(headers -> headers.remove(header)))
+            .build());
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.soravideogenerator.config;
+
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
+
+/**
+ * Decides which errors count against an Azure OpenAI circuit breaker
+ * Only signs of an unhealthy upstream are recorded: 5xx, 429, timeouts and connection failures.
+ * Other 4xx responses, such as a rejected prompt, say nothing about upstream health.
+ */
+public class UpstreamFailurePredicate implements Predicate<Throwable> {
+
+    @Override
+    public boolean test(Throwable throwable) {
+        if (throwable instanceof WebClientResponseException ex) {
+            return ex.getStatusCode().is5xxServerError() || ex.getStatusCode().value() == 429;
+        }
+        return throwable instanceof WebClientRequestException
+            || throwable instanceof TimeoutException
+            || throwable instanceof IOException;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.soravideogenerator.controller;
+
+import com.example.soravideogenerator.model.BatchEstimate;
+import com.example.soravideogenerator.model.BatchRequest;
+import com.example.soravideogenerator.model.BatchStatus;
+import com.example.soravideogenerator.service.BatchSubmissionService;
+import com.example.soravideogenerator.service.CostEstimationService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.URI;
+
+/**
+ * REST API for submitting and tracking batches of video generation requests
+ */
+@RestController
+@RequestMapping("/api/batches")
+public class BatchController {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchController.class);
+
+    private final BatchSubmissionService batchSubmissionService;
+    private final CostEstimationService costEstimationService;
+
+    @Autowired
+    public BatchController(BatchSubmissionService batchSubmissionService, CostEstimationService costEstimationService) {
+        this.batchSubmissionService = batchSubmissionService;
+        this.costEstimationService = costEstimationService;
+    }
+
+    /**
+     * Accept a batch of requests; submission to Azure continues in the background
+     * The Location header points at the batch status to poll.
+     */
+    @PostMapping
+    public ResponseEntity<BatchStatus> submitBatch(@Valid @RequestBody BatchRequest batchRequest,
+                                                   @RequestHeader(value = "${video.budget.principal-header:X-MS-CLIENT-PRINCIPAL-NAME}",
+                                                                  required = false) String principal) {
+        logger.info("Received batch of {} video generation requests", batchRequest.getRequests().size());
+        BatchStatus status = batchSubmissionService.submit(batchRequest, principal);
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/batches/" + status.getBatchId()))
+            .body(status);
+    }
+
+    /**
+     * Price a batch without submitting it
+     */
+    @PostMapping("/estimate")
+    public BatchEstimate estimateBatch(@Valid @RequestBody BatchRequest batchRequest) {
+        return costEstimationService.estimateBatch(batchRequest.getRequests());
+    }
+
+    /**
+     * Aggregate progress and per-item results of a batch
+     */
+    @GetMapping("/{batchId}")
+    public ResponseEntity<BatchStatus> getBatch(@PathVariable String batchId) {
+        return ResponseEntity.of(batchSubmissionService.getStatus(batchId));
+    }
+}
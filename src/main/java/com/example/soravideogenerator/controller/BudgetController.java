@@ -0,0 +1,31 @@
+package com.example.soravideogenerator.controller;
+
+import com.example.soravideogenerator.model.BudgetStatus;
+import com.example.soravideogenerator.service.SpendingLedger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST API reporting spending against the generation budgets
+ */
+@RestController
+public class BudgetController {
+
+    private final SpendingLedger spendingLedger;
+
+    @Autowired
+    public BudgetController(SpendingLedger spendingLedger) {
+        this.spendingLedger = spendingLedger;
+    }
+
+    /**
+     * Budget usage for the calling principal and for the whole service in the current window
+     */
+    @GetMapping("/api/budget")
+    public BudgetStatus budget(@RequestHeader(value = "${video.budget.principal-header:X-MS-CLIENT-PRINCIPAL-NAME}",
+                                              required = false) String principal) {
+        return spendingLedger.status(principal);
+    }
+}
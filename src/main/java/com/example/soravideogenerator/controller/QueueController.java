@@ -0,0 +1,31 @@
+package com.example.soravideogenerator.controller;
+
+import com.example.soravideogenerator.model.QueueStatus;
+import com.example.soravideogenerator.service.JobQueue;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST API reporting how busy the submission queue is
+ */
+@RestController
+public class QueueController {
+
+    private final JobQueue jobQueue;
+
+    @Autowired
+    public QueueController(JobQueue jobQueue) {
+        this.jobQueue = jobQueue;
+    }
+
+    /**
+     * Running and waiting jobs for the calling principal and for the whole service, with the estimated wait
+     */
+    @GetMapping("/api/queue")
+    public QueueStatus queue(@RequestHeader(value = "${video.budget.principal-header:X-MS-CLIENT-PRINCIPAL-NAME}",
+                                            required = false) String principal) {
+        return jobQueue.status(principal);
+    }
+}
@@ -1,29 +1,47 @@
 package com.example.soravideogenerator.controller;
 
+import com.example.soravideogenerator.model.JobDetails;
+import com.example.soravideogenerator.model.JobRecord;
 import com.example.soravideogenerator.model.VideoRequest;
 import com.example.soravideogenerator.model.VideoResponse;
-import com.example.soravideogenerator.service.SoraVideoService;
 import com.example.soravideogenerator.service.CostEstimationService;
+import com.example.soravideogenerator.service.JobRegistry;
+import com.example.soravideogenerator.service.JobStatusCache;
+import com.example.soravideogenerator.service.JobSubmissionService;
+import com.example.soravideogenerator.service.SoraVideoService;
+import com.example.soravideogenerator.service.VideoCacheService;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.ZeroCopyHttpOutputMessage;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
-import java.net.URL;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 /**
  * Controller for handling video generation requests and web interface
@@ -32,13 +50,29 @@ import java.time.format.DateTimeFormatter;
 public class VideoController {
     
     private static final Logger logger = LoggerFactory.getLogger(VideoController.class);
+    private static final Duration SSE_HEARTBEAT_INTERVAL = Duration.ofSeconds(15);
+    private static final int DOWNLOAD_BUFFER_SIZE = 64 * 1024;
+    private static final MediaType VIDEO_MP4 = MediaType.parseMediaType("video/mp4");
       private final SoraVideoService soraVideoService;
     private final CostEstimationService costEstimationService;
+    private final VideoCacheService videoCacheService;
+    private final JobStatusCache jobStatusCache;
+    private final JobRegistry jobRegistry;
+    private final JobSubmissionService jobSubmissionService;
+    private final Duration downloadMaxAge;
     
     @Autowired
-    public VideoController(SoraVideoService soraVideoService, CostEstimationService costEstimationService) {
+    public VideoController(SoraVideoService soraVideoService, CostEstimationService costEstimationService,
+                           VideoCacheService videoCacheService, JobStatusCache jobStatusCache,
+                           JobRegistry jobRegistry, JobSubmissionService jobSubmissionService,
+                           @Value("${video.download.max-age:24h}") Duration downloadMaxAge) {
         this.soraVideoService = soraVideoService;
         this.costEstimationService = costEstimationService;
+        this.videoCacheService = videoCacheService;
+        this.jobStatusCache = jobStatusCache;
+        this.jobRegistry = jobRegistry;
+        this.jobSubmissionService = jobSubmissionService;
+        this.downloadMaxAge = downloadMaxAge;
     }
     
     /**
@@ -51,10 +85,14 @@ public class VideoController {
     }
       /**
      * Handle video generation form submission
+     * Repeated submissions of the same request, or with the same Idempotency-Key header, return the existing job
      */
     @PostMapping("/generate")
     public Mono<String> generateVideo(@Valid @ModelAttribute VideoRequest videoRequest, 
                                      BindingResult bindingResult, 
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                     @RequestHeader(value = "${video.budget.principal-header:X-MS-CLIENT-PRINCIPAL-NAME}",
+                                                    required = false) String principal,
                                      Model model) {
         
         if (bindingResult.hasErrors()) {
@@ -62,24 +100,28 @@ public class VideoController {
             model.addAttribute("videoRequest", videoRequest);
             return Mono.just("index");
         }
-          logger.info("Received video generation request with prompt: {}, resolution: {}, duration: {}s", 
-                   videoRequest.getPrompt(), videoRequest.getResolution(), videoRequest.getDuration());
+        // Prompts are user content and stay out of INFO logs
+        logger.info("Received video generation request with resolution: {}, duration: {}s, variants: {}",
+                   videoRequest.getResolution(), videoRequest.getDuration(), videoRequest.getVariants());
+        logger.debug("Prompt: {}", videoRequest.getPrompt());
         
         // Calculate estimated cost
         BigDecimal estimatedCost = costEstimationService.calculateEstimatedCost(
-            videoRequest.getResolution(), videoRequest.getDuration());
+            videoRequest.getResolution(), videoRequest.getDuration(), videoRequest.getVariants());
         String costBreakdown = costEstimationService.getCostBreakdown(
-            videoRequest.getResolution(), videoRequest.getDuration());
+            videoRequest.getResolution(), videoRequest.getDuration(), videoRequest.getVariants());
         String costWarning = costEstimationService.getCostWarning(estimatedCost);
         
-        return soraVideoService.generateVideo(videoRequest)
+        return jobSubmissionService.submit(videoRequest, idempotencyKey, principal)
             .map(response -> {
                 if (response.isSuccess()) {
                     model.addAttribute("jobId", response.getJobId());
                     model.addAttribute("status", response.getStatus());
-                    model.addAttribute("message", "Video generation started successfully!");
+                    model.addAttribute("message", response.getMessage() != null
+                        ? response.getMessage() : "Video generation started successfully!");
                     model.addAttribute("resolution", videoRequest.getResolution());
                     model.addAttribute("duration", videoRequest.getDuration());
+                    model.addAttribute("variants", videoRequest.getVariants());
                     
                     // Add cost estimation attributes
                     model.addAttribute("estimatedCost", estimatedCost);
@@ -103,99 +145,391 @@ public class VideoController {
     
     /**
      * REST endpoint to check job status
+     * Once the video has been downloaded to the local cache, the response includes its duration, dimensions and bitrate.
      */
     @GetMapping("/api/status/{jobId}")
     @ResponseBody
     public Mono<VideoResponse> checkStatus(@PathVariable String jobId) {
         logger.info("Checking status for job: {}", jobId);
-        return soraVideoService.checkJobStatus(jobId);
+        if (JobSubmissionService.isTicket(jobId)) {
+            return Mono.fromSupplier(() -> jobSubmissionService.queuedStatus(jobId));
+        }
+        return jobStatusCache.getStatus(jobId).map(this::withMetadata);
+    }
+    
+    private VideoResponse withMetadata(VideoResponse response) {
+        if (response.getGenerationId() == null) {
+            return response;
+        }
+        // The cached status is shared between requests, so the metadata goes on a copy
+        return videoCacheService.metadata(response.getGenerationId())
+            .map(metadata -> {
+                VideoResponse enriched = response.copy();
+                enriched.setMetadata(metadata);
+                return enriched;
+            })
+            .orElse(response);
+    }
+    
+    /**
+     * REST endpoint returning the locally recorded details of a job created by this server, without its prompt or principal
+     */
+    @GetMapping("/api/jobs/{jobId}")
+    @ResponseBody
+    public ResponseEntity<JobDetails> jobDetails(@PathVariable String jobId) {
+        return ResponseEntity.of(jobRegistry.find(jobId).map(JobDetails::from));
+    }
+    
+    /**
+     * Server-Sent Events stream of job status transitions, closed once the job reaches a terminal state
+     */
+    @GetMapping(path = "/api/status/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @ResponseBody
+    public Flux<ServerSentEvent<VideoResponse>> streamStatus(@PathVariable String jobId) {
+        logger.info("Streaming status for job: {}", jobId);
+        
+        Flux<VideoResponse> statuses = JobSubmissionService.isTicket(jobId)
+            ? jobSubmissionService.watchQueued(jobId) : jobStatusCache.watchStatus(jobId);
+        Flux<ServerSentEvent<VideoResponse>> updates = statuses
+            .map(response -> ServerSentEvent.builder(response).event("status").build())
+            .share();
+        
+        // Comment-only heartbeats keep idle connections open through proxies until the updates complete
+        Flux<ServerSentEvent<VideoResponse>> heartbeats = Flux.interval(SSE_HEARTBEAT_INTERVAL)
+            .map(tick -> ServerSentEvent.<VideoResponse>builder().comment("heartbeat").build())
+            .takeUntilOther(updates.ignoreElements());
+        
+        return Flux.merge(updates, heartbeats);
     }
     
     /**
      * Display job status page
+     * A ticket for a queued submission redirects to its job once the job is created.
      */
     @GetMapping("/status/{jobId}")
     public String statusPage(@PathVariable String jobId, Model model) {
+        if (JobSubmissionService.isTicket(jobId)) {
+            String createdJobId = jobSubmissionService.queuedStatus(jobId).getJobId();
+            if (createdJobId != null && !createdJobId.equals(jobId)) {
+                return "redirect:/status/" + createdJobId;
+            }
+        }
         model.addAttribute("jobId", jobId);
         return "status";
     }
       /**
      * Download endpoint for completed videos
+     * The video is relayed from Azure as it arrives instead of being buffered in memory. Responses
+     * carry an ETag derived from the generation ID, so browsers can revalidate with a 304 and
+     * request single byte ranges (206) to seek in the player or resume a download. A range that
+     * misses the cache is forwarded upstream and answered as soon as its bytes arrive, while the
+     * whole video is downloaded into the cache in the background. A cached copy rewritten for
+     * faststart playback has different bytes than the upstream one, so it gets its own ETag and
+     * ranges of one layout are never answered from the other. Jobs generating several
+     * variants serve each one by its zero-based index; without an index the first is served.
      */
     @GetMapping("/api/download/{jobId}")
-    public Mono<ResponseEntity<InputStreamResource>> downloadVideo(@PathVariable String jobId) {
-        logger.info("Download request for job: {}", jobId);
+    public Mono<Void> downloadVideo(@PathVariable String jobId, @RequestParam(defaultValue = "0") int variant,
+                                    ServerWebExchange exchange) {
+        logger.info("Download request for job: {}, variant: {}", jobId, variant);
+        // Names the downloaded file and the log lines, so variants of one job do not overwrite each other
+        String download = variant == 0 ? jobId : jobId + "_" + (variant + 1);
+        ServerHttpResponse httpResponse = exchange.getResponse();
         
-        return soraVideoService.checkJobStatus(jobId)
+        return jobStatusCache.getStatus(jobId)
             .flatMap(response -> {
                 if (response.isSuccess() && 
                     ("completed".equals(response.getStatus()) || "succeeded".equals(response.getStatus()))) {
                     
-                    // Check if we have a generation ID for the new API structure
-                    if (response.getGenerationId() != null) {
-                        return soraVideoService.downloadVideoContent(response.getGenerationId())
-                            .map(videoData -> {
-                                InputStream inputStream = new java.io.ByteArrayInputStream(videoData);
-                                InputStreamResource resource = new InputStreamResource(inputStream);
-                                
-                                // Generate filename with timestamp
-                                String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-                                String filename = String.format("sora_video_%s_%s.mp4", jobId, timestamp);
-                                
-                                HttpHeaders headers = new HttpHeaders();
-                                headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
-                                headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE);
-                                headers.add(HttpHeaders.CONTENT_LENGTH, String.valueOf(videoData.length));
-                                
-                                logger.info("Successfully prepared download for job: {} with {} bytes", jobId, videoData.length);
-                                
-                                return ResponseEntity.ok()
-                                    .headers(headers)
-                                    .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                                    .body(resource);
-                            })
-                            .onErrorReturn(ResponseEntity.internalServerError()
-                                .body(new InputStreamResource(InputStream.nullInputStream())));
+                    String generationId = generationIdOf(response, variant);
+                    if (variant != 0 && generationId == null) {
+                        logger.warn("No variant {} available for job: {}", variant, jobId);
+                        return reject(httpResponse, HttpStatus.NOT_FOUND);
                     }
-                    // Fallback to direct URL download (for backward compatibility)
-                    else if (response.getVideoUrl() != null && !response.getVideoUrl().equals("available")) {
-                        try {
-                            URL url = new URL(response.getVideoUrl());
-                            InputStream inputStream = url.openStream();
-                            InputStreamResource resource = new InputStreamResource(inputStream);
-                            
-                            // Generate filename with timestamp
-                            String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss"));
-                            String filename = String.format("sora_video_%s_%s.mp4", jobId, timestamp);
-                            
-                            HttpHeaders headers = new HttpHeaders();
-                            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
-                            headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE);
-                            
-                            logger.info("Successfully prepared download for job: {}", jobId);
-                            
-                            return Mono.just(ResponseEntity.ok()
-                                .headers(headers)
-                                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                                .body(resource));
-                                
-                        } catch (IOException e) {
-                            logger.error("Failed to download video for job {}: {}", jobId, e.getMessage());
-                            return Mono.just(ResponseEntity.badRequest()
-                                .body(new InputStreamResource(InputStream.nullInputStream())));
-                        }
-                    } else {
+                    boolean legacyUrl = generationId == null
+                        && response.getVideoUrl() != null && !response.getVideoUrl().equals("available");
+                    if (generationId == null && !legacyUrl) {
                         logger.warn("No video URL or generation ID available for job: {}", jobId);
-                        return Mono.just(ResponseEntity.badRequest()
-                            .body(new InputStreamResource(InputStream.nullInputStream())));
+                        return reject(httpResponse, HttpStatus.BAD_REQUEST);
+                    }
+                    
+                    Optional<VideoCacheService.CachedVideo> cached = generationId != null
+                        ? videoCacheService.lookup(generationId) : Optional.empty();
+                    
+                    // The content behind a generation (or a legacy job) never changes, so it can be revalidated by ID
+                    String etag = etag(generationId != null ? generationId : jobId,
+                        cached.map(VideoCacheService.CachedVideo::isRemuxed).orElse(false));
+                    httpResponse.getHeaders().setCacheControl(cacheControl(response.getExpiresAt()));
+                    if (notModified(exchange, etag, jobId)) {
+                        logger.info("Video for job {} not modified", jobId);
+                        return httpResponse.setComplete();
                     }
+                    HttpRange range = requestedRange(exchange.getRequest(), etag);
+                    
+                    // Check if we have a generation ID for the new API structure
+                    if (generationId != null) {
+                        if (cached.isPresent()) {
+                            return serveCachedVideo(download, cached.get(), range, httpResponse);
+                        }
+                        
+                        Mono<Void> relay;
+                        if (range == null) {
+                            relay = soraVideoService.downloadVideoContent(jobId, generationId, null,
+                                upstream -> relayDownload(download, upstream, null, httpResponse, content ->
+                                    videoCacheService.cacheWhileStreaming(generationId, response.getExpiresAt(),
+                                        upstream.getHeaders().getContentLength(), content)))
+                                .then();
+                        } else if (videoCacheService.isRewriting(generationId)) {
+                            // A download into the cache (such as a prefetch) may rewrite the video, so every
+                            // range comes from that copy once it is stored
+                            Mono<Void> fallback = relayRange(jobId, generationId, download, range, httpResponse);
+                            relay = videoCacheService.fill(generationId, response.getExpiresAt(), fullContent(jobId, generationId))
+                                .map(Optional::of)
+                                .defaultIfEmpty(Optional.empty())
+                                .flatMap(filled -> filled.isPresent()
+                                    ? serveFilledVideo(download, filled.get(), exchange)
+                                    : fallback);
+                        } else {
+                            fillInBackground(jobId, generationId, response.getExpiresAt());
+                            relay = relayRange(jobId, generationId, download, range, httpResponse);
+                        }
+                        return relay
+                            .onErrorResume(error -> !httpResponse.isCommitted(), error -> rejectFailedDownload(error, httpResponse));
+                    }
+                    // Fallback to direct URL download (for backward compatibility)
+                    return soraVideoService.downloadResultUrl(response.getVideoUrl(), rangeHeader(range),
+                            upstream -> relayDownload(download, upstream, range, httpResponse, Function.identity()))
+                        .then()
+                        .onErrorResume(error -> !httpResponse.isCommitted(), error -> {
+                            logger.error("Failed to download video for job {}: {}", jobId, error.getMessage());
+                            return rejectFailedDownload(error, httpResponse);
+                        });
                 } else {
                     logger.warn("Video not ready for download - Job: {}, Status: {}", jobId, response.getStatus());
-                    return Mono.just(ResponseEntity.badRequest()
-                        .body(new InputStreamResource(InputStream.nullInputStream())));
+                    return reject(httpResponse, HttpStatus.BAD_REQUEST);
                 }
             })
-            .onErrorReturn(ResponseEntity.internalServerError()
-                .body(new InputStreamResource(InputStream.nullInputStream())));
+            .onErrorResume(error -> !httpResponse.isCommitted(), error -> reject(httpResponse, HttpStatus.INTERNAL_SERVER_ERROR));
+    }
+    
+    /**
+     * Forward a range request to the upstream, without writing the partial content to the cache
+     */
+    private Mono<Void> relayRange(String jobId, String generationId, String download, HttpRange range,
+                                  ServerHttpResponse httpResponse) {
+        return soraVideoService.downloadVideoContent(jobId, generationId, rangeHeader(range),
+                upstream -> relayDownload(download, upstream, range, httpResponse, Function.identity()))
+            .then();
+    }
+    
+    /**
+     * Download a video into the cache after a range request missed it, so later seeks are served from disk
+     * The stored copy keeps the upstream layout: the player that sent the range already holds upstream
+     * bytes, and ranges answered from a rewritten copy would not line up with them.
+     */
+    private void fillInBackground(String jobId, String generationId, String expiresAt) {
+        videoCacheService.fill(generationId, expiresAt, fullContent(jobId, generationId), false)
+            .subscribe(video -> { }, error -> logger.warn("Could not cache video for job {}: {}", jobId, error.getMessage()));
+    }
+    
+    private Flux<DataBuffer> fullContent(String jobId, String generationId) {
+        return soraVideoService.downloadVideoContent(jobId, generationId, null, ResponseEntity::getBody);
+    }
+    
+    /**
+     * Generation ID of one variant of a completed job
+     * Records written before variants were supported only know the first generation.
+     */
+    private static String generationIdOf(VideoResponse response, int variant) {
+        if (variant == 0) {
+            return response.getGenerationId();
+        }
+        List<String> generationIds = response.getGenerationIds();
+        return generationIds != null && variant > 0 && variant < generationIds.size() ? generationIds.get(variant) : null;
+    }
+    
+    /**
+     * Relay a streaming upstream download to the client
+     * A range the upstream answered with 206 is passed through as is. If the upstream ignored the
+     * range and sent the whole video, the full content still goes through the cache and a range
+     * running to the end is served by skipping ahead; any other range gets the full 200 response.
+     */
+    private Mono<Void> relayDownload(String jobId, ResponseEntity<Flux<DataBuffer>> upstream, HttpRange range,
+                                     ServerHttpResponse httpResponse, Function<Flux<DataBuffer>, Flux<DataBuffer>> cache) {
+        HttpHeaders headers = httpResponse.getHeaders();
+        headers.addAll(downloadHeaders(jobId));
+        long contentLength = upstream.getHeaders().getContentLength();
+        
+        if (upstream.getStatusCode().value() == HttpStatus.PARTIAL_CONTENT.value()) {
+            String contentRange = upstream.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE);
+            if (contentRange != null) {
+                headers.set(HttpHeaders.CONTENT_RANGE, contentRange);
+            }
+            if (contentLength >= 0) {
+                headers.setContentLength(contentLength);
+            }
+            httpResponse.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+            logger.info("Streaming range {} for job: {}", contentRange, jobId);
+            return httpResponse.writeWith(upstream.getBody());
+        }
+        
+        Flux<DataBuffer> content = cache.apply(upstream.getBody());
+        if (range != null && contentLength > 0) {
+            long start = range.getRangeStart(contentLength);
+            long end = range.getRangeEnd(contentLength);
+            if (start > 0 && start < contentLength && end == contentLength - 1) {
+                setContentRange(httpResponse, start, end, contentLength);
+                logger.info("Streaming bytes {}-{} of {} for job: {}", start, end, contentLength, jobId);
+                return httpResponse.writeWith(DataBufferUtils.skipUntilByteCount(content, start));
+            }
+        }
+        if (contentLength >= 0) {
+            headers.setContentLength(contentLength);
+        }
+        
+        logger.info("Streaming download for job: {} ({} bytes announced)", jobId, contentLength);
+        return httpResponse.writeWith(content);
+    }
+    
+    private static Mono<Void> rejectFailedDownload(Throwable error, ServerHttpResponse httpResponse) {
+        if (error instanceof WebClientResponseException upstream
+            && upstream.getStatusCode().value() == HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value()) {
+            // The range lies beyond the end of the video: pass on the upstream answer with its size
+            String contentRange = upstream.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE);
+            httpResponse.getHeaders().clear();
+            if (contentRange != null) {
+                httpResponse.getHeaders().set(HttpHeaders.CONTENT_RANGE, contentRange);
+            }
+            httpResponse.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+            return httpResponse.setComplete();
+        }
+        return reject(httpResponse, SoraVideoService.isRejectedLocally(error)
+            // Upstream is unhealthy or saturated: tell the client to come back later
+            ? HttpStatus.SERVICE_UNAVAILABLE
+            : HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+    
+    /**
+     * Serve a video, or one range of it, from the local cache, streamed from disk
+     * The file region is handed to Reactor Netty, which only uses sendfile when no TLS or
+     * compression handler is in the connection's pipeline (server.compression.enabled adds one);
+     * otherwise it reads the file in chunks. Either way the video is never held in memory whole.
+     */
+    private Mono<Void> serveCachedVideo(String jobId, VideoCacheService.CachedVideo video, HttpRange range,
+                                        ServerHttpResponse httpResponse) {
+        long size = video.getSize();
+        long start = 0;
+        long end = size - 1;
+        if (range != null) {
+            start = range.getRangeStart(size);
+            end = Math.min(range.getRangeEnd(size), size - 1);
+            if (start >= size || start > end) {
+                logger.info("Unsatisfiable range {} for job: {} ({} bytes)", range, jobId, size);
+                httpResponse.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                httpResponse.setStatusCode(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                return httpResponse.setComplete();
+            }
+        }
+        
+        httpResponse.getHeaders().addAll(downloadHeaders(jobId));
+        if (range != null) {
+            setContentRange(httpResponse, start, end, size);
+        } else {
+            httpResponse.getHeaders().setContentLength(size);
+        }
+        
+        logger.info("Serving cached video for job: {} (bytes {}-{} of {})", jobId, start, end, size);
+        
+        long count = end - start + 1;
+        if (httpResponse instanceof ZeroCopyHttpOutputMessage zeroCopy) {
+            return zeroCopy.writeWith(video.getPath(), start, count);
+        }
+        Flux<DataBuffer> file = DataBufferUtils.read(video.getPath(), httpResponse.bufferFactory(), DOWNLOAD_BUFFER_SIZE);
+        return httpResponse.writeWith(DataBufferUtils.takeUntilByteCount(DataBufferUtils.skipUntilByteCount(file, start), count));
+    }
+    
+    /**
+     * Serve a range from a video that was just downloaded into the cache, under the ETag of the stored layout
+     */
+    private Mono<Void> serveFilledVideo(String jobId, VideoCacheService.CachedVideo video, ServerWebExchange exchange) {
+        String etag = etag(video.getGenerationId(), video.isRemuxed());
+        exchange.getResponse().getHeaders().setETag(etag);
+        return serveCachedVideo(jobId, video, requestedRange(exchange.getRequest(), etag), exchange.getResponse());
+    }
+    
+    /**
+     * Answer a conditional request from the ETag, and from the completion time of jobs created by this server
+     */
+    private boolean notModified(ServerWebExchange exchange, String etag, String jobId) {
+        Optional<Instant> completedAt = jobRegistry.find(jobId).map(JobRecord::getUpdatedAt);
+        return completedAt.isPresent()
+            ? exchange.checkNotModified(etag, completedAt.get())
+            : exchange.checkNotModified(etag);
+    }
+    
+    /**
+     * The single byte range to serve, or null for the full video
+     * Multiple ranges, malformed headers and ranges for an outdated copy (If-Range) get the full video.
+     */
+    private static HttpRange requestedRange(ServerHttpRequest request, String etag) {
+        String ifRange = request.getHeaders().getFirst(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = request.getHeaders().getRange();
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+    
+    private static String etag(String id, boolean remuxed) {
+        return "\"" + id + (remuxed ? "-faststart" : "") + "\"";
+    }
+    
+    private static String rangeHeader(HttpRange range) {
+        return range != null ? HttpRange.toString(List.of(range)) : null;
+    }
+    
+    private static void setContentRange(ServerHttpResponse httpResponse, long start, long end, long size) {
+        httpResponse.setStatusCode(HttpStatus.PARTIAL_CONTENT);
+        httpResponse.getHeaders().set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        httpResponse.getHeaders().setContentLength(end - start + 1);
+    }
+    
+    /**
+     * Browsers may keep a video until the upstream copy expires; it is private to the user who generated it
+     */
+    private CacheControl cacheControl(String expiresAt) {
+        Instant expiry = VideoCacheService.parseExpiry(expiresAt);
+        Duration maxAge = expiry != null ? Duration.between(Instant.now(), expiry) : downloadMaxAge;
+        if (maxAge.compareTo(downloadMaxAge) > 0) {
+            maxAge = downloadMaxAge;
+        }
+        if (maxAge.isNegative() || maxAge.isZero()) {
+            return CacheControl.noCache().cachePrivate();
+        }
+        return CacheControl.maxAge(maxAge).cachePrivate().immutable();
+    }
+    
+    /**
+     * End a download that failed before any content was sent with an error status and no body
+     */
+    private static Mono<Void> reject(ServerHttpResponse httpResponse, HttpStatus status) {
+        httpResponse.getHeaders().clear();
+        httpResponse.setStatusCode(status);
+        return httpResponse.setComplete();
+    }
+    
+    private HttpHeaders downloadHeaders(String jobId) {
+        // The filename is stable so a resumed download continues the same file
+        String filename = String.format("sora_video_%s.mp4", jobId);
+        
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        headers.setContentType(VIDEO_MP4);
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        return headers;
     }
 }
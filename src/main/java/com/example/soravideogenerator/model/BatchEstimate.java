@@ -0,0 +1,132 @@
+package com.example.soravideogenerator.model;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Estimated cost of a batch of generation requests, priced against one price sheet version
+ */
+public class BatchEstimate {
+    
+    private String priceSheetVersion;
+    private int count;
+    private BigDecimal estimatedTotal;
+    private BigDecimal minTotal;
+    private BigDecimal maxTotal;
+    private List<Item> items;
+    
+    public BatchEstimate() {}
+    
+    public String getPriceSheetVersion() {
+        return priceSheetVersion;
+    }
+    
+    public void setPriceSheetVersion(String priceSheetVersion) {
+        this.priceSheetVersion = priceSheetVersion;
+    }
+    
+    public int getCount() {
+        return count;
+    }
+    
+    public void setCount(int count) {
+        this.count = count;
+    }
+    
+    public BigDecimal getEstimatedTotal() {
+        return estimatedTotal;
+    }
+    
+    public void setEstimatedTotal(BigDecimal estimatedTotal) {
+        this.estimatedTotal = estimatedTotal;
+    }
+    
+    public BigDecimal getMinTotal() {
+        return minTotal;
+    }
+    
+    public void setMinTotal(BigDecimal minTotal) {
+        this.minTotal = minTotal;
+    }
+    
+    public BigDecimal getMaxTotal() {
+        return maxTotal;
+    }
+    
+    public void setMaxTotal(BigDecimal maxTotal) {
+        this.maxTotal = maxTotal;
+    }
+    
+    public List<Item> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+    
+    /**
+     * Estimate for a single request within a batch
+     */
+    public static class Item {
+        private int index;
+        private String resolution;
+        private int duration;
+        private int variants = 1;
+        private BigDecimal estimatedCost;
+        
+        public Item() {}
+        
+        public Item(int index, String resolution, int duration, BigDecimal estimatedCost) {
+            this.index = index;
+            this.resolution = resolution;
+            this.duration = duration;
+            this.estimatedCost = estimatedCost;
+        }
+        
+        public Item(int index, String resolution, int duration, int variants, BigDecimal estimatedCost) {
+            this(index, resolution, duration, estimatedCost);
+            this.variants = variants;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public void setIndex(int index) {
+            this.index = index;
+        }
+        
+        public String getResolution() {
+            return resolution;
+        }
+        
+        public void setResolution(String resolution) {
+            this.resolution = resolution;
+        }
+        
+        public int getDuration() {
+            return duration;
+        }
+        
+        public void setDuration(int duration) {
+            this.duration = duration;
+        }
+        
+        public int getVariants() {
+            return variants;
+        }
+        
+        public void setVariants(int variants) {
+            this.variants = variants;
+        }
+        
+        public BigDecimal getEstimatedCost() {
+            return estimatedCost;
+        }
+        
+        public void setEstimatedCost(BigDecimal estimatedCost) {
+            this.estimatedCost = estimatedCost;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.soravideogenerator.model;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+/**
+ * Request model for submitting several video generations in one call
+ */
+public class BatchRequest {
+    
+    @NotEmpty(message = "A batch must contain at least one request")
+    @Size(max = 500, message = "A batch cannot contain more than 500 requests")
+    private List<@Valid VideoRequest> requests;
+    
+    public BatchRequest() {}
+    
+    public BatchRequest(List<VideoRequest> requests) {
+        this.requests = requests;
+    }
+    
+    public List<VideoRequest> getRequests() {
+        return requests;
+    }
+    
+    public void setRequests(List<VideoRequest> requests) {
+        this.requests = requests;
+    }
+}
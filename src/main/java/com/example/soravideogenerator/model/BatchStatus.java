@@ -0,0 +1,146 @@
+package com.example.soravideogenerator.model;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Aggregate progress and per-item results of a batch submission
+ */
+public class BatchStatus {
+    
+    private String batchId;
+    private Instant createdAt;
+    private int total;
+    private int pending;
+    private int submitted;
+    private int failed;
+    private int completed;
+    private List<Item> items;
+    
+    public BatchStatus() {}
+    
+    public String getBatchId() {
+        return batchId;
+    }
+    
+    public void setBatchId(String batchId) {
+        this.batchId = batchId;
+    }
+    
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public int getTotal() {
+        return total;
+    }
+    
+    public void setTotal(int total) {
+        this.total = total;
+    }
+    
+    public int getPending() {
+        return pending;
+    }
+    
+    public void setPending(int pending) {
+        this.pending = pending;
+    }
+    
+    public int getSubmitted() {
+        return submitted;
+    }
+    
+    public void setSubmitted(int submitted) {
+        this.submitted = submitted;
+    }
+    
+    public int getFailed() {
+        return failed;
+    }
+    
+    public void setFailed(int failed) {
+        this.failed = failed;
+    }
+    
+    public int getCompleted() {
+        return completed;
+    }
+    
+    public void setCompleted(int completed) {
+        this.completed = completed;
+    }
+    
+    public List<Item> getItems() {
+        return items;
+    }
+    
+    public void setItems(List<Item> items) {
+        this.items = items;
+    }
+    
+    /**
+     * Result of a single request within a batch
+     */
+    public static class Item {
+        private int index;
+        private String state;
+        private String jobId;
+        private String jobStatus;
+        private String message;
+        
+        public Item() {}
+        
+        public Item(int index, String state, String jobId, String jobStatus, String message) {
+            this.index = index;
+            this.state = state;
+            this.jobId = jobId;
+            this.jobStatus = jobStatus;
+            this.message = message;
+        }
+        
+        public int getIndex() {
+            return index;
+        }
+        
+        public void setIndex(int index) {
+            this.index = index;
+        }
+        
+        public String getState() {
+            return state;
+        }
+        
+        public void setState(String state) {
+            this.state = state;
+        }
+        
+        public String getJobId() {
+            return jobId;
+        }
+        
+        public void setJobId(String jobId) {
+            this.jobId = jobId;
+        }
+        
+        public String getJobStatus() {
+            return jobStatus;
+        }
+        
+        public void setJobStatus(String jobStatus) {
+            this.jobStatus = jobStatus;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        public void setMessage(String message) {
+            this.message = message;
+        }
+    }
+}
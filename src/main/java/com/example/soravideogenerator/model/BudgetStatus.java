@@ -0,0 +1,102 @@
+package com.example.soravideogenerator.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Budget usage in the current window, for the caller and for the whole service
+ */
+public class BudgetStatus {
+    
+    private boolean enabled;
+    private String principal;
+    private Instant windowEnd;
+    private Usage global;
+    private Usage principalUsage;
+    
+    public BudgetStatus() {}
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+    
+    public String getPrincipal() {
+        return principal;
+    }
+    
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+    
+    public Instant getWindowEnd() {
+        return windowEnd;
+    }
+    
+    public void setWindowEnd(Instant windowEnd) {
+        this.windowEnd = windowEnd;
+    }
+    
+    public Usage getGlobal() {
+        return global;
+    }
+    
+    public void setGlobal(Usage global) {
+        this.global = global;
+    }
+    
+    public Usage getPrincipalUsage() {
+        return principalUsage;
+    }
+    
+    public void setPrincipalUsage(Usage principalUsage) {
+        this.principalUsage = principalUsage;
+    }
+    
+    /**
+     * Amounts in USD; limit and remaining are null when the budget is unlimited
+     */
+    public static class Usage {
+        private BigDecimal limit;
+        private BigDecimal reserved;
+        private BigDecimal spent;
+        private BigDecimal remaining;
+        
+        public Usage() {}
+        
+        public BigDecimal getLimit() {
+            return limit;
+        }
+        
+        public void setLimit(BigDecimal limit) {
+            this.limit = limit;
+        }
+        
+        public BigDecimal getReserved() {
+            return reserved;
+        }
+        
+        public void setReserved(BigDecimal reserved) {
+            this.reserved = reserved;
+        }
+        
+        public BigDecimal getSpent() {
+            return spent;
+        }
+        
+        public void setSpent(BigDecimal spent) {
+            this.spent = spent;
+        }
+        
+        public BigDecimal getRemaining() {
+            return remaining;
+        }
+        
+        public void setRemaining(BigDecimal remaining) {
+            this.remaining = remaining;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.soravideogenerator.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Public view of a locally recorded job
+ * Leaves out the prompt and the principal, which only the submitter should see; anyone who knows
+ * a job ID can read this.
+ */
+public class JobDetails {
+
+    private final String jobId;
+    private final String resolution;
+    private final Integer duration;
+    private final Integer variants;
+    private final BigDecimal estimatedCost;
+    private final String status;
+    private final String generationId;
+    private final List<String> generationIds;
+    private final String videoUrl;
+    private final String expiresAt;
+    private final String endpoint;
+    private final Instant createdAt;
+    private final Instant updatedAt;
+    private final List<JobRecord.StatusChange> history;
+
+    private JobDetails(JobRecord record) {
+        this.jobId = record.getJobId();
+        this.resolution = record.getResolution();
+        this.duration = record.getDuration();
+        this.variants = record.getVariants();
+        this.estimatedCost = record.getEstimatedCost();
+        this.status = record.getStatus();
+        this.generationId = record.getGenerationId();
+        this.generationIds = record.getGenerationIds();
+        this.videoUrl = record.getVideoUrl();
+        this.expiresAt = record.getExpiresAt();
+        this.endpoint = record.getEndpoint();
+        this.createdAt = record.getCreatedAt();
+        this.updatedAt = record.getUpdatedAt();
+        this.history = List.copyOf(record.getHistory());
+    }
+
+    public static JobDetails from(JobRecord record) {
+        return new JobDetails(record);
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    public Integer getVariants() {
+        return variants;
+    }
+
+    public BigDecimal getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getGenerationId() {
+        return generationId;
+    }
+
+    public List<String> getGenerationIds() {
+        return generationIds;
+    }
+
+    public String getVideoUrl() {
+        return videoUrl;
+    }
+
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public List<JobRecord.StatusChange> getHistory() {
+        return history;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.soravideogenerator.model;
+
+/**
+ * Priority class of a principal's jobs in the submission queue, highest first
+ */
+public enum JobPriority {
+
+    HIGH,
+    NORMAL,
+    LOW;
+
+    /**
+     * The next lower class, used for background submissions such as batches
+     */
+    public JobPriority lower() {
+        return this == HIGH ? NORMAL : LOW;
+    }
+}
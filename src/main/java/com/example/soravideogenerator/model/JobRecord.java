@@ -0,0 +1,245 @@
+package com.example.soravideogenerator.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Locally persisted record of a generation job created by this server
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class JobRecord {
+
+    private String jobId;
+    private String prompt;
+    private String resolution;
+    private Integer duration;
+    private Integer variants;
+    private BigDecimal estimatedCost;
+    private String principal;
+    private String status;
+    private String generationId;
+    private List<String> generationIds;
+    private String videoUrl;
+    private String expiresAt;
+    private String endpoint;
+    private Instant createdAt;
+    private Instant updatedAt;
+    private List<StatusChange> history = new ArrayList<>();
+
+    public JobRecord() {}
+
+    public JobRecord(String jobId, VideoRequest request, BigDecimal estimatedCost) {
+        this.jobId = jobId;
+        this.prompt = request.getPrompt();
+        this.resolution = request.getResolution();
+        this.duration = request.getDuration();
+        this.variants = request.getVariants();
+        this.estimatedCost = estimatedCost;
+    }
+
+    /**
+     * Copy of this record, so readers never observe a record while it is being updated
+     */
+    public JobRecord copy() {
+        JobRecord copy = new JobRecord();
+        copy.jobId = jobId;
+        copy.prompt = prompt;
+        copy.resolution = resolution;
+        copy.duration = duration;
+        copy.variants = variants;
+        copy.estimatedCost = estimatedCost;
+        copy.principal = principal;
+        copy.status = status;
+        copy.generationId = generationId;
+        copy.generationIds = generationIds;
+        copy.videoUrl = videoUrl;
+        copy.expiresAt = expiresAt;
+        copy.endpoint = endpoint;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        copy.history = new ArrayList<>(history);
+        return copy;
+    }
+
+    /**
+     * Status response equivalent to what Azure last reported for this job
+     */
+    public VideoResponse toVideoResponse() {
+        VideoResponse response = new VideoResponse(jobId, status);
+        response.setGenerationId(generationId);
+        response.setGenerationIds(generationIds);
+        response.setVideoUrl(videoUrl);
+        response.setExpiresAt(expiresAt);
+        response.setEndpoint(endpoint);
+        return response;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getPrompt() {
+        return prompt;
+    }
+
+    public void setPrompt(String prompt) {
+        this.prompt = prompt;
+    }
+
+    public String getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(String resolution) {
+        this.resolution = resolution;
+    }
+
+    public Integer getDuration() {
+        return duration;
+    }
+
+    public void setDuration(Integer duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Number of variants requested; records written before variants were supported have none
+     */
+    public Integer getVariants() {
+        return variants;
+    }
+
+    public void setVariants(Integer variants) {
+        this.variants = variants;
+    }
+
+    public BigDecimal getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public void setEstimatedCost(BigDecimal estimatedCost) {
+        this.estimatedCost = estimatedCost;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getGenerationId() {
+        return generationId;
+    }
+
+    public void setGenerationId(String generationId) {
+        this.generationId = generationId;
+    }
+
+    public List<String> getGenerationIds() {
+        return generationIds;
+    }
+
+    public void setGenerationIds(List<String> generationIds) {
+        this.generationIds = generationIds;
+    }
+
+    public String getVideoUrl() {
+        return videoUrl;
+    }
+
+    public void setVideoUrl(String videoUrl) {
+        this.videoUrl = videoUrl;
+    }
+
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(String expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Name of the Azure OpenAI endpoint the job was created on; null for jobs created before routing
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(Instant updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public List<StatusChange> getHistory() {
+        return history;
+    }
+
+    public void setHistory(List<StatusChange> history) {
+        this.history = history;
+    }
+
+    /**
+     * A status transition observed for a job
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class StatusChange {
+        private String status;
+        private Instant at;
+
+        public StatusChange() {}
+
+        public StatusChange(String status, Instant at) {
+            this.status = status;
+            this.at = at;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public void setStatus(String status) {
+            this.status = status;
+        }
+
+        public Instant getAt() {
+            return at;
+        }
+
+        public void setAt(Instant at) {
+            this.at = at;
+        }
+    }
+}
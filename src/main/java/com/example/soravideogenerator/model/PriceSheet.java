@@ -0,0 +1,100 @@
+package com.example.soravideogenerator.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * Versioned per-second price list for Sora, loaded from an external JSON file
+ * Resolutions with a single price use the same value for min and max.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class PriceSheet {
+    
+    private String version;
+    private String source;
+    private String currency = "USD";
+    private int maxDurationSeconds = 20;
+    private BigDecimal fallbackPerSecond;
+    private Map<String, Price> resolutions;
+    
+    public PriceSheet() {}
+    
+    public String getVersion() {
+        return version;
+    }
+    
+    public void setVersion(String version) {
+        this.version = version;
+    }
+    
+    public String getSource() {
+        return source;
+    }
+    
+    public void setSource(String source) {
+        this.source = source;
+    }
+    
+    public String getCurrency() {
+        return currency;
+    }
+    
+    public void setCurrency(String currency) {
+        this.currency = currency;
+    }
+    
+    public int getMaxDurationSeconds() {
+        return maxDurationSeconds;
+    }
+    
+    public void setMaxDurationSeconds(int maxDurationSeconds) {
+        this.maxDurationSeconds = maxDurationSeconds;
+    }
+    
+    public BigDecimal getFallbackPerSecond() {
+        return fallbackPerSecond;
+    }
+    
+    public void setFallbackPerSecond(BigDecimal fallbackPerSecond) {
+        this.fallbackPerSecond = fallbackPerSecond;
+    }
+    
+    public Map<String, Price> getResolutions() {
+        return resolutions;
+    }
+    
+    public void setResolutions(Map<String, Price> resolutions) {
+        this.resolutions = resolutions;
+    }
+    
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Price {
+        private BigDecimal minPerSecond;
+        private BigDecimal maxPerSecond;
+        
+        public Price() {}
+        
+        public Price(BigDecimal minPerSecond, BigDecimal maxPerSecond) {
+            this.minPerSecond = minPerSecond;
+            this.maxPerSecond = maxPerSecond;
+        }
+        
+        public BigDecimal getMinPerSecond() {
+            return minPerSecond;
+        }
+        
+        public void setMinPerSecond(BigDecimal minPerSecond) {
+            this.minPerSecond = minPerSecond;
+        }
+        
+        public BigDecimal getMaxPerSecond() {
+            return maxPerSecond;
+        }
+        
+        public void setMaxPerSecond(BigDecimal maxPerSecond) {
+            this.maxPerSecond = maxPerSecond;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.soravideogenerator.model;
+
+/**
+ * State of the submission queue, for the caller and for the whole service
+ */
+public class QueueStatus {
+
+    private boolean enabled;
+    private int maxActiveJobs;
+    private int activeJobs;
+    private int waiting;
+    private int capacity;
+    private long estimatedWaitSeconds;
+    private String principal;
+    private JobPriority priority;
+    private double weight;
+    private int principalActiveJobs;
+    private int principalWaiting;
+    private Integer position;
+
+    public QueueStatus() {}
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Jobs that may run upstream at the same time
+     */
+    public int getMaxActiveJobs() {
+        return maxActiveJobs;
+    }
+
+    public void setMaxActiveJobs(int maxActiveJobs) {
+        this.maxActiveJobs = maxActiveJobs;
+    }
+
+    public int getActiveJobs() {
+        return activeJobs;
+    }
+
+    public void setActiveJobs(int activeJobs) {
+        this.activeJobs = activeJobs;
+    }
+
+    public int getWaiting() {
+        return waiting;
+    }
+
+    public void setWaiting(int waiting) {
+        this.waiting = waiting;
+    }
+
+    /**
+     * Submissions that may wait at the same time before new ones are rejected
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Estimated wait for a job submitted now at normal priority
+     */
+    public long getEstimatedWaitSeconds() {
+        return estimatedWaitSeconds;
+    }
+
+    public void setEstimatedWaitSeconds(long estimatedWaitSeconds) {
+        this.estimatedWaitSeconds = estimatedWaitSeconds;
+    }
+
+    public String getPrincipal() {
+        return principal;
+    }
+
+    public void setPrincipal(String principal) {
+        this.principal = principal;
+    }
+
+    public JobPriority getPriority() {
+        return priority;
+    }
+
+    public void setPriority(JobPriority priority) {
+        this.priority = priority;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    public int getPrincipalActiveJobs() {
+        return principalActiveJobs;
+    }
+
+    public void setPrincipalActiveJobs(int principalActiveJobs) {
+        this.principalActiveJobs = principalActiveJobs;
+    }
+
+    public int getPrincipalWaiting() {
+        return principalWaiting;
+    }
+
+    public void setPrincipalWaiting(int principalWaiting) {
+        this.principalWaiting = principalWaiting;
+    }
+
+    /**
+     * Number of submissions ahead of the caller's oldest waiting one, or null if none is waiting
+     */
+    public Integer getPosition() {
+        return position;
+    }
+
+    public void setPosition(Integer position) {
+        this.position = position;
+    }
+}
@@ -13,7 +13,7 @@ public class SoraApiRequest {
     @JsonProperty("n_seconds")
     private String nSeconds;
     @JsonProperty("n_variants")
-    private final String nVariants = "1";
+    private String nVariants = "1";
     
     private String prompt;
     
@@ -26,6 +26,11 @@ public class SoraApiRequest {
         this.nSeconds = duration;
     }
     
+    public SoraApiRequest(String prompt, String width, String height, String duration, String variants) {
+        this(prompt, width, height, duration);
+        this.nVariants = variants;
+    }
+    
     public String getModel() {
         return model;
     }
@@ -58,6 +63,10 @@ public class SoraApiRequest {
         return nVariants;
     }
     
+    public void setNVariants(String nVariants) {
+        this.nVariants = nVariants;
+    }
+    
     public String getPrompt() {
         return prompt;
     }
@@ -0,0 +1,71 @@
+package com.example.soravideogenerator.model;
+
+/**
+ * Container metadata of a generated video, read from its MP4 boxes
+ */
+public class VideoMetadata {
+
+    private double durationSeconds;
+    private int width;
+    private int height;
+    private long bitrate;
+    private String codec;
+    private boolean faststart;
+
+    public double getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public void setDurationSeconds(double durationSeconds) {
+        this.durationSeconds = durationSeconds;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void setWidth(int width) {
+        this.width = width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setHeight(int height) {
+        this.height = height;
+    }
+
+    /**
+     * Overall bitrate in bits per second
+     */
+    public long getBitrate() {
+        return bitrate;
+    }
+
+    public void setBitrate(long bitrate) {
+        this.bitrate = bitrate;
+    }
+
+    /**
+     * Sample entry type of the video track, e.g. avc1 or hvc1
+     */
+    public String getCodec() {
+        return codec;
+    }
+
+    public void setCodec(String codec) {
+        this.codec = codec;
+    }
+
+    /**
+     * Whether the moov box precedes the media data, so playback can start before the download ends
+     */
+    public boolean isFaststart() {
+        return faststart;
+    }
+
+    public void setFaststart(boolean faststart) {
+        this.faststart = faststart;
+    }
+}
@@ -20,6 +20,8 @@ import java.lang.annotation.Target;
 @ValidDurationForResolution
 public class VideoRequest {
     
+    public static final int MAX_VARIANTS = 4;
+    
     @NotBlank(message = "Prompt cannot be empty")
     @Size(max = 1000, message = "Prompt cannot exceed 1000 characters")
     private String prompt;
@@ -32,6 +34,12 @@ public class VideoRequest {
     @Max(value = 20, message = "Duration cannot exceed 20 seconds")
     private Integer duration;
     
+    // Variants are generated by one job and billed per video
+    @NotNull(message = "Number of variants must be specified")
+    @Min(value = 1, message = "At least one variant must be requested")
+    @Max(value = MAX_VARIANTS, message = "No more than 4 variants can be requested")
+    private Integer variants = 1;
+    
     public VideoRequest() {
         // Set defaults
         this.resolution = "1080x1080";
@@ -44,6 +52,11 @@ public class VideoRequest {
         this.duration = duration;
     }
     
+    public VideoRequest(String prompt, String resolution, Integer duration, Integer variants) {
+        this(prompt, resolution, duration);
+        this.variants = variants;
+    }
+    
     public String getPrompt() {
         return prompt;
     }
@@ -68,6 +81,17 @@ public class VideoRequest {
         this.duration = duration;
     }
     
+    /**
+     * Number of videos to generate from the prompt in one job
+     */
+    public Integer getVariants() {
+        return variants;
+    }
+    
+    public void setVariants(Integer variants) {
+        this.variants = variants;
+    }
+    
     /**
      * Extract width from resolution string (e.g., "1080x1920" -> 1080)
      */
@@ -0,0 +1,53 @@
+package com.example.soravideogenerator.model;
+
+/**
+ * Output resolutions supported by Sora, as offered on the generation form
+ */
+public enum VideoResolution {
+    
+    R480X480("480x480"),
+    R480X854("480x854"),
+    R854X480("854x480"),
+    R720X720("720x720"),
+    R720X1280("720x1280"),
+    R1280X720("1280x720"),
+    R1080X1080("1080x1080"),
+    R1080X1920("1080x1920"),
+    R1920X1080("1920x1080");
+    
+    private final String label;
+    
+    VideoResolution(String label) {
+        this.label = label;
+    }
+    
+    /**
+     * Resolution as used in requests (e.g., "1080x1920")
+     */
+    public String getLabel() {
+        return label;
+    }
+    
+    /**
+     * Look up a resolution by its label without allocating
+     * @param label Resolution string (e.g., "1080x1920")
+     * @return The matching resolution, or null if the label is not supported
+     */
+    public static VideoResolution fromLabel(String label) {
+        if (label == null) {
+            return null;
+        }
+        return switch (label) {
+            case "480x480" -> R480X480;
+            case "480x854" -> R480X854;
+            case "854x480" -> R854X480;
+            case "720x720" -> R720X720;
+            case "720x1280" -> R720X1280;
+            case "1280x720" -> R1280X720;
+            case "1080x1080" -> R1080X1080;
+            case "1080x1920" -> R1080X1920;
+            case "1920x1080" -> R1920X1080;
+            default -> null;
+        };
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.soravideogenerator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.util.List;
+
 /**
  * Response model for video generation result
  */
@@ -9,8 +13,12 @@ public class VideoResponse {
     private String status;
     private String videoUrl;
     private String generationId;
+    private List<String> generationIds;
+    private String expiresAt;
     private String message;
     private boolean success;
+    private VideoMetadata metadata;
+    private String endpoint;
     
     public VideoResponse() {}
     
@@ -57,6 +65,25 @@ public class VideoResponse {
         this.generationId = generationId;
     }
     
+    /**
+     * IDs of every generated variant, in the order Azure returned them; generationId is the first
+     */
+    public List<String> getGenerationIds() {
+        return generationIds;
+    }
+    
+    public void setGenerationIds(List<String> generationIds) {
+        this.generationIds = generationIds;
+    }
+    
+    public String getExpiresAt() {
+        return expiresAt;
+    }
+    
+    public void setExpiresAt(String expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+    
     public String getMessage() {
         return message;
     }
@@ -72,4 +99,45 @@ public class VideoResponse {
     public void setSuccess(boolean success) {
         this.success = success;
     }
+    
+    /**
+     * Duration, dimensions and bitrate of the video, known once it has been downloaded to the local cache
+     */
+    public VideoMetadata getMetadata() {
+        return metadata;
+    }
+    
+    public void setMetadata(VideoMetadata metadata) {
+        this.metadata = metadata;
+    }
+    
+    /**
+     * Name of the Azure OpenAI endpoint that owns the job; internal routing detail, not part of the API
+     */
+    @JsonIgnore
+    public String getEndpoint() {
+        return endpoint;
+    }
+    
+    public void setEndpoint(String endpoint) {
+        this.endpoint = endpoint;
+    }
+    
+    /**
+     * A shallow copy, for callers that add details to a response shared with other requests
+     */
+    public VideoResponse copy() {
+        VideoResponse copy = new VideoResponse();
+        copy.jobId = jobId;
+        copy.status = status;
+        copy.videoUrl = videoUrl;
+        copy.generationId = generationId;
+        copy.generationIds = generationIds;
+        copy.expiresAt = expiresAt;
+        copy.message = message;
+        copy.success = success;
+        copy.metadata = metadata;
+        copy.endpoint = endpoint;
+        return copy;
+    }
 }
@@ -0,0 +1,163 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.BatchRequest;
+import com.example.soravideogenerator.model.BatchStatus;
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Submits batches of generation requests to Azure in the background
+ * Items are submitted with bounded concurrency, so a slow or retried item only holds one slot,
+ * and all batches share one pacer that caps the overall submission rate. Batch items queue for
+ * the upstream quota as background work, below interactive submissions of the same principal.
+ */
+@Service
+public class BatchSubmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchSubmissionService.class);
+
+    private static final String STATE_PENDING = "pending";
+    private static final String STATE_SUBMITTED = "submitted";
+    private static final String STATE_FAILED = "failed";
+
+    private final JobSubmissionService jobSubmissionService;
+    private final JobRegistry jobRegistry;
+    private final int maxConcurrency;
+    private final long submissionIntervalNanos;
+    private final Duration retention;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final AtomicLong nextSlotNanos = new AtomicLong(System.nanoTime());
+
+    @Autowired
+    public BatchSubmissionService(JobSubmissionService jobSubmissionService, JobRegistry jobRegistry,
+                                  @Value("${video.batch.max-concurrency:4}") int maxConcurrency,
+                                  @Value("${video.batch.max-submissions-per-second:2}") double maxSubmissionsPerSecond,
+                                  @Value("${video.batch.retention:24h}") Duration retention) {
+        this.jobSubmissionService = jobSubmissionService;
+        this.jobRegistry = jobRegistry;
+        this.maxConcurrency = maxConcurrency;
+        this.submissionIntervalNanos = (long) (1_000_000_000L / maxSubmissionsPerSecond);
+        this.retention = retention;
+    }
+
+    /**
+     * Accept a batch and start submitting its requests in the background
+     * @param batchRequest The requests to submit
+     * @param principal The user or team submitting the batch, or null if anonymous
+     * @return The initial status of the batch, with every item pending
+     */
+    public BatchStatus submit(BatchRequest batchRequest, String principal) {
+        List<VideoRequest> requests = List.copyOf(batchRequest.getRequests());
+        Batch batch = new Batch(UUID.randomUUID().toString(), requests);
+        batches.put(batch.batchId, batch);
+        logger.info("Accepted batch {} with {} requests", batch.batchId, requests.size());
+
+        Flux.range(0, requests.size())
+            .flatMap(index -> awaitSubmissionSlot()
+                .then(Mono.defer(() -> jobSubmissionService.submit(requests.get(index), null, principal, true)))
+                .onErrorResume(error -> Mono.just(new VideoResponse(error.getMessage(), false)))
+                .doOnNext(response -> batch.results.set(index, response)),
+                maxConcurrency)
+            .doOnComplete(() -> logger.info("Finished submitting batch {}", batch.batchId))
+            .subscribe();
+
+        return toStatus(batch);
+    }
+
+    /**
+     * Get the progress of a batch
+     * @param batchId The batch ID returned on submission
+     * @return The batch status, or empty if the batch is unknown or has expired
+     */
+    public Optional<BatchStatus> getStatus(String batchId) {
+        return Optional.ofNullable(batches.get(batchId)).map(this::toStatus);
+    }
+
+    @Scheduled(fixedDelayString = "${video.batch.sweep-interval:10m}")
+    public void evictExpired() {
+        Instant cutoff = Instant.now().minus(retention);
+        batches.values().removeIf(batch -> batch.createdAt.isBefore(cutoff));
+    }
+
+    /**
+     * Reserve the next submission slot on the shared pacer and wait for it
+     */
+    private Mono<Void> awaitSubmissionSlot() {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            long slot = nextSlotNanos.getAndUpdate(next -> Math.max(next, now) + submissionIntervalNanos);
+            long delay = Math.max(slot, now) - now;
+            return delay == 0 ? Mono.empty() : Mono.delay(Duration.ofNanos(delay)).then();
+        });
+    }
+
+    private BatchStatus toStatus(Batch batch) {
+        BatchStatus status = new BatchStatus();
+        status.setBatchId(batch.batchId);
+        status.setCreatedAt(batch.createdAt);
+        status.setTotal(batch.results.length());
+
+        List<BatchStatus.Item> items = new ArrayList<>(batch.results.length());
+        int pending = 0;
+        int submitted = 0;
+        int failed = 0;
+        int completed = 0;
+        for (int i = 0; i < batch.results.length(); i++) {
+            VideoResponse response = batch.results.get(i);
+            if (response == null) {
+                pending++;
+                items.add(new BatchStatus.Item(i, STATE_PENDING, null, null, null));
+            } else if (!response.isSuccess()) {
+                failed++;
+                items.add(new BatchStatus.Item(i, STATE_FAILED, null, null, response.getMessage()));
+            } else {
+                submitted++;
+                String jobStatus = jobRegistry.find(response.getJobId())
+                    .map(JobRecord::getStatus)
+                    .orElse(response.getStatus());
+                if (JobStatusCache.isTerminal(jobStatus)) {
+                    completed++;
+                }
+                items.add(new BatchStatus.Item(i, STATE_SUBMITTED, response.getJobId(), jobStatus, null));
+            }
+        }
+        status.setPending(pending);
+        status.setSubmitted(submitted);
+        status.setFailed(failed);
+        status.setCompleted(completed);
+        status.setItems(items);
+        return status;
+    }
+
+    private static class Batch {
+        private final String batchId;
+        private final Instant createdAt = Instant.now();
+        private final AtomicReferenceArray<VideoResponse> results;
+
+        Batch(String batchId, List<VideoRequest> requests) {
+            this.batchId = batchId;
+            this.results = new AtomicReferenceArray<>(requests.size());
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.soravideogenerator.service;
+
+/**
+ * Thrown when a job's estimated cost does not fit in the remaining budget
+ */
+public class BudgetExceededException extends RuntimeException {
+
+    public BudgetExceededException(String message) {
+        super(message);
+    }
+}
@@ -1,27 +1,54 @@
 package com.example.soravideogenerator.service;
 
+import com.example.soravideogenerator.model.BatchEstimate;
+import com.example.soravideogenerator.model.PriceSheet;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Service for calculating estimated costs of Sora video generation
- * Based on Azure OpenAI Sora per-second pricing (June 2025)
+ * Prices come from a versioned price sheet (by default the bundled Azure OpenAI Sora pricing,
+ * June 2025). The sheet is precomputed into a {@link PricingTable}, and a changed sheet file is
+ * reloaded and swapped in atomically, so repricing needs no code change or restart.
  */
 @Service
 public class CostEstimationService {
-    
-    // Per-second pricing in USD (based on Azure OpenAI Sora pricing June 2025)
-    // Pricing covers 1-20 second duration tiers with some variations for higher resolutions
-    private static final BigDecimal COST_480_SQUARE_PER_SEC = new BigDecimal("0.15");    // 480x480
-    private static final BigDecimal COST_480P_PER_SEC = new BigDecimal("0.20");          // 480x854, 854x480
-    private static final BigDecimal COST_720_SQUARE_PER_SEC = new BigDecimal("0.30");    // 720x720
-    private static final BigDecimal COST_720P_MIN_PER_SEC = new BigDecimal("0.45");      // 720x1280, 1280x720 (min)
-    private static final BigDecimal COST_720P_MAX_PER_SEC = new BigDecimal("0.50");      // 720x1280, 1280x720 (max)
-    private static final BigDecimal COST_1080_SQUARE_MIN_PER_SEC = new BigDecimal("0.60"); // 1080x1080 (min)
-    private static final BigDecimal COST_1080_SQUARE_MAX_PER_SEC = new BigDecimal("0.75"); // 1080x1080 (max)
-    private static final BigDecimal COST_1080P_MIN_PER_SEC = new BigDecimal("1.30");     // 1080x1920, 1920x1080 (min)
-    private static final BigDecimal COST_1080P_MAX_PER_SEC = new BigDecimal("1.85");     // 1080x1920, 1920x1080 (max)
+
+    private static final Logger logger = LoggerFactory.getLogger(CostEstimationService.class);
+
+    private static final BigDecimal EXPENSIVE_THRESHOLD = new BigDecimal("25");
+    private static final BigDecimal HIGH_COST_THRESHOLD = new BigDecimal("15");
+    private static final BigDecimal NOTICE_THRESHOLD = new BigDecimal("8");
+
+    private final ObjectMapper objectMapper;
+    private final Resource priceSheet;
+
+    private volatile PricingTable table;
+    private volatile long loadedModified;
+
+    @Autowired
+    public CostEstimationService(ObjectMapper objectMapper,
+                                 @Value("${video.pricing.sheet:classpath:pricing/sora-prices.json}") Resource priceSheet) {
+        this.objectMapper = objectMapper;
+        this.priceSheet = priceSheet;
+        this.loadedModified = lastModified();
+        this.table = load();
+        logger.info("Loaded price sheet {} from {}", table.version(), priceSheet.getDescription());
+    }
       /**
      * Calculate estimated cost for video generation using per-second pricing
      * @param resolution Video resolution (e.g., "1080x1080")
@@ -29,35 +56,33 @@ public class CostEstimationService {
      * @return Estimated cost in USD
      */
     public BigDecimal calculateEstimatedCost(String resolution, int durationSeconds) {
-        BigDecimal costPerSecond = getCostPerSecond(resolution);
-        BigDecimal totalCost = costPerSecond.multiply(new BigDecimal(durationSeconds));
-        
-        return totalCost.setScale(2, RoundingMode.HALF_UP);
+        PricingTable current = table;
+        return current.estimate(current.row(resolution), durationSeconds);
     }
-    
+
     /**
-     * Get per-second cost based on video resolution
-     * For resolutions with variable pricing, uses the average of min/max
-     * @param resolution Video resolution string
-     * @return Cost per second for the specified resolution
+     * Calculate estimated cost for a job generating several variants, each billed as one video
+     * @param resolution Video resolution (e.g., "1080x1080")
+     * @param durationSeconds Duration in seconds
+     * @param variants Number of videos generated from the prompt
+     * @return Estimated cost in USD
      */
-    private BigDecimal getCostPerSecond(String resolution) {
-        if (resolution == null) return COST_1080P_MIN_PER_SEC; // Default to 1080p min pricing
-        
-        return switch (resolution) {
-            case "480x480" -> COST_480_SQUARE_PER_SEC;
-            case "480x854", "854x480" -> COST_480P_PER_SEC;
-            case "720x720" -> COST_720_SQUARE_PER_SEC;
-            case "720x1280", "1280x720" -> COST_720P_MIN_PER_SEC.add(COST_720P_MAX_PER_SEC)
-                                           .divide(new BigDecimal("2"), 2, RoundingMode.HALF_UP); // Average
-            case "1080x1080" -> COST_1080_SQUARE_MIN_PER_SEC.add(COST_1080_SQUARE_MAX_PER_SEC)
-                                .divide(new BigDecimal("2"), 2, RoundingMode.HALF_UP); // Average
-            case "1080x1920", "1920x1080" -> COST_1080P_MIN_PER_SEC.add(COST_1080P_MAX_PER_SEC)
-                                              .divide(new BigDecimal("2"), 2, RoundingMode.HALF_UP); // Average
-            default -> COST_1080P_MIN_PER_SEC; // Default to 1080p min pricing
-        };
+    public BigDecimal calculateEstimatedCost(String resolution, int durationSeconds, int variants) {
+        PricingTable current = table;
+        return PricingTable.fromMicros(current.estimateMicros(current.row(resolution), durationSeconds) * variants);
     }
-    
+
+    /**
+     * Estimated cost in micro-dollars, for arithmetic on many estimates without allocating
+     * @param resolution Video resolution (e.g., "1080x1080")
+     * @param durationSeconds Duration in seconds
+     * @return Estimated cost in millionths of a USD
+     */
+    public long estimateMicros(String resolution, int durationSeconds) {
+        PricingTable current = table;
+        return current.estimateMicros(current.row(resolution), durationSeconds);
+    }
+
     /**
      * Get cost range for resolutions with variable pricing
      * @param resolution Video resolution
@@ -65,26 +90,9 @@ public class CostEstimationService {
      * @return Array with [minCost, maxCost] or single cost for fixed pricing
      */
     public BigDecimal[] getCostRange(String resolution, int durationSeconds) {
-        BigDecimal duration = new BigDecimal(durationSeconds);
-        
-        return switch (resolution) {
-            case "720x1280", "1280x720" -> new BigDecimal[]{
-                COST_720P_MIN_PER_SEC.multiply(duration).setScale(2, RoundingMode.HALF_UP),
-                COST_720P_MAX_PER_SEC.multiply(duration).setScale(2, RoundingMode.HALF_UP)
-            };
-            case "1080x1080" -> new BigDecimal[]{
-                COST_1080_SQUARE_MIN_PER_SEC.multiply(duration).setScale(2, RoundingMode.HALF_UP),
-                COST_1080_SQUARE_MAX_PER_SEC.multiply(duration).setScale(2, RoundingMode.HALF_UP)
-            };
-            case "1080x1920", "1920x1080" -> new BigDecimal[]{
-                COST_1080P_MIN_PER_SEC.multiply(duration).setScale(2, RoundingMode.HALF_UP),
-                COST_1080P_MAX_PER_SEC.multiply(duration).setScale(2, RoundingMode.HALF_UP)
-            };
-            default -> {
-                BigDecimal cost = calculateEstimatedCost(resolution, durationSeconds);
-                yield new BigDecimal[]{cost, cost};
-            }
-        };
+        PricingTable current = table;
+        int row = current.row(resolution);
+        return new BigDecimal[]{current.minCost(row, durationSeconds), current.maxCost(row, durationSeconds)};
     }
       /**
      * Get cost breakdown details for display
@@ -93,44 +101,121 @@ public class CostEstimationService {
      * @return Formatted cost breakdown string
      */
     public String getCostBreakdown(String resolution, int durationSeconds) {
-        BigDecimal costPerSecond = getCostPerSecond(resolution);
-        BigDecimal totalCost = calculateEstimatedCost(resolution, durationSeconds);
-        BigDecimal[] costRange = getCostRange(resolution, durationSeconds);
-        
-        String costInfo;
-        if (costRange[0].equals(costRange[1])) {
-            // Fixed pricing
-            costInfo = String.format("$%.2f/sec × %ds = $%.2f", 
-                                   costPerSecond, durationSeconds, totalCost);
-        } else {
-            // Variable pricing - show range
-            costInfo = String.format("$%.2f-$%.2f (range: $%.2f-$%.2f)", 
-                                   totalCost, totalCost, costRange[0], costRange[1]);
+        PricingTable current = table;
+        return current.breakdown(resolution, current.row(resolution), durationSeconds);
+    }
+
+    /**
+     * Get cost breakdown details for display, with the total for every variant of the job
+     * @param resolution Video resolution
+     * @param durationSeconds Duration in seconds
+     * @param variants Number of videos generated from the prompt
+     * @return Formatted cost breakdown string
+     */
+    public String getCostBreakdown(String resolution, int durationSeconds, int variants) {
+        PricingTable current = table;
+        int row = current.row(resolution);
+        String breakdown = current.breakdown(resolution, row, durationSeconds);
+        if (variants <= 1) {
+            return breakdown;
         }
-        
-        return String.format(
-            "🎬 **Azure OpenAI Sora Video Generation Cost**%n%n" +
-            "• Resolution: %s%n" +
-            "• Duration: %d seconds%n" +
-            "• Rate: $%.2f per second%n" +
-            "• **Total cost: %s**%n%n" +
-            "💡 *Pricing based on Azure OpenAI Sora (June 2025)*%n" +
-            "📊 *Some resolutions have variable pricing within 1-20s tiers*",
-            resolution, durationSeconds, costPerSecond, costInfo
-        );
-    }    /**
+        return breakdown + String.format("%n%n🎞️ **%d variants × $%.2f = $%.2f**", variants,
+            current.estimate(row, durationSeconds),
+            PricingTable.fromMicros(current.estimateMicros(row, durationSeconds) * variants));
+    }
+
+    /**
+     * Price a whole batch of requests against one version of the price sheet
+     * @param requests The requests to price
+     * @return Per-request estimates and the totals for the batch
+     */
+    public BatchEstimate estimateBatch(List<VideoRequest> requests) {
+        PricingTable current = table;
+        List<BatchEstimate.Item> items = new ArrayList<>(requests.size());
+        long total = 0;
+        long min = 0;
+        long max = 0;
+        for (int i = 0; i < requests.size(); i++) {
+            VideoRequest request = requests.get(i);
+            int row = current.row(request.getResolution());
+            int duration = request.getDuration();
+            int variants = request.getVariants() != null ? request.getVariants() : 1;
+            long estimate = current.estimateMicros(row, duration) * variants;
+            total += estimate;
+            min += current.minMicros(row, duration) * variants;
+            max += current.maxMicros(row, duration) * variants;
+            items.add(new BatchEstimate.Item(i, request.getResolution(), duration, variants,
+                variants == 1 ? current.estimate(row, duration) : PricingTable.fromMicros(estimate)));
+        }
+
+        BatchEstimate estimate = new BatchEstimate();
+        estimate.setPriceSheetVersion(current.version());
+        estimate.setCount(requests.size());
+        estimate.setEstimatedTotal(PricingTable.fromMicros(total));
+        estimate.setMinTotal(PricingTable.fromMicros(min));
+        estimate.setMaxTotal(PricingTable.fromMicros(max));
+        estimate.setItems(items);
+        return estimate;
+    }
+
+    /**
+     * Version of the price sheet currently in use
+     */
+    public String getPriceSheetVersion() {
+        return table.version();
+    }
+
+    /**
      * Get cost warning message based on estimated cost
      * @param estimatedCost Estimated cost
      * @return Warning message or empty string
      */
     public String getCostWarning(BigDecimal estimatedCost) {
-        if (estimatedCost.compareTo(new BigDecimal("25")) > 0) {
+        if (estimatedCost.compareTo(EXPENSIVE_THRESHOLD) > 0) {
             return "🔥 EXPENSIVE ALERT: This video generation will cost over $25! Azure OpenAI Sora pricing escalates quickly for longer or higher-resolution videos. Consider shorter duration or lower resolution to significantly reduce costs.";
-        } else if (estimatedCost.compareTo(new BigDecimal("15")) > 0) {
+        } else if (estimatedCost.compareTo(HIGH_COST_THRESHOLD) > 0) {
             return "⚠️ High cost alert: This video generation will cost over $15. For reference, a 10-second 1080p video costs $13-$18.50. Consider optimizing your specifications.";
-        } else if (estimatedCost.compareTo(new BigDecimal("8")) > 0) {
+        } else if (estimatedCost.compareTo(NOTICE_THRESHOLD) > 0) {
             return "💡 Cost notice: This generation will cost over $8. Higher resolutions like 1080p can be expensive at $1.30-$1.85 per second.";
         }
         return "";
     }
+
+    /**
+     * Reload the price sheet when its file has changed
+     * An invalid sheet is rejected and the current prices stay in effect.
+     */
+    @Scheduled(fixedDelayString = "${video.pricing.reload-interval:30s}")
+    public void reloadIfChanged() {
+        long modified = lastModified();
+        if (modified == loadedModified) {
+            return;
+        }
+        loadedModified = modified;
+        try {
+            PricingTable reloaded = load();
+            String previous = table.version();
+            table = reloaded;
+            logger.info("Reloaded price sheet {} (was {})", reloaded.version(), previous);
+        } catch (RuntimeException e) {
+            logger.error("Ignoring invalid price sheet {}: {}", priceSheet.getDescription(), e.getMessage());
+        }
+    }
+
+    private PricingTable load() {
+        try (InputStream in = priceSheet.getInputStream()) {
+            return PricingTable.from(objectMapper.readValue(in, PriceSheet.class));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read price sheet " + priceSheet.getDescription(), e);
+        }
+    }
+
+    private long lastModified() {
+        try {
+            // Only files on disk can change; classpath resources inside the jar are fixed
+            return priceSheet.isFile() ? priceSheet.lastModified() : 0;
+        } catch (IOException e) {
+            return loadedModified;
+        }
+    }
 }
@@ -0,0 +1,246 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.config.AdaptiveRateLimiter;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * The Azure OpenAI endpoints (deployments) this server creates jobs on
+ * New jobs go to the endpoint with the lowest expected wait: its peak EWMA latency times the
+ * requests it has outstanding, divided by its weight. An endpoint whose createJob circuit breaker
+ * is open is ejected until the breaker lets calls through again, and one whose rate limiter is
+ * saturated is only chosen when all others are too. Status checks and downloads always go to the
+ * endpoint that created the job, since a job only exists on that deployment.
+ */
+public class EndpointPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndpointPool.class);
+
+    private final List<Endpoint> endpoints;
+    private final Map<String, Endpoint> byName = new LinkedHashMap<>();
+
+    /**
+     * @param endpoints The endpoints; the first one serves jobs with no recorded endpoint
+     */
+    public EndpointPool(List<Endpoint> endpoints) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("At least one Azure OpenAI endpoint is required");
+        }
+        this.endpoints = List.copyOf(endpoints);
+        for (Endpoint endpoint : endpoints) {
+            if (byName.putIfAbsent(endpoint.getName(), endpoint) != null) {
+                throw new IllegalArgumentException("Duplicate Azure OpenAI endpoint name " + endpoint.getName());
+            }
+        }
+    }
+
+    /**
+     * Pick the endpoint for a new job
+     */
+    public Endpoint choose() {
+        return choose(endpoint -> true);
+    }
+
+    /**
+     * Pick the endpoint for a new job among those that are eligible, such as those with room in their job quota
+     * @return The endpoint, or null if none is eligible
+     */
+    public Endpoint choose(Predicate<Endpoint> eligible) {
+        if (endpoints.size() == 1) {
+            return eligible.test(endpoints.get(0)) ? endpoints.get(0) : null;
+        }
+
+        long now = System.nanoTime();
+        // Start at a random endpoint so ties do not always go to the first one
+        int offset = ThreadLocalRandom.current().nextInt(endpoints.size());
+        Endpoint best = null;
+        int bestTier = Integer.MAX_VALUE;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < endpoints.size(); i++) {
+            Endpoint endpoint = endpoints.get((offset + i) % endpoints.size());
+            if (!eligible.test(endpoint)) {
+                continue;
+            }
+            int tier = endpoint.isEjected() ? 2 : endpoint.isSaturated() ? 1 : 0;
+            double score = endpoint.score(now);
+            if (tier < bestTier || (tier == bestTier && score < bestScore)) {
+                best = endpoint;
+                bestTier = tier;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            best.selected.increment();
+        }
+        return best;
+    }
+
+    /**
+     * The endpoint with the given name, or the first endpoint for jobs created before routing
+     * was configured (or on an endpoint that has since been removed)
+     */
+    public Endpoint get(String name) {
+        Endpoint endpoint = name != null ? byName.get(name) : null;
+        return endpoint != null ? endpoint : endpoints.get(0);
+    }
+
+    public List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public int size() {
+        return endpoints.size();
+    }
+
+    /**
+     * One Azure OpenAI endpoint, with its own client, rate limiter, circuit breakers and load statistics
+     */
+    public static final class Endpoint {
+
+        private static final double MIN_LATENCY_NANOS = 1_000_000;
+
+        private final String name;
+        private final double weight;
+        private final AdaptiveRateLimiter rateLimiter;
+        private final WebClient webClient;
+        private final CircuitBreaker createBreaker;
+        private final CircuitBreaker statusBreaker;
+        private final CircuitBreaker downloadBreaker;
+        private final double decayNanos;
+        private final long failurePenaltyNanos;
+
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Counter selected;
+        // Peak EWMA of response latency, guarded by this endpoint's monitor
+        private double latencyNanos;
+        private long lastObservedNanos = System.nanoTime();
+
+        /**
+         * @param webClient Client for the endpoint's base URL and API key, with its rate limiter applied
+         * @param qualifiedBreakers Whether circuit breakers get the endpoint name as suffix; a single
+         *                          endpoint keeps the plain instance names
+         * @param decay Time for old latency samples to lose most of their weight
+         * @param failurePenalty Latency recorded for a failed call, so failing endpoints fall to the back
+         */
+        public Endpoint(String name, double weight, AdaptiveRateLimiter rateLimiter, WebClient.Builder webClient,
+                        CircuitBreakerRegistry circuitBreakerRegistry, boolean qualifiedBreakers,
+                        Duration decay, Duration failurePenalty, MeterRegistry meterRegistry) {
+            this.name = name;
+            this.weight = weight > 0 ? weight : 1;
+            this.rateLimiter = rateLimiter;
+            // Outermost filter, so latency includes waiting for the endpoint's rate limiter
+            this.webClient = webClient.filters(filters -> filters.add(0, this::track)).build();
+            String suffix = qualifiedBreakers ? "-" + name : null;
+            this.createBreaker = breaker(circuitBreakerRegistry, SoraVideoService.CREATE_JOB, suffix);
+            this.statusBreaker = breaker(circuitBreakerRegistry, SoraVideoService.CHECK_STATUS, suffix);
+            this.downloadBreaker = breaker(circuitBreakerRegistry, SoraVideoService.DOWNLOAD_CONTENT, suffix);
+            this.decayNanos = decay.toNanos();
+            this.failurePenaltyNanos = failurePenalty.toNanos();
+
+            createBreaker.getEventPublisher().onStateTransition(event -> {
+                switch (event.getStateTransition().getToState()) {
+                    case OPEN, FORCED_OPEN -> logger.warn("Ejected Azure OpenAI endpoint {} from job routing", name);
+                    case CLOSED -> logger.info("Azure OpenAI endpoint {} is back in job routing", name);
+                    default -> { }
+                }
+            });
+            this.selected = Counter.builder("azure.openai.endpoint.selected").tag("endpoint", name)
+                .description("Jobs routed to an Azure OpenAI endpoint").register(meterRegistry);
+            Gauge.builder("azure.openai.endpoint.outstanding", outstanding, AtomicInteger::get).tag("endpoint", name)
+                .description("Requests to an Azure OpenAI endpoint awaiting a response").register(meterRegistry);
+            Gauge.builder("azure.openai.endpoint.latency", this, endpoint -> endpoint.latency(System.nanoTime()) / 1e9)
+                .tag("endpoint", name).baseUnit("seconds")
+                .description("Peak EWMA response latency of an Azure OpenAI endpoint").register(meterRegistry);
+        }
+
+        private static CircuitBreaker breaker(CircuitBreakerRegistry registry, String operation, String suffix) {
+            if (suffix == null) {
+                return registry.circuitBreaker(operation);
+            }
+            // Each endpoint fails independently, with the settings of the operation's instance
+            return registry.circuitBreaker(operation + suffix, registry.circuitBreaker(operation).getCircuitBreakerConfig());
+        }
+
+        private Mono<ClientResponse> track(ClientRequest request, ExchangeFunction next) {
+            return Mono.defer(() -> {
+                outstanding.incrementAndGet();
+                long start = System.nanoTime();
+                return next.exchange(request)
+                    .doOnNext(response -> observe(response.statusCode().is5xxServerError()
+                        ? failurePenaltyNanos : System.nanoTime() - start))
+                    .doOnError(error -> observe(failurePenaltyNanos))
+                    .doFinally(signal -> outstanding.decrementAndGet());
+            });
+        }
+
+        /**
+         * Record a latency sample: a slower sample is taken at once, faster ones are averaged in
+         */
+        synchronized void observe(long sampleNanos) {
+            long now = System.nanoTime();
+            double current = latency(now);
+            latencyNanos = sampleNanos > current ? sampleNanos
+                : current + (sampleNanos - current) * (1 - Math.exp(-(now - lastObservedNanos) / decayNanos));
+            lastObservedNanos = now;
+        }
+
+        /**
+         * Latency decays between samples, so an endpoint that stopped getting traffic after a
+         * slow period is eventually tried again
+         */
+        synchronized double latency(long now) {
+            return latencyNanos * Math.exp(-Math.max(0, now - lastObservedNanos) / decayNanos);
+        }
+
+        double score(long now) {
+            return (latency(now) + MIN_LATENCY_NANOS) * (outstanding.get() + 1) / weight;
+        }
+
+        boolean isEjected() {
+            CircuitBreaker.State state = createBreaker.getState();
+            return state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN;
+        }
+
+        boolean isSaturated() {
+            return rateLimiter != null && rateLimiter.isSaturated();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public WebClient getWebClient() {
+            return webClient;
+        }
+
+        public CircuitBreaker getCreateBreaker() {
+            return createBreaker;
+        }
+
+        public CircuitBreaker getStatusBreaker() {
+            return statusBreaker;
+        }
+
+        public CircuitBreaker getDownloadBreaker() {
+            return downloadBreaker;
+        }
+    }
+}
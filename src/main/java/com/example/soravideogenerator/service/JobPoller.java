@@ -0,0 +1,250 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background poller that tracks every active generation job in one place
+ * Each job is polled on its own adaptive schedule: sparse while generation is far from done,
+ * denser around the expected finish, and backing off when Azure throttles or fails. The total
+ * upstream request rate is capped regardless of how many jobs or viewers there are, and readers
+ * get the latest known state from memory.
+ */
+@Service
+public class JobPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobPoller.class);
+
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+
+    private final SoraVideoService soraVideoService;
+    private final JobRegistry jobRegistry;
+    private final Duration minInterval;
+    private final Duration maxInterval;
+    private final Duration maxBackoff;
+    private final Duration expectedBase;
+    private final Duration expectedPerVideoSecond;
+    private final Duration terminalRetention;
+    private final int maxRequestsPerTick;
+    private final int maxInFlight;
+
+    private final Map<String, TrackedJob> jobs = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Autowired
+    public JobPoller(SoraVideoService soraVideoService,
+                     JobRegistry jobRegistry,
+                     @Value("${video.poller.min-interval:3s}") Duration minInterval,
+                     @Value("${video.poller.max-interval:30s}") Duration maxInterval,
+                     @Value("${video.poller.max-backoff:2m}") Duration maxBackoff,
+                     @Value("${video.poller.expected-base:60s}") Duration expectedBase,
+                     @Value("${video.poller.expected-per-video-second:6s}") Duration expectedPerVideoSecond,
+                     @Value("${video.poller.terminal-retention:1h}") Duration terminalRetention,
+                     @Value("${video.poller.max-requests-per-tick:5}") int maxRequestsPerTick,
+                     @Value("${video.poller.max-in-flight:10}") int maxInFlight,
+                     MeterRegistry meterRegistry) {
+        this.soraVideoService = soraVideoService;
+        this.jobRegistry = jobRegistry;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.maxBackoff = maxBackoff;
+        this.expectedBase = expectedBase;
+        this.expectedPerVideoSecond = expectedPerVideoSecond;
+        this.terminalRetention = terminalRetention;
+        this.maxRequestsPerTick = maxRequestsPerTick;
+        this.maxInFlight = maxInFlight;
+
+        Gauge.builder("video.poller.jobs", jobs, Map::size)
+            .description("Jobs tracked by the background poller").register(meterRegistry);
+        Gauge.builder("video.poller.in.flight", inFlight, AtomicInteger::get)
+            .description("Status requests currently in flight from the poller").register(meterRegistry);
+
+        // Resume jobs that were still running when the server last stopped
+        jobRegistry.activeJobs().forEach(record ->
+            track(record.toVideoResponse(), record.getDuration(), record.getCreatedAt()));
+    }
+
+    /**
+     * Start tracking a job; jobs that are already tracked or already terminal are ignored
+     * @param current The most recent response for the job, such as the one returned on creation
+     * @param durationSeconds Requested video duration, used to estimate when the job will finish, may be null
+     */
+    public void track(VideoResponse current, Integer durationSeconds) {
+        track(current, durationSeconds, Instant.now());
+    }
+
+    private void track(VideoResponse current, Integer durationSeconds, Instant submittedAt) {
+        if (current.getJobId() == null || JobStatusCache.isTerminal(current.getStatus())) {
+            return;
+        }
+        jobs.computeIfAbsent(current.getJobId(), id -> {
+            logger.info("Tracking job {} in background poller", id);
+            TrackedJob job = new TrackedJob(id, submittedAt != null ? submittedAt : Instant.now(),
+                                            expectedDuration(durationSeconds));
+            job.latest = current;
+            job.updates.tryEmitNext(current);
+            job.nextPollAt = Instant.now().plus(nextInterval(job));
+            return job;
+        });
+    }
+
+    /**
+     * Check whether a job is tracked by the poller
+     */
+    public boolean isTracked(String jobId) {
+        return jobs.containsKey(jobId);
+    }
+
+    /**
+     * Get the latest known state of a tracked job without contacting Azure
+     * @param jobId The job ID
+     * @return The latest status, or empty if the job is not tracked or has not been polled yet
+     */
+    public Optional<VideoResponse> latest(String jobId) {
+        TrackedJob job = jobs.get(jobId);
+        return job == null ? Optional.empty() : Optional.ofNullable(job.latest);
+    }
+
+    /**
+     * Follow the state of a tracked job
+     * Replays the latest known state, then emits each change and completes after a terminal state.
+     * @param jobId The job ID
+     * @return Flux<VideoResponse> of state changes, or an empty Flux if the job is not tracked
+     */
+    public Flux<VideoResponse> updates(String jobId) {
+        TrackedJob job = jobs.get(jobId);
+        return job == null ? Flux.empty() : job.updates.asFlux();
+    }
+
+    /**
+     * Poll jobs whose next check is due, most overdue first, within the per-tick request budget
+     */
+    @Scheduled(fixedDelayString = "${video.poller.tick:1s}")
+    public void pollDueJobs() {
+        Instant now = Instant.now();
+        jobs.values().removeIf(job -> job.removeAfter != null && now.isAfter(job.removeAfter));
+
+        List<TrackedJob> due = jobs.values().stream()
+            .filter(job -> !job.polling && job.removeAfter == null && !now.isBefore(job.nextPollAt))
+            .sorted(Comparator.comparing(job -> job.nextPollAt))
+            .limit(maxRequestsPerTick)
+            .toList();
+
+        for (TrackedJob job : due) {
+            if (inFlight.get() >= maxInFlight) {
+                break;
+            }
+            poll(job);
+        }
+    }
+
+    private void poll(TrackedJob job) {
+        job.polling = true;
+        inFlight.incrementAndGet();
+        soraVideoService.fetchJobStatus(job.jobId)
+            .doFinally(signal -> {
+                inFlight.decrementAndGet();
+                job.polling = false;
+            })
+            .subscribe(response -> onStatus(job, response), error -> onError(job, error));
+    }
+
+    private void onStatus(TrackedJob job, VideoResponse response) {
+        job.failures = 0;
+        job.backoffLevel = 0;
+
+        VideoResponse previous = job.latest;
+        job.latest = response;
+        jobRegistry.recordStatus(response);
+        if (previous == null || !Objects.equals(response.getStatus(), previous.getStatus())) {
+            job.updates.tryEmitNext(response);
+        }
+
+        if (JobStatusCache.isTerminal(response.getStatus())) {
+            logger.info("Job {} reached terminal status {} after {}s", job.jobId, response.getStatus(),
+                        Duration.between(job.submittedAt, Instant.now()).toSeconds());
+            job.updates.tryEmitComplete();
+            job.removeAfter = Instant.now().plus(terminalRetention);
+        } else {
+            job.nextPollAt = Instant.now().plus(nextInterval(job));
+        }
+    }
+
+    private void onError(TrackedJob job, Throwable error) {
+        if (SoraVideoService.isRetryableException(error) || SoraVideoService.isRejectedLocally(error)) {
+            job.backoffLevel = Math.min(job.backoffLevel + 1, 16);
+            Duration backoff = minInterval.multipliedBy(1L << job.backoffLevel);
+            if (backoff.compareTo(maxBackoff) > 0) {
+                backoff = maxBackoff;
+            }
+            logger.warn("Backing off polling of job {} for {}s: {}", job.jobId, backoff.toSeconds(), error.getMessage());
+            job.nextPollAt = Instant.now().plus(backoff);
+            return;
+        }
+
+        job.failures++;
+        if (job.failures >= MAX_CONSECUTIVE_FAILURES) {
+            logger.warn("Stopped tracking job {} after {} failed status checks", job.jobId, job.failures);
+            job.updates.tryEmitComplete();
+            jobs.remove(job.jobId, job);
+        } else {
+            job.nextPollAt = Instant.now().plus(maxInterval);
+        }
+    }
+
+    /**
+     * Poll sparsely while the job is far from its expected finish and densely once it is close or overdue
+     */
+    private Duration nextInterval(TrackedJob job) {
+        Duration remaining = job.expectedDuration.minus(Duration.between(job.submittedAt, Instant.now()));
+        Duration interval = remaining.isNegative() ? minInterval : remaining.dividedBy(3);
+        if (interval.compareTo(minInterval) < 0) {
+            return minInterval;
+        }
+        return interval.compareTo(maxInterval) > 0 ? maxInterval : interval;
+    }
+
+    private Duration expectedDuration(Integer durationSeconds) {
+        int seconds = durationSeconds != null ? durationSeconds : 10;
+        return expectedBase.plus(expectedPerVideoSecond.multipliedBy(seconds));
+    }
+
+    private static class TrackedJob {
+        private final String jobId;
+        private final Instant submittedAt;
+        private final Duration expectedDuration;
+        private final Sinks.Many<VideoResponse> updates = Sinks.many().replay().latest();
+
+        private volatile VideoResponse latest;
+        private volatile Instant nextPollAt = Instant.now();
+        private volatile Instant removeAfter;
+        private volatile boolean polling;
+        private volatile int backoffLevel;
+        private volatile int failures;
+
+        TrackedJob(String jobId, Instant submittedAt, Duration expectedDuration) {
+            this.jobId = jobId;
+            this.submittedAt = submittedAt;
+            this.expectedDuration = expectedDuration;
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobPriority;
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.QueueStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Bounded submission queue that keeps the jobs running upstream within the deployments' quota
+ * A job takes a slot on one endpoint before it is created in Azure and holds it until it reaches
+ * a terminal status, so submissions beyond an endpoint's concurrent-job quota go to another
+ * endpoint with room, or wait here instead of failing upstream with 429s. When a slot frees up, the highest priority class goes first, and within a class the
+ * principal with the fewest running jobs relative to its weight, so one heavy user cannot hold
+ * every slot. Waiting submissions move up one class per aging interval, so lower classes are
+ * never starved. A submission that would wait longer than allowed, or that finds the queue full,
+ * is rejected right away with its position and estimated wait. Admitted submissions wait without
+ * a deadline, so callers that cannot wait hand back the {@link Admission} instead of blocking on it.
+ */
+@Service
+public class JobQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobQueue.class);
+
+    // Weight of the newest sample in the moving average of how long a job holds its slot
+    private static final double HOLD_TIME_SMOOTHING = 0.2;
+
+    private final JobRegistry jobRegistry;
+    private final EndpointPool endpointPool;
+    private final boolean enabled;
+    private final int maxActiveJobsPerEndpoint;
+    private final int maxActiveJobs;
+    private final int capacity;
+    private final Duration maxWait;
+    private final Duration aging;
+    private final Duration slotTimeout;
+    private final Map<String, Double> weights;
+    private final Map<String, JobPriority> priorities;
+
+    private final Object lock = new Object();
+    private final List<Entry> waiting = new ArrayList<>();
+    private final Map<String, Integer> activeByPrincipal = new HashMap<>();
+    private final Map<String, Integer> activeByEndpoint = new HashMap<>();
+    private final Map<String, Slot> slotsByJob = new ConcurrentHashMap<>();
+    private int active;
+    private long sequence;
+    private long averageHoldNanos;
+
+    private final Timer waitTime;
+    private final Counter fullRejections;
+    private final Counter waitRejections;
+
+    @Autowired
+    public JobQueue(JobRegistry jobRegistry, EndpointPool endpointPool, Environment environment,
+                    @Value("${video.queue.enabled:true}") boolean enabled,
+                    @Value("${video.queue.max-active-jobs-per-endpoint:10}") int maxActiveJobsPerEndpoint,
+                    @Value("${video.queue.capacity:100}") int capacity,
+                    @Value("${video.queue.max-wait:10m}") Duration maxWait,
+                    @Value("${video.queue.aging:5m}") Duration aging,
+                    @Value("${video.queue.expected-job-time:2m}") Duration expectedJobTime,
+                    @Value("${video.queue.slot-timeout:6h}") Duration slotTimeout,
+                    MeterRegistry meterRegistry) {
+        this(jobRegistry, endpointPool, enabled, maxActiveJobsPerEndpoint, capacity, maxWait, aging,
+             expectedJobTime, slotTimeout,
+             Binder.get(environment).bind("video.queue.weight", Bindable.mapOf(String.class, Double.class))
+                 .orElse(Map.of()),
+             Binder.get(environment).bind("video.queue.priority", Bindable.mapOf(String.class, JobPriority.class))
+                 .orElse(Map.of()),
+             meterRegistry);
+    }
+
+    JobQueue(JobRegistry jobRegistry, EndpointPool endpointPool, boolean enabled, int maxActiveJobsPerEndpoint,
+             int capacity, Duration maxWait, Duration aging, Duration expectedJobTime, Duration slotTimeout,
+             Map<String, Double> weights, Map<String, JobPriority> priorities, MeterRegistry meterRegistry) {
+        this.jobRegistry = jobRegistry;
+        this.endpointPool = endpointPool;
+        this.enabled = enabled;
+        this.maxActiveJobsPerEndpoint = Math.max(1, maxActiveJobsPerEndpoint);
+        this.maxActiveJobs = endpointPool.size() * this.maxActiveJobsPerEndpoint;
+        this.capacity = capacity;
+        this.maxWait = maxWait;
+        this.aging = aging;
+        this.slotTimeout = slotTimeout;
+        this.weights = Map.copyOf(weights);
+        this.priorities = Map.copyOf(priorities);
+        this.averageHoldNanos = expectedJobTime.toNanos();
+
+        this.waitTime = Timer.builder("video.queue.wait")
+            .description("Time submissions waited for a free slot").register(meterRegistry);
+        this.fullRejections = Counter.builder("video.queue.rejections").tag("reason", "full")
+            .description("Submissions rejected by the queue").register(meterRegistry);
+        this.waitRejections = Counter.builder("video.queue.rejections").tag("reason", "wait")
+            .description("Submissions rejected by the queue").register(meterRegistry);
+        Gauge.builder("video.queue.waiting", this, JobQueue::waitingCount)
+            .description("Submissions waiting for a free slot").register(meterRegistry);
+        Gauge.builder("video.queue.active", this, JobQueue::activeCount)
+            .description("Jobs holding a slot of the upstream quota").register(meterRegistry);
+        for (EndpointPool.Endpoint endpoint : endpointPool.getEndpoints()) {
+            Gauge.builder("video.queue.endpoint.active", this, queue -> queue.activeCount(endpoint.getName()))
+                .tag("endpoint", endpoint.getName())
+                .description("Jobs holding a slot of an endpoint's quota").register(meterRegistry);
+        }
+
+        jobRegistry.onTerminal(this::onTerminal);
+        if (enabled) {
+            restore();
+        }
+    }
+
+    /**
+     * Wait for a slot to create a job in, as {@link #admit} does without exposing the queue position
+     * @param principal The user or team submitting the job, or null if anonymous
+     * @param background Whether nobody is waiting on the response
+     * @return The slot, to be bound to the created job or released; fails with
+     *         {@link QueueFullException} if the submission is rejected
+     */
+    Mono<Slot> acquire(String principal, boolean background) {
+        return Mono.defer(() -> admit(principal, background).slot());
+    }
+
+    /**
+     * Take a slot if one is free, or join the queue for one
+     * Interactive submissions are rejected right away when their estimated wait is longer than the
+     * configured maximum; background submissions, such as batch items, go one priority class lower
+     * and are only rejected when the queue is full.
+     * @param principal The user or team submitting the job, or null if anonymous
+     * @param background Whether nobody is waiting on the response
+     * @return The admission, holding the slot or the place in the queue
+     * @throws QueueFullException if the submission is rejected
+     */
+    public Admission admit(String principal, boolean background) {
+        String owner = SpendingLedger.principalOrAnonymous(principal);
+        if (!enabled) {
+            return new Admission(new Slot(owner, false), null);
+        }
+
+        JobPriority priority = background ? priorityOf(owner).lower() : priorityOf(owner);
+        Entry entry;
+        synchronized (lock) {
+            if (waiting.isEmpty() && hasRoom()) {
+                return new Admission(start(owner), null);
+            }
+            int ahead = ahead(priority, Instant.now());
+            Duration estimate = estimateWait(ahead);
+            if (waiting.size() >= capacity) {
+                fullRejections.increment();
+                throw new QueueFullException(String.format(
+                    "The service is at capacity: %d jobs are running and %d are waiting. Please try again in about %s.",
+                    active, waiting.size(), describe(estimate)));
+            }
+            if (!background && estimate.compareTo(maxWait) > 0) {
+                waitRejections.increment();
+                throw new QueueFullException(String.format(
+                    "The service is busy: your job would be number %d in the queue, with an estimated wait of %s. Please try again later.",
+                    ahead + 1, describe(estimate)));
+            }
+            entry = new Entry(owner, priority, sequence++, Instant.now());
+            waiting.add(entry);
+            logger.info("Queued job for {} at {} priority behind {} others (estimated wait {}s)",
+                        owner, priority, ahead, estimate.toSeconds());
+        }
+        return new Admission(null, entry);
+    }
+
+    /**
+     * Tie a slot to the job created in it, which holds the slot until it reaches a terminal status
+     * @param slot The slot the job was created in
+     * @param jobId The ID of the created job
+     */
+    public void bind(Slot slot, String jobId) {
+        if (!slot.counted || slot.released.get()) {
+            return;
+        }
+        slot.jobId = jobId;
+        slotsByJob.put(jobId, slot);
+    }
+
+    /**
+     * Return a slot whose job was never created
+     * @param slot The slot to release
+     */
+    public void release(Slot slot) {
+        if (slot.jobId == null) {
+            free(slot, false);
+        }
+    }
+
+    /**
+     * Endpoint to create a slot's job on, called once per attempt
+     * The first attempt goes to the endpoint the slot was granted on; a retry may move the slot to
+     * whichever endpoint with room in its quota now looks best, which can be the same one.
+     * @param slot The slot the job is being created in
+     * @return The endpoint for this attempt
+     */
+    public EndpointPool.Endpoint endpoint(Slot slot) {
+        if (!slot.counted) {
+            return endpointPool.choose();
+        }
+        synchronized (lock) {
+            if (slot.attempts++ > 0 && !slot.released.get()) {
+                String current = slot.endpoint;
+                EndpointPool.Endpoint next = endpointPool.choose(
+                    endpoint -> endpoint.getName().equals(current) || hasRoom(endpoint));
+                if (next != null && !next.getName().equals(current)) {
+                    leave(current);
+                    slot.endpoint = next.getName();
+                    activeByEndpoint.merge(slot.endpoint, 1, Integer::sum);
+                }
+            }
+            return endpointPool.get(slot.endpoint);
+        }
+    }
+
+    /**
+     * Queue state for a principal and for the whole service
+     * @param principal The user or team to report on
+     */
+    public QueueStatus status(String principal) {
+        String owner = SpendingLedger.principalOrAnonymous(principal);
+        QueueStatus status = new QueueStatus();
+        status.setEnabled(enabled);
+        status.setMaxActiveJobs(maxActiveJobs);
+        status.setCapacity(capacity);
+        status.setPrincipal(owner);
+        status.setPriority(priorityOf(owner));
+        status.setWeight(weightOf(owner));
+        synchronized (lock) {
+            Instant now = Instant.now();
+            status.setActiveJobs(active);
+            status.setWaiting(waiting.size());
+            status.setEstimatedWaitSeconds(hasRoom() && waiting.isEmpty()
+                ? 0 : estimateWait(ahead(JobPriority.NORMAL, now)).toSeconds());
+            status.setPrincipalActiveJobs(activeByPrincipal.getOrDefault(owner, 0));
+            int own = 0;
+            for (Entry entry : waiting) {
+                if (entry.principal.equals(owner)) {
+                    if (own == 0) {
+                        status.setPosition(ahead(entry, now));
+                    }
+                    own++;
+                }
+            }
+            status.setPrincipalWaiting(own);
+        }
+        return status;
+    }
+
+    /**
+     * Release slots of jobs that ended without the poller seeing it, so the quota does not leak
+     * Jobs are also released once they have held a slot for longer than the slot timeout.
+     */
+    @Scheduled(fixedDelayString = "${video.queue.sweep-interval:1m}")
+    public void releaseStale() {
+        Instant cutoff = Instant.now().minus(slotTimeout);
+        for (Slot slot : slotsByJob.values()) {
+            String status = jobRegistry.find(slot.jobId).map(JobRecord::getStatus).orElse(null);
+            if (status == null || JobStatusCache.isTerminal(status)) {
+                free(slot, false);
+            } else if (slot.startedAt.isBefore(cutoff)) {
+                logger.warn("Releasing queue slot of job {}, which has been running since {}", slot.jobId, slot.startedAt);
+                free(slot, false);
+            }
+        }
+    }
+
+    private void onTerminal(JobRecord record) {
+        Slot slot = slotsByJob.get(record.getJobId());
+        if (slot != null) {
+            free(slot, true);
+        }
+    }
+
+    /**
+     * Jobs still running from before a restart keep their slots
+     */
+    private void restore() {
+        List<JobRecord> running = jobRegistry.activeJobs();
+        synchronized (lock) {
+            for (JobRecord record : running) {
+                Slot slot = start(SpendingLedger.principalOrAnonymous(record.getPrincipal()),
+                                  endpointPool.get(record.getEndpoint()));
+                if (record.getCreatedAt() != null) {
+                    slot.startedAt = record.getCreatedAt();
+                }
+                slot.jobId = record.getJobId();
+                slotsByJob.put(record.getJobId(), slot);
+            }
+        }
+        if (!running.isEmpty()) {
+            logger.info("{} running jobs hold {} of {} queue slots", running.size(), Math.min(running.size(), maxActiveJobs),
+                        maxActiveJobs);
+        }
+    }
+
+    /**
+     * Take a slot on the best endpoint with room in its quota; the caller holds the lock and has
+     * checked that there is room
+     */
+    private Slot start(String principal) {
+        return start(principal, endpointPool.choose(this::hasRoom));
+    }
+
+    private Slot start(String principal, EndpointPool.Endpoint endpoint) {
+        active++;
+        activeByPrincipal.merge(principal, 1, Integer::sum);
+        activeByEndpoint.merge(endpoint.getName(), 1, Integer::sum);
+        Slot slot = new Slot(principal, true);
+        slot.endpoint = endpoint.getName();
+        return slot;
+    }
+
+    /**
+     * Whether any endpoint has room in its quota; the caller holds the lock
+     */
+    private boolean hasRoom() {
+        for (EndpointPool.Endpoint endpoint : endpointPool.getEndpoints()) {
+            if (hasRoom(endpoint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasRoom(EndpointPool.Endpoint endpoint) {
+        return activeByEndpoint.getOrDefault(endpoint.getName(), 0) < maxActiveJobsPerEndpoint;
+    }
+
+    private void leave(String endpoint) {
+        activeByEndpoint.computeIfPresent(endpoint, (name, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void free(Slot slot, boolean finished) {
+        if (!slot.counted || !slot.released.compareAndSet(false, true)) {
+            return;
+        }
+        if (slot.jobId != null) {
+            slotsByJob.remove(slot.jobId, slot);
+        }
+        synchronized (lock) {
+            active--;
+            activeByPrincipal.computeIfPresent(slot.principal, (principal, count) -> count > 1 ? count - 1 : null);
+            leave(slot.endpoint);
+            if (finished) {
+                long held = Duration.between(slot.startedAt, Instant.now()).toNanos();
+                averageHoldNanos = (long) (averageHoldNanos * (1 - HOLD_TIME_SMOOTHING) + held * HOLD_TIME_SMOOTHING);
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Hand free slots to the waiting submissions that are next in line
+     */
+    private void dispatch() {
+        List<Entry> ready = new ArrayList<>();
+        Instant now = Instant.now();
+        synchronized (lock) {
+            while (hasRoom() && !waiting.isEmpty()) {
+                Entry next = waiting.stream().min(order(now)).orElseThrow();
+                waiting.remove(next);
+                next.slot = start(next.principal);
+                ready.add(next);
+            }
+        }
+        // Subscribers run job creation on emission, so this happens outside the lock
+        for (Entry entry : ready) {
+            waitTime.record(Duration.between(entry.enqueuedAt, now));
+            if (entry.sink.tryEmitValue(entry.slot).isFailure()) {
+                free(entry.slot, false);
+            }
+        }
+    }
+
+    /**
+     * Remove a submission whose caller went away, returning its slot if it had just been given one
+     */
+    private void abandon(Entry entry) {
+        Slot slot;
+        synchronized (lock) {
+            if (waiting.remove(entry)) {
+                return;
+            }
+            slot = entry.slot;
+        }
+        if (slot != null) {
+            release(slot);
+        }
+    }
+
+    /**
+     * Order in which waiting submissions get slots; the caller holds the lock
+     */
+    private Comparator<Entry> order(Instant now) {
+        return Comparator.<Entry>comparingInt(entry -> effectiveClass(entry, now))
+            .thenComparingDouble(entry -> (activeByPrincipal.getOrDefault(entry.principal, 0) + 1) / weightOf(entry.principal))
+            .thenComparingLong(entry -> entry.sequence);
+    }
+
+    /**
+     * Priority class of a waiting submission after aging, where 0 is the highest
+     */
+    private int effectiveClass(Entry entry, Instant now) {
+        long promotions = aging.isZero() ? 0 : Duration.between(entry.enqueuedAt, now).toNanos() / aging.toNanos();
+        return (int) Math.max(0, entry.priority.ordinal() - promotions);
+    }
+
+    /**
+     * Submissions that would get a slot before a new one of the given class; the caller holds the lock
+     * Fair share can move a light user ahead of some of these, so this is an upper bound.
+     */
+    private int ahead(JobPriority priority, Instant now) {
+        int count = 0;
+        for (Entry entry : waiting) {
+            if (effectiveClass(entry, now) <= priority.ordinal()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private int ahead(Entry waitingEntry, Instant now) {
+        Comparator<Entry> order = order(now);
+        int count = 0;
+        for (Entry entry : waiting) {
+            if (entry != waitingEntry && order.compare(entry, waitingEntry) < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Expected time until a slot is free for a submission with the given number of others ahead
+     * Slots free up at the rate running jobs finish; the caller holds the lock.
+     */
+    private Duration estimateWait(int ahead) {
+        int needed = active + ahead + 1 - maxActiveJobs;
+        if (needed <= 0) {
+            return Duration.ZERO;
+        }
+        return Duration.ofNanos(averageHoldNanos * needed / maxActiveJobs);
+    }
+
+    private JobPriority priorityOf(String principal) {
+        return priorities.getOrDefault(principal, JobPriority.NORMAL);
+    }
+
+    private double weightOf(String principal) {
+        Double weight = weights.get(principal);
+        return weight != null && weight > 0 ? weight : 1.0;
+    }
+
+    private int waitingCount() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    private int activeCount() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    private int activeCount(String endpoint) {
+        synchronized (lock) {
+            return activeByEndpoint.getOrDefault(endpoint, 0);
+        }
+    }
+
+    static String describe(Duration duration) {
+        long minutes = Math.max(1, (duration.toSeconds() + 59) / 60);
+        return minutes == 1 ? "1 minute" : minutes + " minutes";
+    }
+
+    /**
+     * A submission let into the queue: either it got a slot right away or it waits for one
+     */
+    public final class Admission {
+        private final Slot slot;
+        private final Entry entry;
+
+        private Admission(Slot slot, Entry entry) {
+            this.slot = slot;
+            this.entry = entry;
+        }
+
+        /**
+         * Whether the submission has to wait for a slot
+         */
+        public boolean isQueued() {
+            return entry != null;
+        }
+
+        /**
+         * The slot, emitted right away or once one frees up; cancelling gives up the place in the queue
+         */
+        public Mono<Slot> slot() {
+            if (entry == null) {
+                return Mono.just(slot);
+            }
+            return entry.sink.asMono().doOnCancel(() -> abandon(entry));
+        }
+
+        /**
+         * Place in the queue, counting from 1, or 0 once the submission has its slot
+         */
+        public int position() {
+            if (entry == null) {
+                return 0;
+            }
+            synchronized (lock) {
+                return waiting.contains(entry) ? ahead(entry, Instant.now()) + 1 : 0;
+            }
+        }
+
+        /**
+         * Expected time until this submission gets its slot
+         */
+        public Duration estimatedWait() {
+            if (entry == null) {
+                return Duration.ZERO;
+            }
+            synchronized (lock) {
+                return waiting.contains(entry) ? estimateWait(ahead(entry, Instant.now())) : Duration.ZERO;
+            }
+        }
+    }
+
+    /**
+     * A share of the upstream quota, held from job creation until the job ends
+     */
+    public static final class Slot {
+        private final String principal;
+        private final boolean counted;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile Instant startedAt = Instant.now();
+        private volatile String jobId;
+        private volatile String endpoint;
+        // Guarded by the queue's lock
+        private int attempts;
+
+        private Slot(String principal, boolean counted) {
+            this.principal = principal;
+            this.counted = counted;
+        }
+
+        public String getPrincipal() {
+            return principal;
+        }
+
+        /**
+         * Name of the endpoint whose quota the slot counts against, or null if the queue is disabled
+         */
+        public String getEndpoint() {
+            return endpoint;
+        }
+    }
+
+    private static final class Entry {
+        private final String principal;
+        private final JobPriority priority;
+        private final long sequence;
+        private final Instant enqueuedAt;
+        private final Sinks.One<Slot> sink = Sinks.one();
+        private Slot slot;
+
+        private Entry(String principal, JobPriority priority, long sequence, Instant enqueuedAt) {
+            this.principal = principal;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
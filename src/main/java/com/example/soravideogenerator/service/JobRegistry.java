@@ -0,0 +1,333 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Persistent registry of the jobs created by this server
+ * Every change is appended to a JSON-lines log as a full snapshot of the job, and an in-memory
+ * index keyed by job ID answers lookups. On startup the log is replayed (last snapshot wins).
+ * The log is rewritten with one snapshot per job whenever it holds more than twice as many lines
+ * as jobs (plus 100), at startup and as it grows, and at startup also when a crash left a torn line.
+ */
+@Service
+public class JobRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobRegistry.class);
+
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final Path logFile;
+    private final Map<String, JobRecord> records = new ConcurrentHashMap<>();
+    private final List<Consumer<JobRecord>> terminalListeners = new CopyOnWriteArrayList<>();
+
+    // Appends happen on a single thread so request and poller threads never wait on disk I/O
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "job-registry-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Accessed on the writer thread once loaded
+    private BufferedWriter log;
+    private int lines;
+
+    @Autowired
+    public JobRegistry(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                       @Value("${video.registry.file:data/jobs.jsonl}") String logFile) {
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.logFile = Path.of(logFile);
+        load();
+    }
+
+    /**
+     * Record a job that was just created upstream
+     * @param jobId The job ID returned by Azure
+     * @param request The request the job was created from
+     * @param estimatedCost The estimated cost of the job
+     * @param principal The user or team the job is billed to
+     * @param status The initial status reported by Azure
+     * @param endpoint The Azure OpenAI endpoint the job was created on
+     * @return The stored record
+     */
+    public JobRecord recordCreated(String jobId, VideoRequest request, BigDecimal estimatedCost,
+                                   String principal, String status, String endpoint) {
+        Instant now = Instant.now();
+        JobRecord created = new JobRecord(jobId, request, estimatedCost);
+        created.setPrincipal(principal);
+        created.setStatus(status);
+        created.setEndpoint(endpoint);
+        created.setCreatedAt(now);
+        created.setUpdatedAt(now);
+        created.getHistory().add(new JobRecord.StatusChange(status, now));
+
+        records.compute(jobId, (id, existing) -> {
+            append(created);
+            return created;
+        });
+        return created.copy();
+    }
+
+    /**
+     * Record the latest status of a job; unknown jobs and unchanged statuses are ignored
+     * @param response The status reported by Azure
+     */
+    public void recordStatus(VideoResponse response) {
+        if (response.getJobId() == null || !response.isSuccess()) {
+            return;
+        }
+
+        JobRecord[] finished = new JobRecord[1];
+        records.computeIfPresent(response.getJobId(), (id, existing) -> {
+            boolean statusChanged = !Objects.equals(existing.getStatus(), response.getStatus());
+            boolean resultChanged = !Objects.equals(existing.getGenerationId(), response.getGenerationId())
+                || !Objects.equals(existing.getGenerationIds(), response.getGenerationIds())
+                || !Objects.equals(existing.getVideoUrl(), response.getVideoUrl());
+            if (!statusChanged && !resultChanged) {
+                return existing;
+            }
+
+            Instant now = Instant.now();
+            JobRecord updated = existing.copy();
+            updated.setStatus(response.getStatus());
+            updated.setGenerationId(response.getGenerationId());
+            updated.setGenerationIds(response.getGenerationIds());
+            updated.setVideoUrl(response.getVideoUrl());
+            updated.setExpiresAt(response.getExpiresAt());
+            updated.setUpdatedAt(now);
+            if (statusChanged) {
+                updated.getHistory().add(new JobRecord.StatusChange(response.getStatus(), now));
+                if (!JobStatusCache.isTerminal(existing.getStatus()) && JobStatusCache.isTerminal(response.getStatus())) {
+                    finished[0] = updated;
+                }
+            }
+            append(updated);
+            return updated;
+        });
+
+        if (finished[0] != null) {
+            recordTimeToComplete(finished[0]);
+            for (Consumer<JobRecord> listener : terminalListeners) {
+                listener.accept(finished[0].copy());
+            }
+        }
+    }
+
+    /**
+     * Register a callback for jobs reaching a terminal status; called once per job, outside any lock
+     * @param listener Receives a copy of the finished job
+     */
+    public void onTerminal(Consumer<JobRecord> listener) {
+        terminalListeners.add(listener);
+    }
+
+    /**
+     * Look up a job created by this server
+     * @param jobId The job ID
+     * @return A copy of the stored record, or empty if the job is unknown
+     */
+    public Optional<JobRecord> find(String jobId) {
+        JobRecord record = records.get(jobId);
+        return record == null ? Optional.empty() : Optional.of(record.copy());
+    }
+
+    /**
+     * Name of the Azure OpenAI endpoint a job was created on, without copying the record
+     * @return The endpoint name, or empty if the job is unknown or predates endpoint routing
+     */
+    public Optional<String> endpointOf(String jobId) {
+        JobRecord record = records.get(jobId);
+        return record == null ? Optional.empty() : Optional.ofNullable(record.getEndpoint());
+    }
+
+    /**
+     * Jobs created at or after the given time
+     */
+    public List<JobRecord> createdSince(Instant since) {
+        return records.values().stream()
+            .filter(record -> record.getCreatedAt() != null && !record.getCreatedAt().isBefore(since))
+            .map(JobRecord::copy)
+            .toList();
+    }
+
+    /**
+     * Jobs that have not reached a terminal status yet
+     */
+    public List<JobRecord> activeJobs() {
+        return records.values().stream()
+            .filter(record -> !JobStatusCache.isTerminal(record.getStatus()))
+            .map(JobRecord::copy)
+            .toList();
+    }
+
+    @PreDestroy
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (log != null) {
+                log.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Error closing job registry log: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Time from submission until the job finished, tagged with how it finished
+     */
+    private void recordTimeToComplete(JobRecord record) {
+        if (record.getCreatedAt() == null) {
+            return;
+        }
+        Timer.builder("video.jobs.time.to.complete")
+            .description("Time from job submission to a terminal status")
+            .tag("status", record.getStatus().toLowerCase(Locale.ROOT))
+            .tag("resolution", String.valueOf(record.getResolution()))
+            .publishPercentileHistogram()
+            .minimumExpectedValue(Duration.ofSeconds(10))
+            .maximumExpectedValue(Duration.ofHours(1))
+            .register(meterRegistry)
+            .record(Duration.between(record.getCreatedAt(), record.getUpdatedAt()));
+    }
+
+    private void append(JobRecord record) {
+        String line;
+        try {
+            line = objectMapper.writeValueAsString(record);
+        } catch (IOException e) {
+            logger.error("Could not serialize job {}: {}", record.getJobId(), e.getMessage());
+            return;
+        }
+        writer.execute(() -> {
+            if (log == null) {
+                return;
+            }
+            try {
+                log.write(line);
+                log.newLine();
+                log.flush();
+                lines++;
+            } catch (IOException e) {
+                logger.error("Could not append job {} to registry: {}", record.getJobId(), e.getMessage());
+                return;
+            }
+            if (needsCompaction()) {
+                try {
+                    log.close();
+                    compact();
+                } catch (IOException e) {
+                    logger.error("Could not compact job registry {}: {}", logFile, e.getMessage());
+                }
+                openLog();
+            }
+        });
+    }
+
+    private boolean needsCompaction() {
+        return lines > records.size() * 2 + 100;
+    }
+
+    private void openLog() {
+        try {
+            log = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            log = null;
+            logger.error("Could not open job registry {}, jobs will not be persisted: {}", logFile, e.getMessage());
+        }
+    }
+
+    private void load() {
+        try {
+            Path parent = logFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+
+            boolean torn = false;
+            if (Files.exists(logFile)) {
+                try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        lines++;
+                        try {
+                            JobRecord record = objectMapper.readValue(line, JobRecord.class);
+                            records.put(record.getJobId(), record);
+                        } catch (IOException e) {
+                            // A torn final line from a crash is expected; skip it
+                            logger.warn("Skipping unreadable job registry entry: {}", e.getMessage());
+                            torn = true;
+                        }
+                    }
+                }
+            }
+
+            // Rewriting also drops a torn line, which the next append would otherwise run into
+            if (torn || needsCompaction()) {
+                compact();
+            }
+
+            log = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            logger.info("Job registry at {} holds {} jobs ({} active)", logFile, records.size(), activeJobs().size());
+        } catch (IOException e) {
+            logger.error("Could not open job registry {}, jobs will not be persisted: {}", logFile, e.getMessage());
+        }
+    }
+
+    private void compact() throws IOException {
+        Path compacted = logFile.resolveSibling(logFile.getFileName() + ".compact");
+        int entries = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (JobRecord record : records.values()) {
+                out.write(objectMapper.writeValueAsString(record));
+                out.newLine();
+                entries++;
+            }
+        }
+        Files.move(compacted, logFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Compacted job registry from {} to {} entries", lines, entries);
+        lines = entries;
+    }
+}
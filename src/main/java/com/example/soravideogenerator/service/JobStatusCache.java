@@ -0,0 +1,179 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.VideoResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache in front of job status lookups
+ * Jobs tracked by the {@link JobPoller} are answered from its latest known state, and finished
+ * jobs created by this server are answered from the {@link JobRegistry}. For other jobs,
+ * concurrent lookups share a single in-flight upstream request, in-progress statuses are reused
+ * for a short TTL and handed to the poller, and terminal statuses are kept until the generation expires.
+ */
+@Service
+public class JobStatusCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobStatusCache.class);
+
+    private final SoraVideoService soraVideoService;
+    private final JobPoller jobPoller;
+    private final JobRegistry jobRegistry;
+    private final Duration statusTtl;
+    private final Duration terminalTtl;
+    private final Duration idleTimeout;
+    private final Duration watchInterval;
+    private final Duration watchTimeout;
+
+    private final Map<String, CachedStatus> statuses = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JobStatusCache(SoraVideoService soraVideoService,
+                          JobPoller jobPoller,
+                          JobRegistry jobRegistry,
+                          @Value("${video.status.cache-ttl:5s}") Duration statusTtl,
+                          @Value("${video.status.terminal-ttl:24h}") Duration terminalTtl,
+                          @Value("${video.status.idle-timeout:10m}") Duration idleTimeout,
+                          @Value("${video.status.watch-interval:2s}") Duration watchInterval,
+                          @Value("${video.status.watch-timeout:30m}") Duration watchTimeout) {
+        this.soraVideoService = soraVideoService;
+        this.jobPoller = jobPoller;
+        this.jobRegistry = jobRegistry;
+        this.statusTtl = statusTtl;
+        this.terminalTtl = terminalTtl;
+        this.idleTimeout = idleTimeout;
+        this.watchInterval = watchInterval;
+        this.watchTimeout = watchTimeout;
+    }
+
+    /**
+     * Get the status of a job, reusing a cached or in-flight lookup when possible
+     * @param jobId The job ID to check
+     * @return Mono<VideoResponse> shared between all concurrent callers for the job
+     */
+    public Mono<VideoResponse> getStatus(String jobId) {
+        Optional<VideoResponse> polled = jobPoller.latest(jobId);
+        if (polled.isPresent()) {
+            return Mono.just(polled.get());
+        }
+        Optional<JobRecord> recorded = jobRegistry.find(jobId);
+        if (recorded.isPresent() && isTerminal(recorded.get().getStatus())) {
+            return Mono.just(recorded.get().toVideoResponse());
+        }
+        
+        CachedStatus cached = statuses.computeIfAbsent(jobId, this::newEntry);
+        cached.lastAccess = Instant.now();
+        return cached.status;
+    }
+
+    /**
+     * Watch a job until it reaches a terminal status
+     * Tracked jobs are followed through the poller's updates as they happen. Other jobs are
+     * checked through the cache, so any number of watchers of the same job cost at most one
+     * upstream request per cache TTL. Only changes in status are emitted.
+     * @param jobId The job ID to watch
+     * @return Flux<VideoResponse> of status transitions, completing after a terminal status
+     */
+    public Flux<VideoResponse> watchStatus(String jobId) {
+        if (jobPoller.isTracked(jobId)) {
+            return jobPoller.updates(jobId).take(watchTimeout);
+        }
+        
+        return Flux.interval(Duration.ZERO, watchInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> getStatus(jobId))
+            .distinctUntilChanged(response -> response.isSuccess() + ":" + response.getStatus())
+            .takeUntil(response -> response.isSuccess() && isTerminal(response.getStatus()))
+            .take(watchTimeout);
+    }
+
+    /**
+     * Drop the cached status for a job so the next lookup goes upstream
+     * @param jobId The job ID to invalidate
+     */
+    public void invalidate(String jobId) {
+        statuses.remove(jobId);
+    }
+
+    /**
+     * Check whether a job status is final and will not change again
+     * @param status The job status reported by Azure
+     * @return true for succeeded, completed, failed and cancelled jobs
+     */
+    public static boolean isTerminal(String status) {
+        return "succeeded".equalsIgnoreCase(status)
+            || "completed".equalsIgnoreCase(status)
+            || "failed".equalsIgnoreCase(status)
+            || "cancelled".equalsIgnoreCase(status);
+    }
+
+    /**
+     * Remove jobs nobody has asked about recently so the map does not grow without bound
+     * Terminal statuses are kept until their retention ends even when idle
+     */
+    @Scheduled(fixedDelayString = "${video.status.sweep-interval:1m}")
+    public void evictIdle() {
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(idleTimeout);
+        int before = statuses.size();
+        statuses.values().removeIf(cached -> cached.lastAccess.isBefore(cutoff) && cached.retainedUntil.isBefore(now));
+        int removed = before - statuses.size();
+        if (removed > 0) {
+            logger.debug("Evicted {} idle job statuses", removed);
+        }
+    }
+
+    private CachedStatus newEntry(String jobId) {
+        CachedStatus cached = new CachedStatus();
+        cached.status = soraVideoService.checkJobStatus(jobId)
+            .doOnNext(response -> {
+                if (response.isSuccess()) {
+                    // Hand jobs that are still running to the poller so later lookups stay local
+                    jobRegistry.recordStatus(response);
+                    jobPoller.track(response, null);
+                }
+            })
+            .cache(response -> cached.retainFor(ttlFor(response)), error -> Duration.ZERO, () -> Duration.ZERO);
+        return cached;
+    }
+
+    private Duration ttlFor(VideoResponse response) {
+        if (!response.isSuccess()) {
+            // Failed lookups are not cached so the next poll retries upstream
+            return Duration.ZERO;
+        }
+        if (isTerminal(response.getStatus())) {
+            Instant expiresAt = VideoCacheService.parseExpiry(response.getExpiresAt());
+            if (expiresAt != null) {
+                Duration untilExpiry = Duration.between(Instant.now(), expiresAt);
+                return untilExpiry.isNegative() ? Duration.ZERO : untilExpiry;
+            }
+            return terminalTtl;
+        }
+        return statusTtl;
+    }
+
+    private static class CachedStatus {
+        private Mono<VideoResponse> status;
+        private volatile Instant lastAccess = Instant.now();
+        private volatile Instant retainedUntil = Instant.EPOCH;
+
+        Duration retainFor(Duration ttl) {
+            retainedUntil = Instant.now().plus(ttl);
+            return ttl;
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Submits generation jobs and registers them locally
+ * Every successfully created job is recorded in the {@link JobRegistry} and handed to the
+ * {@link JobPoller}, whichever entry point (form or batch API) it came from. Its estimated cost
+ * is reserved in the {@link SpendingLedger} first, and jobs over budget are rejected. Jobs are
+ * then created in a slot of the {@link JobQueue}. When the quota is in use, batch items wait for
+ * a slot, while form submissions get a ticket right away and the job is created once a slot frees up.
+ * Identical submissions within the deduplication window return the job that is already in
+ * flight or finished instead of paying for a new one. Submissions are matched on the client's
+ * Idempotency-Key when one is sent, otherwise on a hash of the whitespace-normalized prompt, resolution
+ * and duration, always within the same principal.
+ */
+@Service
+public class JobSubmissionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobSubmissionService.class);
+
+    private static final String TICKET_PREFIX = "queued-";
+    private static final String WAITING = "waiting";
+    private static final String FAILED = "failed";
+    private static final Duration TICKET_REFRESH_INTERVAL = Duration.ofSeconds(2);
+
+    private final SoraVideoService soraVideoService;
+    private final CostEstimationService costEstimationService;
+    private final JobRegistry jobRegistry;
+    private final JobPoller jobPoller;
+    private final SpendingLedger spendingLedger;
+    private final JobQueue jobQueue;
+    private final boolean deduplicationEnabled;
+    private final Duration deduplicationWindow;
+    private final MeterRegistry meterRegistry;
+    private final Counter estimatedSpend;
+
+    private final Duration ticketRetention;
+
+    private final Map<String, Submission> submissions = new ConcurrentHashMap<>();
+    private final Map<String, QueuedJob> queuedJobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JobSubmissionService(SoraVideoService soraVideoService, CostEstimationService costEstimationService,
+                                JobRegistry jobRegistry, JobPoller jobPoller, SpendingLedger spendingLedger,
+                                JobQueue jobQueue,
+                                @Value("${video.dedup.enabled:true}") boolean deduplicationEnabled,
+                                @Value("${video.dedup.window:10m}") Duration deduplicationWindow,
+                                @Value("${video.queue.ticket-retention:24h}") Duration ticketRetention,
+                                MeterRegistry meterRegistry) {
+        this.soraVideoService = soraVideoService;
+        this.costEstimationService = costEstimationService;
+        this.jobRegistry = jobRegistry;
+        this.jobPoller = jobPoller;
+        this.spendingLedger = spendingLedger;
+        this.jobQueue = jobQueue;
+        this.deduplicationEnabled = deduplicationEnabled;
+        this.deduplicationWindow = deduplicationWindow;
+        this.ticketRetention = ticketRetention;
+        this.meterRegistry = meterRegistry;
+        this.estimatedSpend = Counter.builder("video.jobs.estimated.spend").baseUnit("usd")
+            .description("Running total of the estimated cost of created jobs").register(meterRegistry);
+    }
+
+    /**
+     * Create a generation job upstream and start tracking it
+     * @param videoRequest The video request containing prompt, resolution, and duration
+     * @return Mono<VideoResponse> containing the job details or error information
+     */
+    public Mono<VideoResponse> submit(VideoRequest videoRequest) {
+        return submit(videoRequest, null, null);
+    }
+
+    /**
+     * Create a generation job upstream, or return the existing job for an identical submission
+     * @param videoRequest The video request containing prompt, resolution, and duration
+     * @param idempotencyKey Optional client-supplied key identifying the submission
+     * @param principal The user or team submitting the job, or null if anonymous
+     * @return Mono<VideoResponse> containing the job details or error information
+     */
+    public Mono<VideoResponse> submit(VideoRequest videoRequest, String idempotencyKey, String principal) {
+        return submit(videoRequest, idempotencyKey, principal, false);
+    }
+
+    /**
+     * Create a generation job upstream, or return the existing job for an identical submission
+     * @param videoRequest The video request containing prompt, resolution, and duration
+     * @param idempotencyKey Optional client-supplied key identifying the submission
+     * @param principal The user or team submitting the job, or null if anonymous
+     * @param background Whether nobody is waiting on the response, which queues the job at lower priority
+     * @return Mono<VideoResponse> containing the job details or error information
+     */
+    public Mono<VideoResponse> submit(VideoRequest videoRequest, String idempotencyKey, String principal,
+                                      boolean background) {
+        if (!deduplicationEnabled) {
+            return create(videoRequest, principal, background);
+        }
+
+        String fingerprint = fingerprint(videoRequest);
+        boolean keyed = idempotencyKey != null && !idempotencyKey.isBlank();
+        String owner = principal == null || principal.isBlank() ? SpendingLedger.ANONYMOUS : principal.trim();
+        String key = owner + (keyed ? "|key:" + idempotencyKey.trim() : "|request:" + fingerprint);
+
+        Instant now = Instant.now();
+        Submission[] created = new Submission[1];
+        // compute() runs atomically per key, so concurrent identical submissions see the same entry
+        Submission submission = submissions.compute(key, (k, existing) -> {
+            if (existing != null && isReusable(existing, now)) {
+                return existing;
+            }
+            created[0] = newSubmission(key, fingerprint, now, videoRequest, principal, background);
+            return created[0];
+        });
+
+        if (submission == created[0]) {
+            return submission.response;
+        }
+
+        if (!submission.fingerprint.equals(fingerprint)) {
+            logger.warn("Idempotency-Key {} was reused for a different request", idempotencyKey);
+            return Mono.just(new VideoResponse(
+                "This Idempotency-Key was already used for a different request.", false));
+        }
+
+        logger.info("Identical request submitted within {}, returning existing job", deduplicationWindow);
+        return submission.response.map(this::currentState);
+    }
+
+    /**
+     * Forget submissions older than the deduplication window, and tickets of queued jobs past their retention
+     */
+    @Scheduled(fixedDelayString = "${video.dedup.sweep-interval:1m}")
+    public void evictExpired() {
+        Instant now = Instant.now();
+        Instant cutoff = now.minus(deduplicationWindow);
+        submissions.values().removeIf(submission -> submission.createdAt.isBefore(cutoff));
+        Instant ticketCutoff = now.minus(ticketRetention);
+        queuedJobs.values().removeIf(queued -> queued.resolvedAt != null && queued.resolvedAt.isBefore(ticketCutoff));
+    }
+
+    private Submission newSubmission(String key, String fingerprint, Instant now, VideoRequest videoRequest,
+                                     String principal, boolean background) {
+        Submission submission = new Submission(fingerprint, now);
+        // Cached so every identical submission shares the one upstream call, which is only made on first subscription
+        submission.response = create(videoRequest, principal, background)
+            .doOnNext(response -> {
+                if (response.isSuccess()) {
+                    submission.jobId = response.getJobId();
+                } else {
+                    // Failed submissions are not remembered so the user can retry
+                    submissions.remove(key, submission);
+                }
+            })
+            .doOnError(error -> submissions.remove(key, submission))
+            .cache();
+        return submission;
+    }
+
+    private Mono<VideoResponse> create(VideoRequest videoRequest, String principal, boolean background) {
+        return Mono.defer(() -> {
+            BigDecimal estimatedCost = costEstimationService.calculateEstimatedCost(
+                videoRequest.getResolution(), videoRequest.getDuration(), videoRequest.getVariants());
+
+            SpendingLedger.Reservation reservation;
+            try {
+                reservation = spendingLedger.reserve(principal, estimatedCost);
+            } catch (BudgetExceededException e) {
+                logger.warn("Rejected job for {}: {}", principal, e.getMessage());
+                return Mono.just(new VideoResponse(e.getMessage(), false));
+            }
+
+            JobQueue.Admission admission;
+            try {
+                admission = jobQueue.admit(reservation.getPrincipal(), background);
+            } catch (QueueFullException e) {
+                spendingLedger.release(reservation);
+                logger.warn("Rejected job for {}: {}", reservation.getPrincipal(), e.getMessage());
+                return Mono.just(new VideoResponse(e.getMessage(), false));
+            }
+
+            Mono<VideoResponse> creation = createInSlot(admission, videoRequest, estimatedCost, reservation);
+            if (background || !admission.isQueued()) {
+                return creation;
+            }
+            // The form does not wait for a slot: the job is created once it gets one, and the caller follows a ticket
+            return Mono.just(enqueue(admission, creation));
+        });
+    }
+
+    private Mono<VideoResponse> createInSlot(JobQueue.Admission admission, VideoRequest videoRequest,
+                                             BigDecimal estimatedCost, SpendingLedger.Reservation reservation) {
+        return admission.slot()
+            .flatMap(slot -> soraVideoService.generateVideo(videoRequest, () -> jobQueue.endpoint(slot))
+                .doOnNext(response -> {
+                    if (response.isSuccess()) {
+                        spendingLedger.bind(reservation, response.getJobId());
+                        // Registered before the slot is bound, so the stale slot sweep always finds the job
+                        jobRegistry.recordCreated(response.getJobId(), videoRequest, estimatedCost,
+                                                  reservation.getPrincipal(), response.getStatus(), response.getEndpoint());
+                        jobQueue.bind(slot, response.getJobId());
+                        jobPoller.track(response, videoRequest.getDuration());
+                        recordCreated(videoRequest, estimatedCost);
+                    } else {
+                        jobQueue.release(slot);
+                        spendingLedger.release(reservation);
+                    }
+                })
+                .doOnError(error -> jobQueue.release(slot))
+                .doOnCancel(() -> jobQueue.release(slot)))
+            .doOnError(error -> spendingLedger.release(reservation))
+            .doOnCancel(() -> spendingLedger.release(reservation));
+    }
+
+    /**
+     * Create a job once its queued submission gets a slot, tracked under a ticket until then
+     * @return The ticket's current state, which takes the place of the job in the response
+     */
+    private VideoResponse enqueue(JobQueue.Admission admission, Mono<VideoResponse> creation) {
+        QueuedJob queued = new QueuedJob(TICKET_PREFIX + UUID.randomUUID(), admission);
+        queuedJobs.put(queued.ticket, queued);
+        creation
+            .onErrorResume(error -> {
+                logger.error("Could not create queued job {}: {}", queued.ticket, error.getMessage());
+                return Mono.just(new VideoResponse("An error occurred while creating your job. Please try again.", false));
+            })
+            .subscribe(response -> {
+                queued.outcome = response;
+                queued.resolvedAt = Instant.now();
+            });
+        return queuedStatus(queued.ticket);
+    }
+
+    /**
+     * Whether an ID is a ticket for a job still waiting in the submission queue rather than a job ID
+     */
+    public static boolean isTicket(String jobId) {
+        return jobId != null && jobId.startsWith(TICKET_PREFIX);
+    }
+
+    /**
+     * State of a queued submission
+     * While it waits, the response has status "waiting" and a message with its place in the queue.
+     * Once the job is created, the response is the created job, under its own job ID; if creating
+     * it failed, the status is "failed" with the reason as message.
+     * @param ticket The ticket returned for the submission
+     */
+    public VideoResponse queuedStatus(String ticket) {
+        QueuedJob queued = queuedJobs.get(ticket);
+        if (queued == null) {
+            return new VideoResponse("This queued job is unknown or expired. Please submit it again.", false);
+        }
+        VideoResponse outcome = queued.outcome;
+        if (outcome != null && outcome.isSuccess()) {
+            return outcome;
+        }
+        if (outcome != null) {
+            VideoResponse failed = new VideoResponse(ticket, FAILED);
+            failed.setMessage(outcome.getMessage());
+            return failed;
+        }
+
+        VideoResponse waiting = new VideoResponse(ticket, WAITING);
+        int position = queued.admission.position();
+        waiting.setMessage(position > 0
+            ? String.format("The service is busy: your job is number %d in the queue, with an estimated wait of %s. "
+                            + "It starts automatically.",
+                            position, JobQueue.describe(queued.admission.estimatedWait()))
+            : "Your job got a slot and is being created.");
+        return waiting;
+    }
+
+    /**
+     * Follow a queued submission until its job is created or creating it failed
+     * @param ticket The ticket returned for the submission
+     * @return Flux<VideoResponse> of changes, ending with the created job or the failure
+     */
+    public Flux<VideoResponse> watchQueued(String ticket) {
+        return Flux.interval(Duration.ZERO, TICKET_REFRESH_INTERVAL)
+            .onBackpressureDrop()
+            .map(tick -> queuedStatus(ticket))
+            .distinctUntilChanged(response -> response.isSuccess() + ":" + response.getStatus() + ":" + response.getMessage())
+            .takeUntil(response -> !response.isSuccess() || !WAITING.equals(response.getStatus()));
+    }
+
+    private void recordCreated(VideoRequest videoRequest, BigDecimal estimatedCost) {
+        Counter.builder("video.jobs.submitted")
+            .description("Generation jobs created upstream")
+            .tag("resolution", String.valueOf(videoRequest.getResolution()))
+            .tag("duration", String.valueOf(videoRequest.getDuration()))
+            .register(meterRegistry)
+            .increment();
+        estimatedSpend.increment(estimatedCost.doubleValue());
+    }
+
+    private boolean isReusable(Submission submission, Instant now) {
+        if (submission.createdAt.plus(deduplicationWindow).isBefore(now)) {
+            return false;
+        }
+        String jobId = submission.jobId;
+        if (isTicket(jobId)) {
+            VideoResponse queued = queuedStatus(jobId);
+            if (!queued.isSuccess() || FAILED.equals(queued.getStatus())) {
+                return false;
+            }
+            jobId = queued.getJobId();
+        }
+        if (jobId == null || isTicket(jobId)) {
+            // Still waiting or being created upstream
+            return true;
+        }
+        // A job that failed upstream should not block a retry of the same request
+        String status = jobRegistry.find(jobId).map(JobRecord::getStatus).orElse(null);
+        return !"failed".equalsIgnoreCase(status) && !"cancelled".equalsIgnoreCase(status);
+    }
+
+    /**
+     * The original response, updated with what is now known about the job
+     */
+    private VideoResponse currentState(VideoResponse original) {
+        if (!original.isSuccess()) {
+            return original;
+        }
+        if (isTicket(original.getJobId())) {
+            VideoResponse queued = queuedStatus(original.getJobId());
+            return isTicket(queued.getJobId()) ? queued : currentState(queued);
+        }
+        Optional<JobRecord> record = jobRegistry.find(original.getJobId());
+        VideoResponse response = record.map(JobRecord::toVideoResponse)
+            .orElseGet(() -> new VideoResponse(original.getJobId(), original.getStatus()));
+        response.setMessage("An identical request was submitted recently, showing the existing job.");
+        return response;
+    }
+
+    /**
+     * Hash of the request with whitespace in the prompt normalized
+     * Case is kept: the model may render differently cased prompts differently, for example text to show in the video.
+     */
+    static String fingerprint(VideoRequest videoRequest) {
+        String prompt = videoRequest.getPrompt() == null ? ""
+            : videoRequest.getPrompt().trim().replaceAll("\\s+", " ");
+        String resolution = videoRequest.getResolution() == null ? ""
+            : videoRequest.getResolution().trim().toLowerCase(Locale.ROOT);
+        String canonical = prompt + "\n" + resolution + "\n" + videoRequest.getDuration()
+            + "\n" + videoRequest.getVariants();
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static class QueuedJob {
+        private final String ticket;
+        private final JobQueue.Admission admission;
+        private volatile VideoResponse outcome;
+        private volatile Instant resolvedAt;
+
+        QueuedJob(String ticket, JobQueue.Admission admission) {
+            this.ticket = ticket;
+            this.admission = admission;
+        }
+    }
+
+    private static class Submission {
+        private final String fingerprint;
+        private final Instant createdAt;
+        private Mono<VideoResponse> response;
+        private volatile String jobId;
+
+        Submission(String fingerprint, Instant createdAt) {
+            this.fingerprint = fingerprint;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoMetadata;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Top-level box layout of an MP4 file, with its moov box loaded for inspection and rewriting
+ * Only box headers are read from the media data, so parsing costs a few small reads regardless
+ * of the file size. {@link #writeFaststart} moves moov in front of the media data in one
+ * sequential pass and shifts the stco/co64 chunk offsets by the size of the moved box.
+ */
+final class Mp4File {
+
+    // Limits the memory spent on a corrupt or hostile moov size
+    private static final int MAX_MOOV_SIZE = 64 * 1024 * 1024;
+    private static final Set<String> CONTAINERS = Set.of("moov", "trak", "mdia", "minf", "stbl");
+
+    private final Path path;
+    private final long fileSize;
+    private final Box moovBox;
+    private final ByteBuffer moov;
+    private final long firstMediaOffset;
+    private final boolean fragmented;
+
+    private Mp4File(Path path, long fileSize, List<Box> boxes, Box moovBox, ByteBuffer moov) {
+        this.path = path;
+        this.fileSize = fileSize;
+        this.moovBox = moovBox;
+        this.moov = moov;
+        this.firstMediaOffset = boxes.stream().filter(box -> box.type.equals("mdat"))
+            .mapToLong(box -> box.offset).min().orElse(Long.MAX_VALUE);
+        this.fragmented = boxes.stream().anyMatch(box -> box.type.equals("moof"));
+    }
+
+    /**
+     * Read the box layout of a file
+     * @throws IOException if the file cannot be read or is not an MP4 with a single moov box
+     */
+    static Mp4File read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            List<Box> boxes = new ArrayList<>();
+            Box moovBox = null;
+            ByteBuffer header = ByteBuffer.allocate(16);
+            long position = 0;
+            while (position < size) {
+                header.clear().limit((int) Math.min(16, size - position));
+                readFully(channel, header, position);
+                header.flip();
+                if (header.remaining() < 8) {
+                    throw new IOException("Truncated box header at offset " + position);
+                }
+                long boxSize = Integer.toUnsignedLong(header.getInt());
+                String type = fourcc(header);
+                if (boxSize == 1) {
+                    if (header.remaining() < 8) {
+                        throw new IOException("Truncated box header at offset " + position);
+                    }
+                    boxSize = header.getLong();
+                } else if (boxSize == 0) {
+                    boxSize = size - position;
+                }
+                if (boxSize < 8 || position + boxSize > size) {
+                    throw new IOException("Invalid size " + boxSize + " for " + type + " box at offset " + position);
+                }
+                Box box = new Box(type, position, boxSize);
+                if (type.equals("moov")) {
+                    if (moovBox != null) {
+                        throw new IOException("More than one moov box");
+                    }
+                    moovBox = box;
+                }
+                boxes.add(box);
+                position += boxSize;
+            }
+            if (moovBox == null) {
+                throw new IOException("No moov box");
+            }
+            if (moovBox.size > MAX_MOOV_SIZE) {
+                throw new IOException("moov box of " + moovBox.size + " bytes is too large");
+            }
+            ByteBuffer moov = ByteBuffer.allocate((int) moovBox.size);
+            readFully(channel, moov, moovBox.offset);
+            moov.flip();
+            return new Mp4File(path, size, boxes, moovBox, moov);
+        }
+    }
+
+    /**
+     * Whether playback can start from the beginning of the file: moov comes before the media data,
+     * or the file is fragmented and carries its sample tables next to each fragment
+     */
+    boolean isFaststart() {
+        return fragmented || moovBox.offset < firstMediaOffset;
+    }
+
+    /**
+     * Duration, dimensions, codec and bitrate from the movie header and the first video track
+     */
+    VideoMetadata metadata() {
+        VideoMetadata metadata = new VideoMetadata();
+        metadata.setFaststart(isFaststart());
+        forEachBox(moov, 8, moov.limit(), (type, start, end) -> {
+            if (type.equals("mvhd")) {
+                int version = moov.get(start);
+                long timescale = Integer.toUnsignedLong(moov.getInt(start + (version == 1 ? 20 : 12)));
+                long duration = version == 1 ? moov.getLong(start + 24) : Integer.toUnsignedLong(moov.getInt(start + 16));
+                if (timescale > 0) {
+                    metadata.setDurationSeconds(Math.round(duration * 1000.0 / timescale) / 1000.0);
+                }
+            } else if (type.equals("trak") && metadata.getCodec() == null) {
+                readVideoTrack(start, end, metadata);
+            }
+            return type.equals("moov");
+        });
+        if (metadata.getDurationSeconds() > 0) {
+            metadata.setBitrate(Math.round(fileSize * 8 / metadata.getDurationSeconds()));
+        }
+        return metadata;
+    }
+
+    /**
+     * Write a copy of the file with moov in front of the first media data box
+     * The copy has the same size as the original, since boxes are only reordered.
+     * @param target The file to create
+     * @return false if the file is already faststart or a chunk offset would no longer fit in 32 bits
+     */
+    boolean writeFaststart(Path target) throws IOException {
+        if (isFaststart()) {
+            return false;
+        }
+        long insertAt = firstMediaOffset;
+        ByteBuffer patched = ByteBuffer.allocate(moov.limit());
+        patched.put(moov.duplicate().rewind()).flip();
+        if (!shiftChunkOffsets(patched, insertAt, moovBox.offset, moovBox.size)) {
+            return false;
+        }
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            transfer(in, out, 0, insertAt);
+            while (patched.hasRemaining()) {
+                out.write(patched);
+            }
+            transfer(in, out, insertAt, moovBox.offset - insertAt);
+            long afterMoov = moovBox.offset + moovBox.size;
+            transfer(in, out, afterMoov, fileSize - afterMoov);
+        }
+        return true;
+    }
+
+    /**
+     * Add the moov size to every chunk offset that points into the range moov is moved in front of
+     */
+    private static boolean shiftChunkOffsets(ByteBuffer moov, long insertAt, long moovOffset, long moovSize) {
+        boolean[] fits = {true};
+        forEachBox(moov, 8, moov.limit(), (type, start, end) -> {
+            if (type.equals("stco") || type.equals("co64")) {
+                boolean wide = type.equals("co64");
+                long count = Integer.toUnsignedLong(moov.getInt(start + 4));
+                int entry = start + 8;
+                for (long i = 0; i < count && entry < end; i++) {
+                    long offset = wide ? moov.getLong(entry) : Integer.toUnsignedLong(moov.getInt(entry));
+                    if (offset >= insertAt && offset < moovOffset) {
+                        offset += moovSize;
+                    }
+                    if (wide) {
+                        moov.putLong(entry, offset);
+                        entry += 8;
+                    } else if (offset > 0xFFFFFFFFL) {
+                        fits[0] = false;
+                        return false;
+                    } else {
+                        moov.putInt(entry, (int) offset);
+                        entry += 4;
+                    }
+                }
+                return false;
+            }
+            return CONTAINERS.contains(type);
+        });
+        return fits[0];
+    }
+
+    private void readVideoTrack(int start, int end, VideoMetadata metadata) {
+        String[] handler = new String[1];
+        String[] codec = new String[1];
+        int[] size = new int[2];
+        forEachBox(moov, start, end, (type, boxStart, boxEnd) -> {
+            switch (type) {
+                case "tkhd" -> {
+                    // Width and height are 16.16 fixed point at the end of the track header
+                    size[0] = moov.getInt(boxEnd - 8) >>> 16;
+                    size[1] = moov.getInt(boxEnd - 4) >>> 16;
+                }
+                case "hdlr" -> handler[0] = fourcc(moov, boxStart + 8);
+                case "stsd" -> {
+                    if (moov.getInt(boxStart + 4) > 0) {
+                        codec[0] = fourcc(moov, boxStart + 12);
+                    }
+                }
+                default -> {
+                    return CONTAINERS.contains(type);
+                }
+            }
+            return false;
+        });
+        if ("vide".equals(handler[0])) {
+            metadata.setWidth(size[0]);
+            metadata.setHeight(size[1]);
+            metadata.setCodec(codec[0]);
+        }
+    }
+
+    /**
+     * Visit the boxes between start and end, descending into a box when the visitor returns true
+     * The visitor gets the offset of the box payload (after the header) and the end of the box.
+     */
+    private static void forEachBox(ByteBuffer buffer, int start, int end, BoxVisitor visitor) {
+        int position = start;
+        while (position + 8 <= end) {
+            long size = Integer.toUnsignedLong(buffer.getInt(position));
+            String type = fourcc(buffer, position + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                if (position + 16 > end) {
+                    return;
+                }
+                size = buffer.getLong(position + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - position;
+            }
+            if (size < headerSize || position + size > end) {
+                return;
+            }
+            int boxEnd = (int) (position + size);
+            if (visitor.visit(type, position + headerSize, boxEnd)) {
+                forEachBox(buffer, position + headerSize, boxEnd, visitor);
+            }
+            position = boxEnd;
+        }
+    }
+
+    private static void transfer(FileChannel in, FileChannel out, long position, long count) throws IOException {
+        long end = position + count;
+        while (position < end) {
+            position += in.transferTo(position, end - position, out);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of file at offset " + position);
+            }
+            position += read;
+        }
+    }
+
+    private static String fourcc(ByteBuffer buffer) {
+        byte[] type = new byte[4];
+        buffer.get(type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    private static String fourcc(ByteBuffer buffer, int index) {
+        byte[] type = new byte[4];
+        buffer.get(index, type);
+        return new String(type, StandardCharsets.ISO_8859_1);
+    }
+
+    @FunctionalInterface
+    private interface BoxVisitor {
+        boolean visit(String type, int start, int end);
+    }
+
+    private record Box(String type, long offset, long size) {
+    }
+}
@@ -0,0 +1,208 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.PriceSheet;
+import com.example.soravideogenerator.model.VideoResolution;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+
+/**
+ * Immutable pricing table built from one {@link PriceSheet}
+ * Every estimate, range and breakdown for the supported resolutions and durations is computed
+ * once when the sheet is loaded, so lookups are array reads. Amounts are kept both as long
+ * micro-dollars for arithmetic and as the BigDecimal values shown to users.
+ */
+final class PricingTable {
+
+    private static final int FALLBACK_ROW = VideoResolution.values().length;
+    private static final BigDecimal TWO = BigDecimal.valueOf(2);
+
+    private final String version;
+    private final String source;
+    private final int maxDuration;
+
+    // Indexed by [resolution ordinal, or FALLBACK_ROW][duration in seconds]
+    private final BigDecimal[] minPerSecond = new BigDecimal[FALLBACK_ROW + 1];
+    private final BigDecimal[] maxPerSecond = new BigDecimal[FALLBACK_ROW + 1];
+    private final BigDecimal[] ratePerSecond = new BigDecimal[FALLBACK_ROW + 1];
+    private final long[][] estimateMicros;
+    private final long[][] minMicros;
+    private final long[][] maxMicros;
+    private final BigDecimal[][] estimates;
+    private final BigDecimal[][] minCosts;
+    private final BigDecimal[][] maxCosts;
+    private final String[][] breakdowns;
+
+    private PricingTable(PriceSheet sheet) {
+        this.version = sheet.getVersion();
+        this.source = sheet.getSource() != null ? sheet.getSource() : "price sheet " + sheet.getVersion();
+        this.maxDuration = sheet.getMaxDurationSeconds();
+
+        Map<String, PriceSheet.Price> prices = sheet.getResolutions() != null ? sheet.getResolutions() : Map.of();
+        for (VideoResolution resolution : VideoResolution.values()) {
+            PriceSheet.Price price = prices.get(resolution.getLabel());
+            if (price == null) {
+                setRow(resolution.ordinal(), sheet.getFallbackPerSecond(), sheet.getFallbackPerSecond());
+            } else {
+                setRow(resolution.ordinal(), price.getMinPerSecond(), price.getMaxPerSecond());
+            }
+        }
+        setRow(FALLBACK_ROW, sheet.getFallbackPerSecond(), sheet.getFallbackPerSecond());
+
+        int rows = FALLBACK_ROW + 1;
+        estimateMicros = new long[rows][maxDuration + 1];
+        minMicros = new long[rows][maxDuration + 1];
+        maxMicros = new long[rows][maxDuration + 1];
+        estimates = new BigDecimal[rows][maxDuration + 1];
+        minCosts = new BigDecimal[rows][maxDuration + 1];
+        maxCosts = new BigDecimal[rows][maxDuration + 1];
+        breakdowns = new String[rows][maxDuration + 1];
+        for (int row = 0; row < rows; row++) {
+            for (int duration = 0; duration <= maxDuration; duration++) {
+                estimates[row][duration] = computeEstimate(row, duration);
+                minCosts[row][duration] = computeMin(row, duration);
+                maxCosts[row][duration] = computeMax(row, duration);
+                estimateMicros[row][duration] = toMicros(estimates[row][duration]);
+                minMicros[row][duration] = toMicros(minCosts[row][duration]);
+                maxMicros[row][duration] = toMicros(maxCosts[row][duration]);
+                if (row != FALLBACK_ROW) {
+                    breakdowns[row][duration] = computeBreakdown(VideoResolution.values()[row].getLabel(), row, duration);
+                }
+            }
+        }
+    }
+
+    /**
+     * Build and validate a table from a price sheet
+     * @throws IllegalArgumentException if the sheet is incomplete or inconsistent
+     */
+    static PricingTable from(PriceSheet sheet) {
+        if (sheet.getVersion() == null || sheet.getVersion().isBlank()) {
+            throw new IllegalArgumentException("Price sheet has no version");
+        }
+        if (sheet.getMaxDurationSeconds() < 1 || sheet.getMaxDurationSeconds() > 600) {
+            throw new IllegalArgumentException("Price sheet maxDurationSeconds must be between 1 and 600");
+        }
+        requirePositive(sheet.getFallbackPerSecond(), "fallbackPerSecond");
+        if (sheet.getResolutions() != null) {
+            sheet.getResolutions().forEach((label, price) -> {
+                if (VideoResolution.fromLabel(label) == null) {
+                    throw new IllegalArgumentException("Price sheet has unsupported resolution " + label);
+                }
+                requirePositive(price.getMinPerSecond(), label + ".minPerSecond");
+                requirePositive(price.getMaxPerSecond(), label + ".maxPerSecond");
+                if (price.getMinPerSecond().compareTo(price.getMaxPerSecond()) > 0) {
+                    throw new IllegalArgumentException("Price sheet " + label + " has minPerSecond above maxPerSecond");
+                }
+            });
+        }
+        return new PricingTable(sheet);
+    }
+
+    String version() {
+        return version;
+    }
+
+    int row(String resolution) {
+        VideoResolution known = VideoResolution.fromLabel(resolution);
+        return known != null ? known.ordinal() : FALLBACK_ROW;
+    }
+
+    long estimateMicros(int row, int duration) {
+        return inTable(duration) ? estimateMicros[row][duration] : toMicros(computeEstimate(row, duration));
+    }
+
+    long minMicros(int row, int duration) {
+        return inTable(duration) ? minMicros[row][duration] : toMicros(computeMin(row, duration));
+    }
+
+    long maxMicros(int row, int duration) {
+        return inTable(duration) ? maxMicros[row][duration] : toMicros(computeMax(row, duration));
+    }
+
+    BigDecimal estimate(int row, int duration) {
+        return inTable(duration) ? estimates[row][duration] : computeEstimate(row, duration);
+    }
+
+    BigDecimal minCost(int row, int duration) {
+        return inTable(duration) ? minCosts[row][duration] : computeMin(row, duration);
+    }
+
+    BigDecimal maxCost(int row, int duration) {
+        return inTable(duration) ? maxCosts[row][duration] : computeMax(row, duration);
+    }
+
+    String breakdown(String resolution, int row, int duration) {
+        if (row != FALLBACK_ROW && inTable(duration)) {
+            return breakdowns[row][duration];
+        }
+        return computeBreakdown(resolution, row, duration);
+    }
+
+    static BigDecimal fromMicros(long micros) {
+        return BigDecimal.valueOf(micros, 6).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private boolean inTable(int duration) {
+        return duration >= 0 && duration <= maxDuration;
+    }
+
+    private void setRow(int row, BigDecimal min, BigDecimal max) {
+        minPerSecond[row] = min;
+        maxPerSecond[row] = max;
+        // Variable prices are estimated at the midpoint, rounded to whole cents per second
+        ratePerSecond[row] = min.compareTo(max) == 0 ? min : min.add(max).divide(TWO, 2, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal computeEstimate(int row, int duration) {
+        return ratePerSecond[row].multiply(BigDecimal.valueOf(duration)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal computeMin(int row, int duration) {
+        return minPerSecond[row].multiply(BigDecimal.valueOf(duration)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private BigDecimal computeMax(int row, int duration) {
+        return maxPerSecond[row].multiply(BigDecimal.valueOf(duration)).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    private String computeBreakdown(String resolution, int row, int duration) {
+        BigDecimal costPerSecond = ratePerSecond[row];
+        BigDecimal totalCost = computeEstimate(row, duration);
+        BigDecimal minCost = computeMin(row, duration);
+        BigDecimal maxCost = computeMax(row, duration);
+
+        String costInfo;
+        if (minCost.equals(maxCost)) {
+            // Fixed pricing
+            costInfo = String.format("$%.2f/sec × %ds = $%.2f",
+                                     costPerSecond, duration, totalCost);
+        } else {
+            // Variable pricing - show range
+            costInfo = String.format("$%.2f-$%.2f (range: $%.2f-$%.2f)",
+                                     totalCost, totalCost, minCost, maxCost);
+        }
+
+        return String.format(
+            "🎬 **Azure OpenAI Sora Video Generation Cost**%n%n" +
+            "• Resolution: %s%n" +
+            "• Duration: %d seconds%n" +
+            "• Rate: $%.2f per second%n" +
+            "• **Total cost: %s**%n%n" +
+            "💡 *Pricing based on %s*%n" +
+            "📊 *Some resolutions have variable pricing within 1-20s tiers*",
+            resolution, duration, costPerSecond, costInfo, source
+        );
+    }
+
+    private static long toMicros(BigDecimal amount) {
+        return amount.movePointRight(6).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static void requirePositive(BigDecimal value, String name) {
+        if (value == null || value.signum() <= 0) {
+            throw new IllegalArgumentException("Price sheet " + name + " must be a positive amount");
+        }
+    }
+}
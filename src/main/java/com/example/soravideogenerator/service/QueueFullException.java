@@ -0,0 +1,11 @@
+package com.example.soravideogenerator.service;
+
+/**
+ * Thrown when a job cannot be queued for submission
+ */
+public class QueueFullException extends RuntimeException {
+
+    public QueueFullException(String message) {
+        super(message);
+    }
+}
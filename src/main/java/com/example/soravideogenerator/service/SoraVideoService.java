@@ -5,61 +5,158 @@ import com.example.soravideogenerator.model.SoraApiRequest;
 import com.example.soravideogenerator.model.SoraApiResponse;
 import com.example.soravideogenerator.model.VideoRequest;
 import com.example.soravideogenerator.model.VideoResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.reactivestreams.Publisher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.reactive.ClientHttpRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClientRequest;
 import reactor.util.retry.Retry;
 
+import java.net.ConnectException;
+import java.net.URI;
 import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Service for handling Sora video generation using Azure OpenAI API
+ * New jobs are routed across the configured endpoints; calls about an existing job go to the
+ * endpoint recorded for it in the job registry.
  */
 @Service
 public class SoraVideoService {
     
     private static final Logger logger = LoggerFactory.getLogger(SoraVideoService.class);
     
-    private final WebClient webClient;
+    // Resilience4j instance names, configured under resilience4j.circuitbreaker/bulkhead.instances
+    static final String CREATE_JOB = "createJob";
+    static final String CHECK_STATUS = "checkStatus";
+    static final String DOWNLOAD_CONTENT = "downloadContent";
+    static final String DOWNLOAD_RESULT = "downloadResult";
+    
+    // Attempts to create a job after the first, and the backoff before the first of them unless throttled
+    private static final int CREATE_RETRIES = 3;
+    private static final Duration CREATE_RETRY_BACKOFF = Duration.ofSeconds(1);
+    
+    // Chunks requested from upstream ahead of what the client has consumed
+    private static final int RELAY_PREFETCH = 8;
+    
+    private final EndpointPool endpointPool;
+    private final JobRegistry jobRegistry;
+    private final WebClient resultWebClient;
     private final AzureOpenAIConfig config;
     
+    // Each operation gets its own bulkhead, and each endpoint its own breakers, so slow downloads cannot starve status checks
+    private final Bulkhead createBulkhead;
+    private final Bulkhead statusBulkhead;
+    private final Bulkhead downloadBulkhead;
+    private final Bulkhead resultBulkhead;
+    
+    private final MeterRegistry meterRegistry;
+    private final Counter createRetries;
+    private final Counter downloadedBytes;
+    
     @Autowired
-    public SoraVideoService(WebClient azureOpenAIWebClient, AzureOpenAIConfig config) {
-        this.webClient = azureOpenAIWebClient;
+    public SoraVideoService(EndpointPool azureOpenAIEndpointPool, JobRegistry jobRegistry,
+                            @Qualifier("videoResultWebClient") WebClient videoResultWebClient, AzureOpenAIConfig config,
+                            BulkheadRegistry bulkheadRegistry, MeterRegistry meterRegistry) {
+        this.endpointPool = azureOpenAIEndpointPool;
+        this.jobRegistry = jobRegistry;
+        this.resultWebClient = videoResultWebClient;
         this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.createRetries = Counter.builder("azure.openai.retries").tag("operation", CREATE_JOB)
+            .description("Retried calls to Azure OpenAI").register(meterRegistry);
+        this.downloadedBytes = Counter.builder("azure.openai.download.bytes").baseUnit("bytes")
+            .description("Video content relayed from Azure OpenAI").register(meterRegistry);
+        this.createBulkhead = bulkheadRegistry.bulkhead(CREATE_JOB);
+        this.statusBulkhead = bulkheadRegistry.bulkhead(CHECK_STATUS);
+        this.downloadBulkhead = bulkheadRegistry.bulkhead(DOWNLOAD_CONTENT);
+        this.resultBulkhead = bulkheadRegistry.bulkhead(DOWNLOAD_RESULT);
     }
       /**
      * Generate a video using the Azure OpenAI Sora API
+     * Each attempt asks for an endpoint, so a retry after a failure can go to a different deployment.
      * @param videoRequest The video request containing prompt, resolution, and duration
+     * @param endpoints Called once per attempt for the endpoint to create the job on, such as the
+     *                  one whose quota the job's queue slot counts against
      * @return Mono<VideoResponse> containing the job details or error information
      */
-    public Mono<VideoResponse> generateVideo(VideoRequest videoRequest) {
-        logger.info("Starting video generation for prompt: {} with resolution: {} and duration: {}s", 
-                   videoRequest.getPrompt(), videoRequest.getResolution(), videoRequest.getDuration());
+    public Mono<VideoResponse> generateVideo(VideoRequest videoRequest, Supplier<EndpointPool.Endpoint> endpoints) {
+        logger.info("Starting video generation with resolution: {}, duration: {}s and {} variant(s)",
+                   videoRequest.getResolution(), videoRequest.getDuration(), videoRequest.getVariants());
         
         SoraApiRequest request = new SoraApiRequest(
             videoRequest.getPrompt(),
             videoRequest.getWidth(),
             videoRequest.getHeight(),
-            videoRequest.getDuration().toString()
+            videoRequest.getDuration().toString(),
+            videoRequest.getVariants().toString()
         );
         
-        return webClient.post()
-            .uri(uriBuilder -> uriBuilder
-                .path("/openai/v1/video/generations/jobs")
-                .queryParam("api-version", config.getApiVersion())
-                .build())
-            .bodyValue(request)
-            .retrieve()
-            .bodyToMono(SoraApiResponse.class)
-            .map(this::mapToVideoResponse)
-            .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
-                .filter(this::isRetryableException))
-            .doOnSuccess(response -> logger.info("Video generation job created: {}", response.getJobId()))
+        return Mono.defer(() -> {
+                EndpointPool.Endpoint endpoint = endpoints.get();
+                return endpoint.getWebClient().post()
+                    .uri(uriBuilder -> uriBuilder
+                        .path("/openai/v1/video/generations/jobs")
+                        .queryParam("api-version", config.getApiVersion())
+                        .build())
+                    .httpRequest(responseTimeout(config.getCreateTimeout()))
+                    .bodyValue(request)
+                    .retrieve()
+                    .toEntity(SoraApiResponse.class)
+                    .transform(timed(CREATE_JOB))
+                    .mapNotNull(ResponseEntity::getBody)
+                    .transformDeferred(CircuitBreakerOperator.of(endpoint.getCreateBreaker()))
+                    .transformDeferred(BulkheadOperator.of(createBulkhead))
+                    .map(apiResponse -> {
+                        VideoResponse response = mapToVideoResponse(apiResponse);
+                        response.setEndpoint(endpoint.getName());
+                        return response;
+                    });
+            })
+            .retryWhen(Retry.from(signals -> signals.concatMap(signal -> {
+                Throwable error = signal.failure();
+                if (signal.totalRetries() >= CREATE_RETRIES || !isRetryableCreate(error)) {
+                    return Mono.error(error);
+                }
+                createRetries.increment();
+                // The endpoint's limiter holds the next call for as long as a throttled response asked,
+                // so only other failures back off here
+                return Mono.delay(isThrottled(error)
+                    ? Duration.ZERO : CREATE_RETRY_BACKOFF.multipliedBy(1L << signal.totalRetries()));
+            })))
+            .doOnSuccess(response -> logger.info("Video generation job created: {} on endpoint {}",
+                                                 response.getJobId(), response.getEndpoint()))
             .doOnError(error -> logger.error("Error generating video: {}", error.getMessage()))
             .onErrorReturn(new VideoResponse("Failed to generate video. Please try again.", false));
     }
@@ -69,47 +166,205 @@ public class SoraVideoService {
      * @return Mono<VideoResponse> containing the current status and video URL if completed
      */
     public Mono<VideoResponse> checkJobStatus(String jobId) {
+        return fetchJobStatus(jobId)
+            .onErrorReturn(new VideoResponse("Failed to check job status.", false));
+    }
+    
+    /**
+     * Check the status of a video generation job, propagating upstream errors
+     * Used by callers that react to the failure itself, such as backing off on throttling
+     * @param jobId The job ID to check
+     * @return Mono<VideoResponse> containing the current status, or an error signal
+     */
+    public Mono<VideoResponse> fetchJobStatus(String jobId) {
         logger.info("Checking status for job: {}", jobId);
+        EndpointPool.Endpoint endpoint = endpointFor(jobId);
         
-        return webClient.get()
+        return endpoint.getWebClient().get()
             .uri(uriBuilder -> uriBuilder
                 .path("/openai/v1/video/generations/jobs/{jobId}")
                 .queryParam("api-version", config.getApiVersion())
                 .build(jobId))
+            .httpRequest(responseTimeout(config.getStatusTimeout()))
             .retrieve()
-            .bodyToMono(SoraApiResponse.class)
-            .map(this::mapToVideoResponse)
+            .toEntity(SoraApiResponse.class)
+            .transform(timed(CHECK_STATUS))
+            .mapNotNull(ResponseEntity::getBody)
+            .transformDeferred(CircuitBreakerOperator.of(endpoint.getStatusBreaker()))
+            .transformDeferred(BulkheadOperator.of(statusBulkhead))
+            .map(apiResponse -> {
+                VideoResponse response = mapToVideoResponse(apiResponse);
+                response.setEndpoint(endpoint.getName());
+                return response;
+            })
             .doOnSuccess(response -> logger.info("Job {} status: {}", jobId, response.getStatus()))
-            .doOnError(error -> logger.error("Error checking job status: {}", error.getMessage()))
-            .onErrorReturn(new VideoResponse("Failed to check job status.", false));
+            .doOnError(error -> logger.error("Error checking job status: {}", error.getMessage()));
     }
     
     /**
-     * Download video content for a completed generation
+     * Stream video content for a completed generation
+     * The body is relayed chunk by chunk from the upstream connection, so memory use per
+     * download stays bounded by the in-flight buffers rather than the size of the video.
+     * A download bulkhead permit is held until what the handler returns has terminated, so it is
+     * returned even if the handler never subscribes to the body.
+     * @param jobId The job the generation belongs to, which determines the endpoint to download from
      * @param generationId The generation ID to download
-     * @return Mono<byte[]> containing the video data
+     * @param range Range header to forward, or null for the whole video
+     * @param handler Relays the upstream status, headers and streaming body
+     * @return Flux<T> with what the handler emits
      */
-    public Mono<byte[]> downloadVideoContent(String generationId) {
-        logger.info("Downloading video content for generation: {}", generationId);
-        
-        return webClient.get()
-            .uri(uriBuilder -> uriBuilder
-                .path("/openai/v1/video/generations/{generationId}/content/video")
-                .queryParam("api-version", config.getApiVersion())
-                .build(generationId))
-            .retrieve()
-            .bodyToMono(byte[].class)
-            .doOnSuccess(data -> logger.info("Successfully downloaded video content, size: {} bytes", data.length))
-            .doOnError(error -> logger.error("Error downloading video content: {}", error.getMessage()));
-    }    private VideoResponse mapToVideoResponse(SoraApiResponse apiResponse) {
+    public <T> Flux<T> downloadVideoContent(String jobId, String generationId, String range,
+                                            Function<ResponseEntity<Flux<DataBuffer>>, ? extends Publisher<T>> handler) {
+        return Flux.defer(() -> {
+            logger.info("Downloading video content for generation: {}", generationId);
+            EndpointPool.Endpoint endpoint = endpointFor(jobId);
+            
+            return relay(DOWNLOAD_CONTENT, downloadBulkhead, "generation " + generationId, endpoint.getWebClient().get()
+                .uri(uriBuilder -> uriBuilder
+                    .path("/openai/v1/video/generations/{generationId}/content/video")
+                    .queryParam("api-version", config.getApiVersion())
+                    .build(generationId))
+                .httpRequest(responseTimeout(config.getDownloadTimeout()))
+                .headers(headers -> setRange(headers, range))
+                .retrieve()
+                .toEntityFlux(DataBuffer.class)
+                .transformDeferred(CircuitBreakerOperator.of(endpoint.getDownloadBreaker())), handler);
+        });
+    }
+    
+    /**
+     * Stream video content from a legacy result URL returned by older API versions
+     * Uses the same backpressured relay as generation downloads, on a separate connection pool
+     * and bulkhead, so a slow storage host cannot hold up calls to Azure OpenAI.
+     * @param resultUrl The pre-signed URL of the video
+     * @param range Range header to forward, or null for the whole video
+     * @param handler Relays the upstream status, headers and streaming body
+     * @return Flux<T> with what the handler emits
+     */
+    public <T> Flux<T> downloadResultUrl(String resultUrl, String range,
+                                         Function<ResponseEntity<Flux<DataBuffer>>, ? extends Publisher<T>> handler) {
+        return Flux.defer(() -> {
+            URI uri = URI.create(resultUrl);
+            // The query string holds the signature, so only the host is logged
+            logger.info("Downloading video content from result URL on {}", uri.getHost());
+            
+            return relay(DOWNLOAD_RESULT, resultBulkhead, "result URL on " + uri.getHost(), resultWebClient.get()
+                .uri(uri)
+                .headers(headers -> setRange(headers, range))
+                .retrieve()
+                .toEntityFlux(DataBuffer.class), handler);
+        });
+    }
+
+    /**
+     * Open pooled connections to every endpoint, so the DNS lookup and TLS handshake are not
+     * paid by the first jobs after startup
+     * Sends concurrent job list requests, bypassing circuit breakers and bulkheads; any HTTP
+     * response counts, since its connection goes back to the pool either way.
+     * @param perEndpoint Connections to open to each endpoint
+     * @return Mono<Long> with the number of requests that got a response
+     */
+    public Mono<Long> openConnections(int perEndpoint) {
+        return Flux.fromIterable(endpointPool.getEndpoints())
+            .flatMap(endpoint -> Flux.range(0, perEndpoint)
+                .flatMap(i -> endpoint.getWebClient().get()
+                    .uri(uriBuilder -> uriBuilder
+                        .path("/openai/v1/video/generations/jobs")
+                        .queryParam("api-version", config.getApiVersion())
+                        .queryParam("limit", 1)
+                        .build())
+                    .httpRequest(responseTimeout(config.getStatusTimeout()))
+                    .exchangeToMono(response -> response.releaseBody().thenReturn(true))
+                    .onErrorResume(error -> {
+                        logger.debug("Could not open a connection to endpoint {}: {}", endpoint.getName(), error.getMessage());
+                        return Mono.just(false);
+                    }), perEndpoint))
+            .filter(answered -> answered)
+            .count();
+    }
+
+    /**
+     * Relay a streaming download while holding a bulkhead permit and timing it until the last byte
+     * At most RELAY_PREFETCH chunks are read ahead of the client, so a slow client slows the
+     * upstream read instead of filling memory. The permit is returned when the handler's result
+     * terminates or is cancelled, whether or not the body was ever subscribed to.
+     */
+    private <T> Flux<T> relay(String operation, Bulkhead bulkhead, String source,
+                              Mono<ResponseEntity<Flux<DataBuffer>>> download,
+                              Function<ResponseEntity<Flux<DataBuffer>>, ? extends Publisher<T>> handler) {
+        return Flux.defer(() -> {
+            if (!bulkhead.tryAcquirePermission()) {
+                return Flux.error(BulkheadFullException.createBulkheadFullException(bulkhead));
+            }
+            
+            // The download is timed until the last byte has been relayed, not just the response headers
+            Timer.Sample sample = Timer.start(meterRegistry);
+            AtomicBoolean timed = new AtomicBoolean();
+            BiConsumer<String, String> stop = (outcome, status) -> {
+                if (timed.compareAndSet(false, true)) {
+                    stopTimer(sample, operation, outcome, status);
+                }
+            };
+            AtomicReference<String> received = new AtomicReference<>("none");
+            
+            return download
+                .doOnError(error -> {
+                    stop.accept(outcome(error), httpStatus(error));
+                    logger.error("Error downloading video content: {}", error.getMessage());
+                })
+                .flatMapMany(entity -> {
+                    String status = String.valueOf(entity.getStatusCode().value());
+                    received.set(status);
+                    AtomicLong bytes = new AtomicLong();
+                    Flux<DataBuffer> body = entity.getBody()
+                        .limitRate(RELAY_PREFETCH)
+                        .doOnNext(buffer -> {
+                            bytes.addAndGet(buffer.readableByteCount());
+                            downloadedBytes.increment(buffer.readableByteCount());
+                        })
+                        .doOnComplete(() -> {
+                            stop.accept("success", status);
+                            logger.info("Successfully streamed video content for {}, size: {} bytes",
+                                        source, bytes.get());
+                        })
+                        .doOnError(error -> {
+                            stop.accept(outcome(error), status);
+                            logger.error("Error streaming video content: {}", error.getMessage());
+                        });
+                    return handler.apply(new ResponseEntity<>(body, entity.getHeaders(), entity.getStatusCode()));
+                })
+                .doFinally(signal -> {
+                    // Cancelled, or the handler finished without reading the whole body
+                    stop.accept("cancelled", received.get());
+                    bulkhead.onComplete();
+                });
+        });
+    }
+    
+    private EndpointPool.Endpoint endpointFor(String jobId) {
+        return endpointPool.get(jobRegistry.endpointOf(jobId).orElse(null));
+    }
+    
+    private static void setRange(HttpHeaders headers, String range) {
+        if (range != null) {
+            headers.set(HttpHeaders.RANGE, range);
+        }
+    }
+    
+    static VideoResponse mapToVideoResponse(SoraApiResponse apiResponse) {
         VideoResponse response = new VideoResponse(apiResponse.getId(), apiResponse.getStatus());
+        response.setExpiresAt(apiResponse.getExpiresAt());
         
         // Handle both "completed" and "succeeded" as final success states
         if (("completed".equalsIgnoreCase(apiResponse.getStatus()) || "succeeded".equalsIgnoreCase(apiResponse.getStatus()))) {
             // Check if generations array has content
             if (apiResponse.getGenerations() != null && !apiResponse.getGenerations().isEmpty()) {
-                String generationId = apiResponse.getGenerations().get(0).getId();
-                response.setGenerationId(generationId);
+                List<String> generationIds = apiResponse.getGenerations().stream()
+                    .map(SoraApiResponse.Generation::getId)
+                    .filter(Objects::nonNull)
+                    .toList();
+                response.setGenerationId(apiResponse.getGenerations().get(0).getId());
+                response.setGenerationIds(generationIds);
                 // Set a placeholder URL for display purposes
                 response.setVideoUrl("available");
             }
@@ -121,7 +376,64 @@ public class SoraVideoService {
         
         return response;
     }
-      private boolean isRetryableException(Throwable throwable) {
+    
+    /**
+     * Time each attempt of a call to Azure, tagged with the operation, outcome and HTTP status
+     */
+    private <T> Function<Mono<ResponseEntity<T>>, Mono<ResponseEntity<T>>> timed(String operation) {
+        return call -> Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                .doOnSuccess(entity -> stopTimer(sample, operation, "success",
+                    entity == null ? "none" : String.valueOf(entity.getStatusCode().value())))
+                .doOnError(error -> stopTimer(sample, operation, outcome(error), httpStatus(error)))
+                .doOnCancel(() -> stopTimer(sample, operation, "cancelled", "none"));
+        });
+    }
+    
+    private void stopTimer(Timer.Sample sample, String operation, String outcome, String status) {
+        sample.stop(Timer.builder("azure.openai.requests")
+            .description("Calls to Azure OpenAI")
+            .tag("operation", operation)
+            .tag("outcome", outcome)
+            .tag("status", status)
+            .publishPercentileHistogram()
+            .register(meterRegistry));
+    }
+    
+    private static String outcome(Throwable error) {
+        if (error instanceof WebClientResponseException responseException) {
+            int status = responseException.getStatusCode().value();
+            if (status == 429) {
+                return "throttled";
+            }
+            return responseException.getStatusCode().is5xxServerError() ? "server_error" : "client_error";
+        }
+        if (error instanceof TimeoutException || error.getCause() instanceof ReadTimeoutException) {
+            return "timeout";
+        }
+        if (isRejectedLocally(error)) {
+            return "rejected";
+        }
+        return error instanceof WebClientRequestException ? "connection_error" : "error";
+    }
+    
+    private static String httpStatus(Throwable error) {
+        return error instanceof WebClientResponseException responseException
+            ? String.valueOf(responseException.getStatusCode().value()) : "none";
+    }
+    
+    /**
+     * Per-request response timeout: the longest gap allowed between reads of the response
+     */
+    private static Consumer<ClientHttpRequest> responseTimeout(Duration timeout) {
+        return request -> {
+            HttpClientRequest nativeRequest = request.getNativeRequest();
+            nativeRequest.responseTimeout(timeout);
+        };
+    }
+    
+    static boolean isRetryableException(Throwable throwable) {
         if (throwable instanceof WebClientResponseException) {
             WebClientResponseException ex = (WebClientResponseException) throwable;
             // Retry on server errors (5xx) and rate limiting (429)
@@ -129,4 +441,32 @@ public class SoraVideoService {
         }
         return false;
     }
+    
+    /**
+     * Whether Azure throttled a call, which makes the endpoint's rate limiter pause before the next one
+     */
+    static boolean isThrottled(Throwable throwable) {
+        return throwable instanceof WebClientResponseException ex
+            && (ex.getStatusCode().value() == 429 || ex.getStatusCode().value() == 503);
+    }
+    
+    /**
+     * Whether a failed job creation should be retried
+     * With several endpoints, a call refused by an ejected endpoint or one that could not connect is
+     * also retried: it never reached Azure, and the next attempt goes to another endpoint.
+     */
+    private boolean isRetryableCreate(Throwable throwable) {
+        if (isRetryableException(throwable)) {
+            return true;
+        }
+        return endpointPool.size() > 1 && (throwable instanceof CallNotPermittedException
+            || (throwable instanceof WebClientRequestException && throwable.getCause() instanceof ConnectException));
+    }
+    
+    /**
+     * Check whether a call was rejected locally because its circuit breaker is open or its bulkhead is full
+     */
+    public static boolean isRejectedLocally(Throwable throwable) {
+        return throwable instanceof CallNotPermittedException || throwable instanceof BulkheadFullException;
+    }
 }
@@ -0,0 +1,338 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.BudgetStatus;
+import com.example.soravideogenerator.model.JobRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Spending ledger that enforces global and per-principal budgets before jobs are created
+ * The estimated cost of a job is reserved before the request goes to Azure and settled when the
+ * job ends: charged if it succeeded, refunded if it failed, was cancelled or was never created.
+ * Budgets apply per fixed window (a UTC day by default). Reservations are lock-free on striped
+ * counters, so bursts of submissions do not serialize on a shared total.
+ */
+@Service
+public class SpendingLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(SpendingLedger.class);
+
+    public static final String ANONYMOUS = "anonymous";
+
+    private final boolean enabled;
+    private final Duration period;
+    private final long principalLimitMicros;
+    private final Duration reservationTimeout;
+    private final StripedBudget global;
+    private final int concurrency = Runtime.getRuntime().availableProcessors();
+
+    private final Map<String, StripedBudget> principals = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> pending = new ConcurrentHashMap<>();
+    private volatile Instant windowEnd;
+
+    private final Counter globalRejections;
+    private final Counter principalRejections;
+
+    @Autowired
+    public SpendingLedger(JobRegistry jobRegistry,
+                          @Value("${video.budget.enabled:true}") boolean enabled,
+                          @Value("${video.budget.period:24h}") Duration period,
+                          @Value("${video.budget.global-limit:0}") BigDecimal globalLimit,
+                          @Value("${video.budget.principal-limit:0}") BigDecimal principalLimit,
+                          @Value("${video.budget.reservation-timeout:6h}") Duration reservationTimeout,
+                          MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.period = period;
+        this.principalLimitMicros = toMicros(principalLimit);
+        this.reservationTimeout = reservationTimeout;
+        // A limit of zero means unlimited; usage is still tracked against Long.MAX_VALUE
+        long globalLimitMicros = toMicros(globalLimit);
+        this.global = new StripedBudget(globalLimitMicros > 0 ? globalLimitMicros : Long.MAX_VALUE / 2, concurrency);
+        this.windowEnd = windowEndAfter(Instant.now());
+
+        this.globalRejections = Counter.builder("video.budget.rejections").tag("scope", "global")
+            .description("Submissions rejected for exceeding a budget").register(meterRegistry);
+        this.principalRejections = Counter.builder("video.budget.rejections").tag("scope", "principal")
+            .description("Submissions rejected for exceeding a budget").register(meterRegistry);
+        Gauge.builder("video.budget.reserved", global, budget -> budget.reservedMicros() / 1e6)
+            .baseUnit("usd").description("Estimated cost of jobs still running").register(meterRegistry);
+        Gauge.builder("video.budget.spent", global, budget -> budget.spentMicros() / 1e6)
+            .baseUnit("usd").description("Estimated cost of jobs that succeeded in the current window").register(meterRegistry);
+        if (globalLimitMicros > 0) {
+            Gauge.builder("video.budget.remaining", global, budget -> budget.remainingMicros() / 1e6)
+                .baseUnit("usd").description("Global budget left in the current window").register(meterRegistry);
+        }
+
+        jobRegistry.onTerminal(this::settle);
+        if (enabled) {
+            restore(jobRegistry);
+        }
+    }
+
+    /**
+     * Reserve the estimated cost of a job against the principal's and the global budget
+     * @param principal The user or team submitting the job
+     * @param estimatedCost The estimated cost of the job
+     * @return The reservation, to be bound to the created job or released
+     * @throws BudgetExceededException if either budget does not have enough left
+     */
+    public Reservation reserve(String principal, BigDecimal estimatedCost) {
+        String owner = principalOrAnonymous(principal);
+        long amount = toMicros(estimatedCost);
+        if (!enabled) {
+            return new Reservation(owner, amount, null);
+        }
+        rollWindowIfDue();
+
+        StripedBudget principalBudget = principalBudget(owner);
+        while (principalBudget != null) {
+            if (!principalBudget.tryReserve(amount)) {
+                principalRejections.increment();
+                throw new BudgetExceededException(String.format(
+                    "Budget exceeded: this job is estimated at $%.2f but only $%.2f of your $%.2f budget is left until %s.",
+                    estimatedCost, Math.max(0, principalBudget.remainingMicros()) / 1e6,
+                    principalLimitMicros / 1e6, windowEnd));
+            }
+            StripedBudget current = principalBudget(owner);
+            if (current == principalBudget) {
+                break;
+            }
+            // The window rolled and dropped this idle budget while the amount was taken from it
+            principalBudget.refund(amount);
+            principalBudget = current;
+        }
+        if (!global.tryReserve(amount)) {
+            if (principalBudget != null) {
+                principalBudget.refund(amount);
+            }
+            globalRejections.increment();
+            throw new BudgetExceededException(String.format(
+                "Budget exceeded: the service spending limit is reached until %s. Please try again later.", windowEnd));
+        }
+        return new Reservation(owner, amount, principalBudget);
+    }
+
+    /**
+     * Hold a reservation until the job it paid for ends
+     * @param reservation The reservation made for the job
+     * @param jobId The job ID returned by Azure
+     */
+    public void bind(Reservation reservation, String jobId) {
+        if (enabled && !reservation.settled.get()) {
+            pending.put(jobId, reservation);
+        }
+    }
+
+    /**
+     * Return a reservation whose job was never created
+     * @param reservation The reservation to release
+     */
+    public void release(Reservation reservation) {
+        if (enabled && reservation.settled.compareAndSet(false, true)) {
+            refund(reservation);
+        }
+    }
+
+    /**
+     * Budget usage for a principal and for the whole service in the current window
+     * @param principal The user or team to report on
+     */
+    public BudgetStatus status(String principal) {
+        rollWindowIfDue();
+        String owner = principalOrAnonymous(principal);
+        BudgetStatus status = new BudgetStatus();
+        status.setEnabled(enabled);
+        status.setPrincipal(owner);
+        status.setWindowEnd(windowEnd);
+        status.setGlobal(usage(global, global.limitMicros() < Long.MAX_VALUE / 2));
+        if (principalLimitMicros > 0) {
+            // Looking a principal up must not add it, or every status request would grow the map
+            StripedBudget principalBudget = principals.get(owner);
+            status.setPrincipalUsage(usage(principalBudget != null ? principalBudget : new StripedBudget(principalLimitMicros, 1), true));
+        }
+        return status;
+    }
+
+    /**
+     * Principals the ledger currently keeps a budget for
+     */
+    int trackedPrincipals() {
+        return principals.size();
+    }
+
+    /**
+     * Start a new budget window when due, and charge reservations whose jobs were never seen to finish
+     * Stale reservations are charged rather than refunded so an untracked job cannot free budget.
+     */
+    @Scheduled(fixedDelayString = "${video.budget.sweep-interval:1m}")
+    public void sweep() {
+        rollWindowIfDue();
+        Instant cutoff = Instant.now().minus(reservationTimeout);
+        pending.forEach((jobId, reservation) -> {
+            if (reservation.createdAt.isBefore(cutoff) && pending.remove(jobId, reservation)
+                    && reservation.settled.compareAndSet(false, true)) {
+                logger.warn("Job {} did not report a final status within {}, charging its estimate", jobId, reservationTimeout);
+                commit(reservation);
+            }
+        });
+    }
+
+    /**
+     * Settle the reservation of a job that reached a terminal status
+     */
+    void settle(JobRecord record) {
+        Reservation reservation = pending.remove(record.getJobId());
+        if (reservation == null || !reservation.settled.compareAndSet(false, true)) {
+            return;
+        }
+        String status = record.getStatus();
+        if ("succeeded".equalsIgnoreCase(status) || "completed".equalsIgnoreCase(status)) {
+            commit(reservation);
+        } else {
+            logger.info("Refunding estimated ${} for job {} ({})", String.format("%.2f", reservation.amountMicros / 1e6),
+                        record.getJobId(), status);
+            refund(reservation);
+        }
+    }
+
+    private void commit(Reservation reservation) {
+        global.commit(reservation.amountMicros);
+        if (reservation.principalBudget != null) {
+            reservation.principalBudget.commit(reservation.amountMicros);
+        }
+    }
+
+    private void refund(Reservation reservation) {
+        global.refund(reservation.amountMicros);
+        if (reservation.principalBudget != null) {
+            reservation.principalBudget.refund(reservation.amountMicros);
+        }
+    }
+
+    /**
+     * Rebuild the current window from the job registry after a restart
+     */
+    private void restore(JobRegistry jobRegistry) {
+        Instant windowStart = windowEnd.minus(period);
+        int restored = 0;
+        for (JobRecord record : jobRegistry.activeJobs()) {
+            Reservation reservation = forceReserve(record);
+            pending.put(record.getJobId(), reservation);
+            restored++;
+        }
+        for (JobRecord record : jobRegistry.createdSince(windowStart.minus(reservationTimeout))) {
+            boolean succeeded = "succeeded".equalsIgnoreCase(record.getStatus()) || "completed".equalsIgnoreCase(record.getStatus());
+            if (succeeded && record.getUpdatedAt() != null && !record.getUpdatedAt().isBefore(windowStart)) {
+                Reservation reservation = forceReserve(record);
+                reservation.settled.set(true);
+                commit(reservation);
+                restored++;
+            }
+        }
+        if (restored > 0) {
+            logger.info("Restored {} jobs into the spending ledger: ${} reserved, ${} spent this window", restored,
+                        String.format("%.2f", global.reservedMicros() / 1e6), String.format("%.2f", global.spentMicros() / 1e6));
+        }
+    }
+
+    private Reservation forceReserve(JobRecord record) {
+        long amount = toMicros(record.getEstimatedCost());
+        StripedBudget principalBudget = principalBudget(principalOrAnonymous(record.getPrincipal()));
+        global.forceReserve(amount);
+        if (principalBudget != null) {
+            principalBudget.forceReserve(amount);
+        }
+        return new Reservation(principalOrAnonymous(record.getPrincipal()), amount, principalBudget);
+    }
+
+    private StripedBudget principalBudget(String principal) {
+        if (principalLimitMicros <= 0) {
+            return null;
+        }
+        // One principal rarely submits from many threads at once, so a single cell is enough
+        return principals.computeIfAbsent(principal, key -> new StripedBudget(principalLimitMicros, 1));
+    }
+
+    private void rollWindowIfDue() {
+        if (Instant.now().isBefore(windowEnd)) {
+            return;
+        }
+        synchronized (this) {
+            Instant now = Instant.now();
+            if (now.isBefore(windowEnd)) {
+                return;
+            }
+            global.resetWindow();
+            principals.values().forEach(StripedBudget::resetWindow);
+            // Principals with nothing reserved start over at the full limit anyway, so only open reservations keep an entry
+            principals.values().removeIf(StripedBudget::isIdle);
+            windowEnd = windowEndAfter(now);
+            logger.info("Started new budget window until {} ({} principals with open reservations)", windowEnd, principals.size());
+        }
+    }
+
+    /**
+     * End of the window containing the given time; windows are aligned to the epoch, so daily windows end at UTC midnight
+     */
+    private Instant windowEndAfter(Instant time) {
+        long periodMillis = period.toMillis();
+        long start = Math.floorDiv(time.toEpochMilli(), periodMillis) * periodMillis;
+        return Instant.ofEpochMilli(start + periodMillis);
+    }
+
+    private static BudgetStatus.Usage usage(StripedBudget budget, boolean limited) {
+        BudgetStatus.Usage usage = new BudgetStatus.Usage();
+        usage.setLimit(limited ? fromMicros(budget.limitMicros()) : null);
+        usage.setReserved(fromMicros(budget.reservedMicros()));
+        usage.setSpent(fromMicros(budget.spentMicros()));
+        usage.setRemaining(limited ? fromMicros(Math.max(0, budget.remainingMicros())) : null);
+        return usage;
+    }
+
+    static String principalOrAnonymous(String principal) {
+        return principal == null || principal.isBlank() ? ANONYMOUS : principal.trim();
+    }
+
+    private static long toMicros(BigDecimal amount) {
+        return amount == null ? 0 : amount.movePointRight(6).longValue();
+    }
+
+    private static BigDecimal fromMicros(long micros) {
+        return PricingTable.fromMicros(micros);
+    }
+
+    /**
+     * Estimated cost held against the budgets until the job it was made for ends
+     */
+    public static final class Reservation {
+        private final String principal;
+        private final long amountMicros;
+        private final StripedBudget principalBudget;
+        private final Instant createdAt = Instant.now();
+        private final AtomicBoolean settled = new AtomicBoolean();
+
+        private Reservation(String principal, long amountMicros, StripedBudget principalBudget) {
+            this.principal = principal;
+            this.amountMicros = amountMicros;
+            this.principalBudget = principalBudget;
+        }
+
+        public String getPrincipal() {
+            return principal;
+        }
+    }
+}
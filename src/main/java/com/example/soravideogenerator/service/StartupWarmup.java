@@ -0,0 +1,172 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.BatchEstimate;
+import com.example.soravideogenerator.model.BatchRequest;
+import com.example.soravideogenerator.model.BatchStatus;
+import com.example.soravideogenerator.model.BudgetStatus;
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.SoraApiRequest;
+import com.example.soravideogenerator.model.SoraApiResponse;
+import com.example.soravideogenerator.model.VideoMetadata;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResolution;
+import com.example.soravideogenerator.model.VideoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.env.Environment;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Warms the application up before it reports ready
+ * Spring Boot runs ApplicationRunners after the server has started but before readiness turns
+ * to ACCEPTING_TRAFFIC, so /actuator/health/readiness stays down while this opens pooled
+ * connections to Azure OpenAI, builds the JSON serializers, loads the price sheet and sends the
+ * pages and API calls users hit first to the server itself a number of times, which parses the
+ * templates and gives the JIT compiler the hot paths. Failures are logged and never block startup.
+ */
+@Component
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupWarmup.class);
+
+    // Models exchanged with Azure OpenAI, stored in the registry or returned by the API
+    private static final List<Class<?>> JSON_TYPES = List.of(SoraApiRequest.class, SoraApiResponse.class,
+        VideoResponse.class, VideoMetadata.class, JobRecord.class, BatchRequest.class, BatchStatus.class,
+        BatchEstimate.class, BudgetStatus.class);
+
+    private final SoraVideoService soraVideoService;
+    private final CostEstimationService costEstimationService;
+    private final ObjectMapper objectMapper;
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int connections;
+    private final int rounds;
+    private final Duration timeout;
+
+    @Autowired
+    public StartupWarmup(SoraVideoService soraVideoService, CostEstimationService costEstimationService,
+                         ObjectMapper objectMapper, Environment environment, MeterRegistry meterRegistry,
+                         @Value("${video.warmup.enabled:true}") boolean enabled,
+                         @Value("${video.warmup.connections:4}") int connections,
+                         @Value("${video.warmup.rounds:10}") int rounds,
+                         @Value("${video.warmup.timeout:30s}") Duration timeout) {
+        this.soraVideoService = soraVideoService;
+        this.costEstimationService = costEstimationService;
+        this.objectMapper = objectMapper;
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.connections = connections;
+        this.rounds = rounds;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+
+        Long opened = stage("connections", () -> connections > 0
+            ? soraVideoService.openConnections(connections).block(remaining(deadline)) : 0L);
+        stage("codecs", this::warmCodecs);
+        stage("pricing", this::warmPricing);
+        Long served = stage("requests", () -> warmRequests(deadline));
+
+        logger.info("Warm-up finished in {} ms: {} connections to Azure OpenAI, {} requests served",
+                    Duration.ofNanos(System.nanoTime() - start).toMillis(),
+                    opened != null ? opened : 0, served != null ? served : 0);
+    }
+
+    /**
+     * Run one warm-up stage, recording its duration; a failed stage is skipped
+     */
+    private <T> T stage(String name, Callable<T> work) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return work.call();
+        } catch (Exception e) {
+            logger.warn("Warm-up stage {} failed: {}", name, e.getMessage());
+            return null;
+        } finally {
+            sample.stop(Timer.builder("application.warmup").tag("stage", name)
+                .description("Time spent warming up before reporting ready").register(meterRegistry));
+        }
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofNanos(Math.max(0, deadline - System.nanoTime()));
+    }
+
+    /**
+     * Build the Jackson serializers and deserializers shared by the server and Azure OpenAI codecs
+     */
+    private Integer warmCodecs() throws Exception {
+        for (Class<?> type : JSON_TYPES) {
+            objectMapper.readValue(objectMapper.writeValueAsBytes(objectMapper.readValue("{}", type)), type);
+        }
+        return JSON_TYPES.size();
+    }
+
+    private BigDecimal warmPricing() {
+        List<VideoRequest> requests = new ArrayList<>();
+        for (VideoResolution resolution : VideoResolution.values()) {
+            for (int duration : new int[] {5, 10}) {
+                BigDecimal cost = costEstimationService.calculateEstimatedCost(resolution.getLabel(), duration);
+                costEstimationService.getCostBreakdown(resolution.getLabel(), duration);
+                costEstimationService.getCostWarning(cost);
+                requests.add(new VideoRequest("warm-up", resolution.getLabel(), duration));
+            }
+        }
+        return costEstimationService.estimateBatch(requests).getEstimatedTotal();
+    }
+
+    /**
+     * Send the pages and read-only API calls a user hits first to this server, which renders the
+     * form and status templates and runs the request path through the JIT. Only calls answered
+     * locally are sent; job status lookups would poll Azure OpenAI, so they are left out.
+     * @return Number of responses received
+     */
+    private Long warmRequests(long deadline) {
+        String port = environment.getProperty("local.server.port");
+        if (port == null || rounds <= 0) {
+            return 0L;
+        }
+        WebClient client = WebClient.create("http://localhost:" + port);
+        String estimate = "{\"requests\":[{\"prompt\":\"warm-up\",\"resolution\":\"1280x720\",\"duration\":5}]}";
+        List<WebClient.RequestHeadersSpec<?>> requests = List.of(
+            client.get().uri("/").accept(MediaType.TEXT_HTML),
+            client.get().uri("/status/{jobId}", "warm-up").accept(MediaType.TEXT_HTML),
+            // Fails validation, so the form is shown again with errors and no job is created
+            client.post().uri("/generate").accept(MediaType.TEXT_HTML)
+                .contentType(MediaType.APPLICATION_FORM_URLENCODED).bodyValue("prompt=&duration=5"),
+            client.get().uri("/api/budget").accept(MediaType.APPLICATION_JSON),
+            client.post().uri("/api/batches/estimate").accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(estimate));
+
+        return Flux.range(0, rounds)
+            .concatMap(round -> Flux.fromIterable(requests)
+                .flatMap(request -> request.exchangeToMono(response -> response.releaseBody().thenReturn(round))))
+            .count()
+            .block(remaining(deadline));
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.soravideogenerator.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spending limit for one window, split across padded cells so concurrent reservations rarely touch the same counter
+ * Each thread reserves from its own cell with a CAS, moving on to other cells when its cell runs
+ * low. Only a reservation larger than any single cell falls back to a locked path that pools the
+ * cells. Every operation is an atomic add or take on a cell, so no amount is ever lost or counted
+ * twice: the cells always add up to the limit minus what is reserved or spent in the current window.
+ */
+final class StripedBudget {
+
+    // Longs per cache line, so neighbouring cells never share one
+    private static final int PADDING = 8;
+
+    // Cell each thread starts from, drawn at random on first use like the probe LongAdder spreads threads with
+    private static final ThreadLocal<Integer> STRIPE = ThreadLocal.withInitial(() -> ThreadLocalRandom.current().nextInt());
+
+    private final long limitMicros;
+    private final int mask;
+    private final AtomicLongArray cells;
+    private final LongAdder reservedMicros = new LongAdder();
+    private final AtomicLong windowSpentMicros = new AtomicLong();
+
+    StripedBudget(long limitMicros, int concurrency) {
+        int stripes = Integer.highestOneBit(Math.max(1, concurrency));
+        if (stripes < concurrency) {
+            stripes <<= 1;
+        }
+        this.limitMicros = limitMicros;
+        this.mask = stripes - 1;
+        this.cells = new AtomicLongArray(stripes * PADDING);
+        spread(limitMicros);
+    }
+
+    long limitMicros() {
+        return limitMicros;
+    }
+
+    long reservedMicros() {
+        return reservedMicros.sum();
+    }
+
+    long spentMicros() {
+        return windowSpentMicros.get();
+    }
+
+    /**
+     * True if nothing is reserved or spent in the current window
+     */
+    boolean isIdle() {
+        return reservedMicros.sum() == 0 && windowSpentMicros.get() == 0;
+    }
+
+    long remainingMicros() {
+        long total = 0;
+        for (int i = 0; i <= mask; i++) {
+            total += cells.get(i * PADDING);
+        }
+        return total;
+    }
+
+    /**
+     * Take an amount out of the budget if enough is left
+     * @return true if the amount was reserved
+     */
+    boolean tryReserve(long amount) {
+        int start = STRIPE.get();
+        for (int i = 0; i <= mask; i++) {
+            if (tryTake(((start + i) & mask) * PADDING, amount)) {
+                reservedMicros.add(amount);
+                return true;
+            }
+        }
+        return mask > 0 && reservePooled(amount);
+    }
+
+    /**
+     * Take an amount out of the budget even if that overdraws it, for jobs already running upstream
+     */
+    void forceReserve(long amount) {
+        cells.addAndGet(0, -amount);
+        reservedMicros.add(amount);
+    }
+
+    /**
+     * Return a reservation that was not spent
+     */
+    void refund(long amount) {
+        cells.addAndGet(cellIndex(), amount);
+        reservedMicros.add(-amount);
+    }
+
+    /**
+     * Turn a reservation into spending for the current window
+     */
+    void commit(long amount) {
+        reservedMicros.add(-amount);
+        windowSpentMicros.addAndGet(amount);
+    }
+
+    /**
+     * Start a new window: what was spent becomes available again, open reservations stay held
+     */
+    void resetWindow() {
+        spread(windowSpentMicros.getAndSet(0));
+    }
+
+    private boolean tryTake(int index, long amount) {
+        while (true) {
+            long available = cells.get(index);
+            if (available < amount) {
+                return false;
+            }
+            if (cells.compareAndSet(index, available, available - amount)) {
+                return true;
+            }
+        }
+    }
+
+    private synchronized boolean reservePooled(long amount) {
+        // Concurrent takes and refunds keep working on the cells while they are pooled here
+        long pooled = 0;
+        for (int i = 0; i <= mask; i++) {
+            pooled += cells.getAndSet(i * PADDING, 0);
+        }
+        boolean reserved = pooled >= amount;
+        if (reserved) {
+            pooled -= amount;
+            reservedMicros.add(amount);
+        }
+        spread(pooled);
+        return reserved;
+    }
+
+    private void spread(long amount) {
+        int stripes = mask + 1;
+        long share = amount / stripes;
+        for (int i = 0; i <= mask; i++) {
+            cells.addAndGet(i * PADDING, i == 0 ? amount - share * (stripes - 1) : share);
+        }
+    }
+
+    private int cellIndex() {
+        return (STRIPE.get() & mask) * PADDING;
+    }
+}
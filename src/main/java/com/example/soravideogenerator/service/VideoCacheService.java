@@ -0,0 +1,631 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoMetadata;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Local disk cache for downloaded video content, keyed by generation ID
+ * Content is written to disk while it streams to the first client, and later hits are served
+ * straight from the cached file. Entries are evicted least-recently-used once the configured
+ * total size is exceeded, and when the generation's expiry time has passed.
+ * Committed videos whose moov box follows the media data are rewritten with moov first
+ * ("faststart"), so players can start before the whole file has arrived.
+ */
+@Service
+public class VideoCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoCacheService.class);
+
+    private static final String VIDEO_SUFFIX = ".mp4";
+    private static final String FASTSTART_SUFFIX = ".faststart.mp4";
+    private static final String PARTIAL_SUFFIX = ".part";
+    // Copies of streamed buffers that may wait for the disk before caching that stream is given up
+    private static final long MAX_PENDING_WRITE_BYTES = 16 * 1024 * 1024;
+
+    private final boolean enabled;
+    private final Path directory;
+    private final long maxSizeBytes;
+    private final Duration maxAge;
+    private final boolean faststart;
+
+    // Access-ordered map gives LRU iteration order; guarded by its own monitor
+    private final LinkedHashMap<String, CachedVideo> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final AtomicLong totalBytes = new AtomicLong();
+    // Downloads started by fill, shared by concurrent requests for the same video
+    private final ConcurrentHashMap<String, Mono<CachedVideo>> filling = new ConcurrentHashMap<>();
+    // Generations among those being filled whose copy may be rewritten for faststart
+    private final Set<String> rewriting = ConcurrentHashMap.newKeySet();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiryEvictions;
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public VideoCacheService(@Value("${video.cache.enabled:true}") boolean enabled,
+                             @Value("${video.cache.directory:${java.io.tmpdir}/sora-video-cache}") String directory,
+                             @Value("${video.cache.max-size:2GB}") DataSize maxSize,
+                             @Value("${video.cache.max-age:24h}") Duration maxAge,
+                             @Value("${video.cache.faststart:true}") boolean faststart,
+                             MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.maxSizeBytes = maxSize.toBytes();
+        this.maxAge = maxAge;
+        this.faststart = faststart;
+        this.meterRegistry = meterRegistry;
+
+        this.hits = Counter.builder("video.cache.requests").tag("result", "hit")
+            .description("Video cache lookups").register(meterRegistry);
+        this.misses = Counter.builder("video.cache.requests").tag("result", "miss")
+            .description("Video cache lookups").register(meterRegistry);
+        this.sizeEvictions = Counter.builder("video.cache.evictions").tag("reason", "size")
+            .description("Videos removed from the cache").register(meterRegistry);
+        this.expiryEvictions = Counter.builder("video.cache.evictions").tag("reason", "expired")
+            .description("Videos removed from the cache").register(meterRegistry);
+        Gauge.builder("video.cache.size", totalBytes, AtomicLong::get).baseUnit("bytes")
+            .description("Total size of cached videos").register(meterRegistry);
+        Gauge.builder("video.cache.entries", this, VideoCacheService::entryCount)
+            .description("Number of cached videos").register(meterRegistry);
+
+        if (enabled) {
+            initializeDirectory();
+        }
+    }
+
+    /**
+     * Look up a cached video and mark it as recently used
+     * @param generationId The generation ID of the video
+     * @return The cached video, or empty if it is not cached or has expired
+     */
+    public Optional<CachedVideo> lookup(String generationId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        CachedVideo video;
+        synchronized (entries) {
+            video = entries.get(generationId);
+            if (video != null && video.isExpired(Instant.now())) {
+                entries.remove(generationId);
+                totalBytes.addAndGet(-video.getSize());
+                expiryEvictions.increment();
+                deleteQuietly(video.getPath());
+                video = null;
+            }
+        }
+
+        if (video == null || !Files.exists(video.getPath())) {
+            misses.increment();
+            return Optional.empty();
+        }
+        hits.increment();
+        return Optional.of(video);
+    }
+
+    /**
+     * Container metadata of a cached video, without counting a cache lookup
+     * @param generationId The generation ID of the video
+     * @return The metadata, or empty if the video is not cached or is not a readable MP4
+     */
+    public Optional<VideoMetadata> metadata(String generationId) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        synchronized (entries) {
+            CachedVideo video = entries.get(generationId);
+            return video != null ? Optional.ofNullable(video.getMetadata()) : Optional.empty();
+        }
+    }
+
+    /**
+     * Write video content to the cache as it passes through to the client
+     * Each buffer goes downstream right away, and a copy is written to a temporary file on the side,
+     * so a slow or failing disk never holds up or fails the client's download: if a write fails, or
+     * the disk falls too far behind, the file is dropped and the content
+     * keeps streaming. The file is committed to the cache only when the stream completes, or when it
+     * is cancelled after every announced byte was relayed (a client that has the whole body may
+     * disconnect before the upstream signals its end), and once every write has finished. Other
+     * cancelled or failed streams leave no entry. Committing reads and may rewrite the whole file,
+     * so it runs on the bounded elastic scheduler.
+     * @param generationId The generation ID of the video
+     * @param expiresAt Upstream expiry time as epoch seconds or ISO-8601, may be null
+     * @param contentLength Length announced by the upstream, or -1 if unknown
+     * @param content The upstream video content
+     * @return The same content, with a copy of each buffer written to disk as it passes
+     */
+    public Flux<DataBuffer> cacheWhileStreaming(String generationId, String expiresAt, long contentLength,
+                                                Flux<DataBuffer> content) {
+        if (!enabled) {
+            return content;
+        }
+
+        return Flux.defer(() -> {
+            Path partial = directory.resolve(generationId + "-" + UUID.randomUUID() + PARTIAL_SUFFIX);
+            AsynchronousFileChannel channel;
+            try {
+                channel = openPartial(partial);
+            } catch (IOException e) {
+                logger.warn("Could not open cache file for generation {}: {}", generationId, e.getMessage());
+                return content;
+            }
+
+            TeeFile file = new TeeFile(generationId, partial, channel);
+            return content
+                .doOnNext(file::write)
+                .doFinally(signal -> {
+                    boolean whole = signal == SignalType.ON_COMPLETE
+                        || (signal == SignalType.CANCEL && contentLength > 0 && file.offered() == contentLength);
+                    file.finish(whole ? size -> commit(generationId, partial, size, parseExpiry(expiresAt), true) : null);
+                });
+        });
+    }
+
+    /**
+     * Open the temporary file a streamed video is written to
+     */
+    AsynchronousFileChannel openPartial(Path partial) throws IOException {
+        return AsynchronousFileChannel.open(partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Download a video completely into the cache before it is served
+     * Once a video may be rewritten for faststart, every range must come from the same copy.
+     * Concurrent fills of one video share a single download, which runs to the end even if the
+     * requests that started it go away.
+     * @param generationId The generation ID of the video
+     * @param expiresAt Upstream expiry time as epoch seconds or ISO-8601, may be null
+     * @param content The upstream video content, subscribed to only if no fill is in progress
+     * @return The cached video, or empty if the cache is disabled or the file could not be stored
+     */
+    public Mono<CachedVideo> fill(String generationId, String expiresAt, Flux<DataBuffer> content) {
+        return fill(generationId, expiresAt, content, true);
+    }
+
+    /**
+     * Download a video completely into the cache, optionally keeping the upstream layout
+     * @param rewrite Whether the video may be rewritten for faststart playback; a fill that joins
+     *                one already in progress gets that fill's copy
+     * @see #fill(String, String, Flux)
+     */
+    public Mono<CachedVideo> fill(String generationId, String expiresAt, Flux<DataBuffer> content, boolean rewrite) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+
+        return Mono.defer(() -> {
+            CachedVideo existing;
+            synchronized (entries) {
+                existing = entries.get(generationId);
+            }
+            if (existing != null && !existing.isExpired(Instant.now()) && Files.exists(existing.getPath())) {
+                return Mono.just(existing);
+            }
+            return filling.computeIfAbsent(generationId, id -> Mono.defer(() -> {
+                    if (rewrite && faststart) {
+                        rewriting.add(id);
+                    }
+                    Path partial = directory.resolve(id + "-" + UUID.randomUUID() + PARTIAL_SUFFIX);
+                    return DataBufferUtils.write(content, partial, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)
+                        .publishOn(Schedulers.boundedElastic())
+                        .then(Mono.fromCallable(() -> Optional.ofNullable(
+                            commit(id, partial, Files.size(partial), parseExpiry(expiresAt), rewrite))))
+                        .flatMap(Mono::justOrEmpty)
+                        .doOnError(error -> deleteQuietly(partial));
+                })
+                .doFinally(signal -> {
+                    rewriting.remove(id);
+                    filling.remove(id);
+                })
+                .cache());
+        });
+    }
+
+    /**
+     * Whether a video is being downloaded into the cache by a fill that may rewrite it for faststart playback
+     * @param generationId The generation ID of the video
+     */
+    public boolean isRewriting(String generationId) {
+        return rewriting.contains(generationId);
+    }
+
+    /**
+     * Periodically remove expired entries so they do not hold disk space until the next lookup
+     */
+    @Scheduled(fixedDelayString = "${video.cache.sweep-interval:10m}")
+    public void evictExpired() {
+        if (!enabled) {
+            return;
+        }
+
+        Instant now = Instant.now();
+        List<CachedVideo> removed = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<CachedVideo> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CachedVideo video = iterator.next();
+                if (video.isExpired(now)) {
+                    iterator.remove();
+                    totalBytes.addAndGet(-video.getSize());
+                    removed.add(video);
+                }
+            }
+        }
+        removed.forEach(video -> {
+            expiryEvictions.increment();
+            deleteQuietly(video.getPath());
+        });
+        if (!removed.isEmpty()) {
+            logger.info("Evicted {} expired videos from cache", removed.size());
+        }
+    }
+
+    /**
+     * Move a completely written file into the cache, rewriting it for faststart playback if needed
+     * @return The new entry, or null if the file could not be moved
+     */
+    private CachedVideo commit(String generationId, Path partial, long size, Instant expiresAt, boolean rewrite) {
+        Path content = partial;
+        boolean remuxed = false;
+        VideoMetadata metadata = null;
+        if (faststart && rewrite) {
+            Path rewritten = partial.resolveSibling(partial.getFileName() + FASTSTART_SUFFIX + PARTIAL_SUFFIX);
+            try {
+                Mp4File mp4 = Mp4File.read(partial);
+                if (mp4.writeFaststart(rewritten)) {
+                    deleteQuietly(partial);
+                    content = rewritten;
+                    remuxed = true;
+                    mp4 = Mp4File.read(rewritten);
+                }
+                metadata = mp4.metadata();
+                countFaststart(remuxed ? "remuxed" : mp4.isFaststart() ? "already-faststart" : "skipped");
+            } catch (IOException | RuntimeException e) {
+                // Not an MP4 this parser understands: keep and serve the file exactly as downloaded
+                logger.warn("Could not prepare cached video for generation {} for streaming: {}", generationId, e.getMessage());
+                countFaststart("failed");
+                deleteQuietly(rewritten);
+            }
+        } else {
+            metadata = readMetadata(partial);
+        }
+
+        Path target = directory.resolve(generationId + (remuxed ? FASTSTART_SUFFIX : VIDEO_SUFFIX));
+        try {
+            Files.move(content, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not commit cached video for generation {}: {}", generationId, e.getMessage());
+            deleteQuietly(content);
+            return null;
+        }
+
+        Instant effectiveExpiry = expiresAt != null ? expiresAt : Instant.now().plus(maxAge);
+        CachedVideo video = new CachedVideo(generationId, target, size, effectiveExpiry, metadata, remuxed);
+        CachedVideo previous;
+        synchronized (entries) {
+            previous = entries.put(generationId, video);
+            if (previous != null) {
+                totalBytes.addAndGet(-previous.getSize());
+            }
+            totalBytes.addAndGet(size);
+        }
+        if (previous != null && !previous.getPath().equals(target)) {
+            deleteQuietly(previous.getPath());
+        }
+        logger.info("Cached video for generation {} ({} bytes{})", generationId, size, remuxed ? ", moov moved to front" : "");
+        evictToSize();
+        return video;
+    }
+
+    private void countFaststart(String result) {
+        Counter.builder("video.cache.faststart").tag("result", result)
+            .description("Cached videos checked for faststart playback").register(meterRegistry).increment();
+    }
+
+    private static VideoMetadata readMetadata(Path file) {
+        try {
+            return Mp4File.read(file).metadata();
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read MP4 metadata from {}: {}", file, e.getMessage());
+            return null;
+        }
+    }
+
+    private void evictToSize() {
+        List<CachedVideo> removed = new ArrayList<>();
+        synchronized (entries) {
+            Iterator<CachedVideo> iterator = entries.values().iterator();
+            while (totalBytes.get() > maxSizeBytes && iterator.hasNext()) {
+                CachedVideo video = iterator.next();
+                iterator.remove();
+                totalBytes.addAndGet(-video.getSize());
+                removed.add(video);
+            }
+        }
+        removed.forEach(video -> {
+            sizeEvictions.increment();
+            deleteQuietly(video.getPath());
+            logger.info("Evicted video for generation {} from cache", video.getGenerationId());
+        });
+    }
+
+    /**
+     * Recreate the index from files left by a previous run; partial downloads are discarded
+     */
+    private void initializeDirectory() {
+        try {
+            Files.createDirectories(directory);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (name.endsWith(PARTIAL_SUFFIX)) {
+                        deleteQuietly(file);
+                    } else if (name.endsWith(VIDEO_SUFFIX)) {
+                        boolean remuxed = name.endsWith(FASTSTART_SUFFIX);
+                        String generationId = name.substring(0, name.length()
+                            - (remuxed ? FASTSTART_SUFFIX : VIDEO_SUFFIX).length());
+                        Instant expiresAt = Files.getLastModifiedTime(file).toInstant().plus(maxAge);
+                        long size = Files.size(file);
+                        CachedVideo video = new CachedVideo(generationId, file, size, expiresAt, readMetadata(file), remuxed);
+                        CachedVideo previous;
+                        synchronized (entries) {
+                            previous = entries.put(generationId, video);
+                        }
+                        if (previous != null) {
+                            // Both layouts of one video left behind: keep the last one listed
+                            totalBytes.addAndGet(-previous.getSize());
+                            deleteQuietly(previous.getPath());
+                        }
+                        totalBytes.addAndGet(size);
+                    }
+                }
+            }
+            logger.info("Video cache at {} holds {} videos ({} bytes)", directory, entryCount(), totalBytes.get());
+            evictToSize();
+        } catch (IOException e) {
+            logger.error("Could not initialize video cache directory {}: {}", directory, e.getMessage());
+        }
+    }
+
+    private int entryCount() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Parse an upstream expiry time given as epoch seconds or ISO-8601
+     * @return The expiry time, or null if it is missing or not understood
+     */
+    public static Instant parseExpiry(String expiresAt) {
+        if (expiresAt == null || expiresAt.isBlank()) {
+            return null;
+        }
+        try {
+            return Instant.ofEpochSecond(Long.parseLong(expiresAt.trim()));
+        } catch (NumberFormatException e) {
+            try {
+                return Instant.parse(expiresAt.trim());
+            } catch (DateTimeParseException ex) {
+                return null;
+            }
+        }
+    }
+
+    private static void closeQuietly(AsynchronousFileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.debug("Error closing cache file: {}", e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            logger.warn("Could not delete cache file {}: {}", path, e.getMessage());
+        }
+    }
+
+    /**
+     * Temporary file receiving copies of the buffers relayed to a client
+     * Writes run concurrently at their offsets in the file. One pending count covers the writes in
+     * flight plus the stream itself, so whichever of the last write and the end of the stream comes
+     * second closes the file and commits or deletes it.
+     */
+    private static final class TeeFile {
+        private final String generationId;
+        private final Path partial;
+        private final AsynchronousFileChannel channel;
+        private final AtomicLong offered = new AtomicLong();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicInteger pending = new AtomicInteger(1);
+        private final AtomicBoolean failed = new AtomicBoolean();
+        private volatile LongConsumer commit;
+
+        private TeeFile(String generationId, Path partial, AsynchronousFileChannel channel) {
+            this.generationId = generationId;
+            this.partial = partial;
+            this.channel = channel;
+        }
+
+        /**
+         * Bytes handed to the file so far
+         */
+        long offered() {
+            return offered.get();
+        }
+
+        void write(DataBuffer buffer) {
+            if (failed.get()) {
+                return;
+            }
+            int length = buffer.readableByteCount();
+            if (pendingBytes.addAndGet(length) > MAX_PENDING_WRITE_BYTES) {
+                pendingBytes.addAndGet(-length);
+                fail("the disk is falling behind the download");
+                return;
+            }
+            // The client's buffer is released once it has been sent, so the file gets its own copy
+            ByteBuffer copy = ByteBuffer.allocate(length);
+            buffer.toByteBuffer(buffer.readPosition(), copy, 0, length);
+            pending.incrementAndGet();
+            writeAt(copy, offered.getAndAdd(length), length);
+        }
+
+        private void writeAt(ByteBuffer data, long position, int length) {
+            try {
+                channel.write(data, position, null, new CompletionHandler<Integer, Void>() {
+                    @Override
+                    public void completed(Integer count, Void attachment) {
+                        if (data.hasRemaining() && !failed.get()) {
+                            writeAt(data, position + count, length);
+                        } else {
+                            written(length);
+                        }
+                    }
+
+                    @Override
+                    public void failed(Throwable error, Void attachment) {
+                        fail(error.toString());
+                        written(length);
+                    }
+                });
+            } catch (RuntimeException e) {
+                fail(e.toString());
+                written(length);
+            }
+        }
+
+        private void written(int length) {
+            pendingBytes.addAndGet(-length);
+            release();
+        }
+
+        /**
+         * Called once the stream has ended
+         * @param commit Stores the file once every write has finished, given its size; null to drop it
+         */
+        void finish(LongConsumer commit) {
+            this.commit = commit;
+            release();
+        }
+
+        private void fail(String reason) {
+            if (failed.compareAndSet(false, true)) {
+                logger.warn("Stopped caching generation {} while it streams to the client: {}", generationId, reason);
+            }
+        }
+
+        private void release() {
+            if (pending.decrementAndGet() != 0) {
+                return;
+            }
+            closeQuietly(channel);
+            LongConsumer store = commit;
+            if (store != null && !failed.get()) {
+                Schedulers.boundedElastic().schedule(() -> store.accept(offered.get()));
+            } else {
+                deleteQuietly(partial);
+            }
+        }
+    }
+
+    /**
+     * A video held in the local cache
+     */
+    public static class CachedVideo {
+        private final String generationId;
+        private final Path path;
+        private final long size;
+        private final Instant expiresAt;
+        private final VideoMetadata metadata;
+        private final boolean remuxed;
+
+        public CachedVideo(String generationId, Path path, long size, Instant expiresAt,
+                           VideoMetadata metadata, boolean remuxed) {
+            this.generationId = generationId;
+            this.path = path;
+            this.size = size;
+            this.expiresAt = expiresAt;
+            this.metadata = metadata;
+            this.remuxed = remuxed;
+        }
+
+        public String getGenerationId() {
+            return generationId;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public Instant getExpiresAt() {
+            return expiresAt;
+        }
+
+        /**
+         * Container metadata, or null if the file could not be parsed as an MP4
+         */
+        public VideoMetadata getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * Whether the file was rewritten with moov first, so its bytes differ from the upstream copy
+         */
+        public boolean isRemuxed() {
+            return remuxed;
+        }
+
+        boolean isExpired(Instant now) {
+            return expiresAt != null && now.isAfter(expiresAt);
+        }
+    }
+}
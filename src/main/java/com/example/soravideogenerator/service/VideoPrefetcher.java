@@ -0,0 +1,104 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobRecord;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Downloads the generated videos of a job into the local cache as soon as the job succeeds
+ * The status page plays the first variant as soon as the job is done, so that one is fetched by
+ * default; more variants can be prefetched for users who compare them side by side, at the cost
+ * of downloading videos nobody may open. The variants are fetched in parallel, up to a configured
+ * concurrency, through the same cache fill that range requests use, so a user asking for a video
+ * while it is being prefetched joins that download.
+ */
+@Service
+public class VideoPrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(VideoPrefetcher.class);
+
+    private final SoraVideoService soraVideoService;
+    private final VideoCacheService videoCacheService;
+    private final boolean enabled;
+    private final int variants;
+    private final int concurrency;
+    private final Timer duration;
+    private final Counter failures;
+
+    @Autowired
+    public VideoPrefetcher(SoraVideoService soraVideoService, VideoCacheService videoCacheService,
+                           JobRegistry jobRegistry,
+                           @Value("${video.cache.prefetch:true}") boolean enabled,
+                           @Value("${video.cache.prefetch-variants:1}") int variants,
+                           @Value("${video.cache.prefetch-concurrency:4}") int concurrency,
+                           MeterRegistry meterRegistry) {
+        this.soraVideoService = soraVideoService;
+        this.videoCacheService = videoCacheService;
+        this.enabled = enabled && variants > 0;
+        this.variants = variants;
+        this.concurrency = Math.max(1, concurrency);
+        this.duration = Timer.builder("video.cache.prefetch")
+            .description("Time to download the prefetched videos of a finished job into the cache").register(meterRegistry);
+        this.failures = Counter.builder("video.cache.prefetch.failures")
+            .description("Videos that could not be prefetched").register(meterRegistry);
+
+        jobRegistry.onTerminal(this::onTerminal);
+    }
+
+    private void onTerminal(JobRecord record) {
+        if (!enabled || !("completed".equals(record.getStatus()) || "succeeded".equals(record.getStatus()))) {
+            return;
+        }
+        List<String> allGenerationIds = record.getGenerationIds() != null && !record.getGenerationIds().isEmpty()
+            ? record.getGenerationIds()
+            : record.getGenerationId() != null ? List.of(record.getGenerationId()) : List.of();
+        if (allGenerationIds.isEmpty()) {
+            return;
+        }
+        List<String> generationIds = allGenerationIds.subList(0, Math.min(variants, allGenerationIds.size()));
+
+        long start = System.nanoTime();
+        prefetch(record.getJobId(), generationIds, record.getExpiresAt())
+            .subscribe(cached -> {
+                Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+                duration.record(elapsed);
+                logger.info("Prefetched {} of {} videos for job {} in {} ms ({} variants)", cached, generationIds.size(),
+                            record.getJobId(), elapsed.toMillis(), allGenerationIds.size());
+            });
+    }
+
+    /**
+     * Download the given generations of a job into the cache
+     * @param jobId The job the generations belong to, used to pick its endpoint
+     * @param generationIds The generations to download
+     * @param expiresAt Upstream expiry time as epoch seconds or ISO-8601, may be null
+     * @return Number of videos now in the cache; failures are logged and not counted
+     */
+    Mono<Long> prefetch(String jobId, List<String> generationIds, String expiresAt) {
+        return Flux.fromIterable(generationIds)
+            .flatMap(generationId -> {
+                Flux<DataBuffer> content = soraVideoService.downloadVideoContent(jobId, generationId, null,
+                    ResponseEntity::getBody);
+                return videoCacheService.fill(generationId, expiresAt, content)
+                    .onErrorResume(error -> {
+                        failures.increment();
+                        logger.warn("Could not prefetch generation {} of job {}: {}", generationId, jobId, error.getMessage());
+                        return Mono.empty();
+                    });
+            }, concurrency)
+            .count();
+    }
+}
@@ -0,0 +1,139 @@
+// Duration restriction handler
+function updateDurationRestrictions() {
+    const resolutionSelect = document.getElementById('resolution');
+    const durationInput = document.getElementById('duration');
+    const durationWarning = document.getElementById('durationWarning');
+    const durationHelp = document.getElementById('durationHelp');
+    
+    const selectedResolution = resolutionSelect.value;
+      if (selectedResolution === '1920x1080') {
+        // 1920x1080 has maximum 10 seconds
+        durationInput.max = '10';
+        durationWarning.style.display = 'block';
+        durationHelp.innerHTML = '<i class="fas fa-info-circle me-1"></i>Choose between 1-10 seconds (1920x1080 limitation)';
+        
+        // If current duration exceeds 10, reset to 10
+        if (parseInt(durationInput.value) > 10) {
+            durationInput.value = '10';
+        }
+    } else {
+        // All other resolutions support up to 20 seconds
+        durationInput.max = '20';
+        durationWarning.style.display = 'none';
+        durationHelp.innerHTML = '<i class="fas fa-info-circle me-1"></i>Choose between 1-20 seconds';
+    }
+    
+    // Update cost estimation after restriction changes
+    updateCostEstimation();
+}        // Cost estimation handler
+function updateCostEstimation() {
+    const resolutionSelect = document.getElementById('resolution');
+    const durationInput = document.getElementById('duration');
+    
+    const resolution = resolutionSelect.value || '1080x1080';
+    const duration = parseInt(durationInput.value) || 5;
+    const variants = parseInt(document.getElementById('variants').value) || 1;
+    
+    // Calculate estimated cost; every variant is billed as a video of its own
+    const cost = calculateEstimatedCost(resolution, duration, variants);
+    const costPerSecond = cost.generation / duration / variants;
+    
+    // Update display
+    document.getElementById('costDisplay').textContent = `~$${cost.total.toFixed(2)}`;
+    document.getElementById('promptCost').textContent = `• Resolution: ${resolution}`;
+    document.getElementById('generationCost').textContent = variants > 1
+        ? `• Duration: ${duration} seconds × ${variants} variants` : `• Duration: ${duration} seconds`;
+    document.getElementById('storageCost').textContent = `• Rate: $${costPerSecond.toFixed(3)} per second`;
+    document.getElementById('totalCost').textContent = `Total: $${cost.total.toFixed(2)}`;
+      // Update cost warning with new thresholds
+    const warningArea = document.getElementById('costWarningArea');
+    const warningText = document.getElementById('costWarningText');
+    
+    if (cost.total > 25) {
+        warningText.textContent = '🔥 EXPENSIVE ALERT: This video generation will cost over $25! Azure OpenAI Sora pricing escalates quickly for longer or higher-resolution videos. Consider shorter duration or lower resolution to significantly reduce costs.';
+        warningArea.style.display = 'block';
+    } else if (cost.total > 15) {
+        warningText.textContent = '⚠️ High cost alert: This video generation will cost over $15. For reference, a 10-second 1080p video costs $13-$18.50. Consider optimizing your specifications.';
+        warningArea.style.display = 'block';
+    } else if (cost.total > 8) {
+        warningText.textContent = '💡 Cost notice: This generation will cost over $8. Higher resolutions like 1080p can be expensive at $1.30-$1.85 per second.';
+        warningArea.style.display = 'block';
+    } else {
+        warningArea.style.display = 'none';
+    }
+    
+    // Update info text
+    const infoText = document.querySelector('#costDisplay').nextElementSibling;
+    infoText.innerHTML = `<i class="fas fa-info-circle me-1"></i>Based on current selection (${resolution}, ${duration} seconds${variants > 1 ? `, ${variants} variants` : ''})`;
+}// Calculate estimated cost based on resolution and duration
+function calculateEstimatedCost(resolution, duration, variants = 1) {
+    // Per-second pricing based on Azure OpenAI Sora pricing (June 2025)
+    const costPerSecond = {
+        '480x480': 0.15,      // 480 Square
+        '480x854': 0.20,      // 480p Portrait
+        '854x480': 0.20,      // 480p Landscape
+        '720x720': 0.30,      // 720 Square
+        '720x1280': 0.475,    // 720p Portrait (average of 0.45-0.50)
+        '1280x720': 0.475,    // 720p Landscape (average of 0.45-0.50)
+        '1080x1080': 0.675,   // 1080 Square (average of 0.60-0.75)
+        '1080x1920': 1.575,   // 1080p Portrait (average of 1.30-1.85)
+        '1920x1080': 1.575    // 1080p Landscape (average of 1.30-1.85)
+    };
+    
+    const ratePerSecond = costPerSecond[resolution] || 1.575; // Default to 1080p pricing
+    const totalCost = ratePerSecond * duration * variants;
+    
+    return {
+        prompt: 0,        // No separate prompt cost in new pricing
+        generation: totalCost,
+        storage: 0,       // No separate storage cost in new pricing
+        total: totalCost
+    };
+}        function getCostBreakdown(resolution, duration, cost) {
+    const costPerSecond = cost.generation / duration;
+    return `• Resolution: ${resolution}
+• Duration: ${duration} seconds
+• Rate: $${costPerSecond.toFixed(3)} per second
+• **Total estimated cost: $${cost.total.toFixed(2)}**`;
+}
+
+// Form validation
+(function() {
+    'use strict';
+    window.addEventListener('load', function() {                // Initialize duration restrictions and cost estimation
+        updateDurationRestrictions();
+        
+        // Add event listeners for real-time updates
+        document.getElementById('resolution').addEventListener('change', updateDurationRestrictions);
+        document.getElementById('duration').addEventListener('input', updateCostEstimation);
+        document.getElementById('variants').addEventListener('change', updateCostEstimation);
+        
+        var forms = document.getElementsByClassName('needs-validation');
+        var validation = Array.prototype.filter.call(forms, function(form) {
+            form.addEventListener('submit', function(event) {
+                // Additional validation for duration restrictions
+                const resolutionSelect = document.getElementById('resolution');
+                const durationInput = document.getElementById('duration');
+                const duration = parseInt(durationInput.value);
+                  if (resolutionSelect.value === '1920x1080' && duration > 10) {
+                    event.preventDefault();
+                    event.stopPropagation();
+                    alert('Error: 1920x1080 resolution does not support more than 10 seconds duration. Maximum duration is 10 seconds.');
+                    durationInput.focus();
+                    return;
+                }
+                
+                if (form.checkValidity() === false) {
+                    event.preventDefault();
+                    event.stopPropagation();
+                } else {
+                    // Show loading state
+                    document.getElementById('loadingIcon').style.display = 'inline';
+                    document.getElementById('playIcon').style.display = 'none';
+                    event.target.querySelector('button').disabled = true;
+                }
+                form.classList.add('was-validated');
+            }, false);
+        });
+    }, false);
+})();
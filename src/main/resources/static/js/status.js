@@ -0,0 +1,181 @@
+const jobId = document.currentScript.dataset.jobId || 'unknown';
+let autoRefreshInterval;
+let statusSource;
+let pendingText;
+
+function checkStatus() {
+    document.getElementById('loadingState').classList.remove('d-none');
+    document.getElementById('statusDisplay').classList.add('d-none');
+    
+    fetch(`/api/status/${jobId}`)
+        .then(response => response.json())
+        .then(data => {
+            showStatus(data);
+        })
+        .catch(error => {
+            console.error('Error:', error);
+            document.getElementById('loadingState').classList.add('d-none');
+            document.getElementById('statusDisplay').classList.remove('d-none');
+            showError('Failed to check job status. Please try again.');
+        });
+}
+
+// Receive status changes pushed by the server; falls back to polling without EventSource support
+function watchStatus() {
+    if (!window.EventSource) {
+        checkStatus();
+        return;
+    }
+    
+    statusSource = new EventSource(`/api/status/${jobId}/stream`);
+    statusSource.addEventListener('status', event => {
+        const data = JSON.parse(event.data);
+        showStatus(data);
+        if (isFinal(data)) {
+            statusSource.close();
+        }
+    });
+    // On network errors the browser reconnects by itself
+}
+
+function isFinal(data) {
+    return data.success && ['completed', 'succeeded', 'failed', 'cancelled'].includes(data.status);
+}
+
+function showStatus(data) {
+    // A queued submission's ticket turns into its job once the job is created
+    if (data.success && data.jobId && data.jobId !== jobId) {
+        if (statusSource) {
+            statusSource.close();
+        }
+        window.location.replace(`/status/${encodeURIComponent(data.jobId)}`);
+        return;
+    }
+    
+    document.getElementById('loadingState').classList.add('d-none');
+    document.getElementById('statusDisplay').classList.remove('d-none');
+    
+    updateStatusDisplay(data);
+}
+
+function updateStatusDisplay(data) {
+    const statusBadge = document.getElementById('statusBadge');
+    const videoContainer = document.getElementById('videoContainer');
+    const errorContainer = document.getElementById('errorContainer');
+    const pendingContainer = document.getElementById('pendingContainer');
+    const pendingMessage = document.getElementById('pendingMessage');
+    
+    // Hide all containers first
+    videoContainer.classList.add('d-none');
+    errorContainer.classList.add('d-none');
+    pendingContainer.classList.add('d-none');
+    
+    // Clear auto-refresh
+    if (autoRefreshInterval) {
+        clearInterval(autoRefreshInterval);
+        autoRefreshInterval = null;
+    }
+    
+    if (data.success) {
+        statusBadge.textContent = data.status || 'Unknown';
+        if ((data.status === 'completed' || data.status === 'succeeded') && 
+            (data.videoUrl || data.generationId)) {
+            statusBadge.className = 'badge bg-success ms-2';
+            showVideo(data.videoUrl, data.generationIds);
+        } else if (data.status === 'failed') {
+            statusBadge.className = 'badge bg-danger ms-2';
+            showError(data.message || 'Video generation failed. Please try generating a new video.');
+        } else {
+            // Still pending; a queued submission shows its place in the queue instead
+            statusBadge.className = 'badge bg-warning ms-2';
+            pendingMessage.textContent = data.status === 'waiting' && data.message ? data.message : pendingText;
+            pendingContainer.classList.remove('d-none');
+            // Without a status stream, poll every 10 seconds
+            if (!statusSource) {
+                autoRefreshInterval = setInterval(checkStatus, 10000);
+            }
+        }
+    } else {
+        showError(data.message || 'Unknown error occurred');
+    }
+}
+
+function showVideo(videoUrl, generationIds) {
+    const videoContainer = document.getElementById('videoContainer');
+    const watchLink = document.getElementById('watchLink');
+    const variantSelector = document.getElementById('variantSelector');
+    
+    selectVariant(0);
+    
+    // Jobs with several variants get a button per video; the first one is prefetched on completion
+    const variants = generationIds ? generationIds.length : 1;
+    if (variants > 1) {
+        variantSelector.replaceChildren();
+        for (let i = 0; i < variants; i++) {
+            const button = document.createElement('button');
+            button.type = 'button';
+            button.className = i === 0 ? 'btn btn-primary' : 'btn btn-outline-primary';
+            button.textContent = `Variant ${i + 1}`;
+            button.addEventListener('click', () => {
+                variantSelector.querySelectorAll('button').forEach(other => other.className = 'btn btn-outline-primary');
+                button.className = 'btn btn-primary';
+                selectVariant(i);
+            });
+            variantSelector.appendChild(button);
+        }
+        variantSelector.classList.remove('d-none');
+    }
+    
+    // Offer the direct URL when the job has one
+    if (videoUrl && videoUrl !== 'available') {
+        watchLink.href = videoUrl;
+    } else {
+        watchLink.style.display = 'none';
+    }
+    
+    videoContainer.classList.remove('d-none');
+}
+
+function selectVariant(variant) {
+    const url = variant === 0 ? `/api/download/${jobId}` : `/api/download/${jobId}?variant=${variant}`;
+    
+    // Always use our download endpoint for proper file download
+    const downloadLink = document.getElementById('downloadLink');
+    downloadLink.href = url;
+    downloadLink.download = variant === 0 ? 'sora-video.mp4' : `sora-video-${variant + 1}.mp4`;
+    
+    // The player streams from our endpoint too: it serves byte ranges, so the video can seek
+    // without downloading it first
+    document.getElementById('videoSource').src = url;
+    document.getElementById('generatedVideo').load();
+}
+
+function showError(message) {
+    const errorContainer = document.getElementById('errorContainer');
+    const errorMessage = document.getElementById('errorMessage');
+    
+    errorMessage.textContent = message;
+    errorContainer.classList.remove('d-none');
+}
+
+// Start watching status on page load
+document.addEventListener('DOMContentLoaded', function() {
+    pendingText = document.getElementById('pendingMessage').textContent;
+    watchStatus();
+});
+
+// Release the status stream when the page goes away
+window.addEventListener('pagehide', function() {
+    if (statusSource) {
+        statusSource.close();
+    }
+});
+
+// Clean up polling interval when page is hidden
+document.addEventListener('visibilitychange', function() {
+    if (document.hidden && autoRefreshInterval) {
+        clearInterval(autoRefreshInterval);
+    } else if (!document.hidden && autoRefreshInterval) {
+        checkStatus();
+    }
+});
@@ -0,0 +1,135 @@
+package com.example.soravideogenerator.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdaptiveRateLimiterTests {
+
+	private static final int ROUNDS = 20_000;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/test")).build();
+
+	private final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter("test", 1_000_000_000, 1_000_000, 1, 1, 1,
+			Duration.ofSeconds(10), meterRegistry);
+
+	private double inFlight() {
+		return meterRegistry.get("azure.openai.limiter.in.flight").gauge().value();
+	}
+
+	@Test
+	void waiterCancelledWhilePermitIsReleasedDoesNotLeakIt() throws Exception {
+		ExecutorService threads = Executors.newFixedThreadPool(2);
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				// The first request holds the only permit, the second waits for it
+				Sinks.One<ClientResponse> holder = Sinks.one();
+				limiter.filter(request, clientRequest -> holder.asMono()).subscribe();
+				Disposable waiter = limiter.filter(request,
+						clientRequest -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).subscribe();
+
+				// Release the permit to the waiter while the waiter is being cancelled
+				CyclicBarrier start = new CyclicBarrier(2);
+				CompletableFuture<Void> release = CompletableFuture.runAsync(() -> {
+					await(start);
+					holder.tryEmitValue(ClientResponse.create(HttpStatus.OK).build());
+				}, threads);
+				CompletableFuture<Void> cancel = CompletableFuture.runAsync(() -> {
+					await(start);
+					waiter.dispose();
+				}, threads);
+				CompletableFuture.allOf(release, cancel).get(5, TimeUnit.SECONDS);
+
+				assertThat(inFlight()).as("permits in use after round %d", round).isZero();
+			}
+		} finally {
+			threads.shutdownNow();
+		}
+		assertThat(limiter.isSaturated()).isFalse();
+	}
+
+	@Test
+	void retryAfterIsReadInSecondsOrAsAnHttpDate() {
+		HttpHeaders seconds = new HttpHeaders();
+		seconds.set(HttpHeaders.RETRY_AFTER, "12");
+		assertThat(AdaptiveRateLimiter.retryAfter(seconds)).isEqualTo(Duration.ofSeconds(12));
+
+		HttpHeaders date = new HttpHeaders();
+		date.set(HttpHeaders.RETRY_AFTER, DateTimeFormatter.RFC_1123_DATE_TIME
+			.format(ZonedDateTime.now(ZoneOffset.UTC).plusSeconds(30)));
+		assertThat(AdaptiveRateLimiter.retryAfter(date)).isBetween(Duration.ofSeconds(28), Duration.ofSeconds(30));
+
+		HttpHeaders past = new HttpHeaders();
+		past.set(HttpHeaders.RETRY_AFTER, "Wed, 21 Oct 2015 07:28:00 GMT");
+		assertThat(AdaptiveRateLimiter.retryAfter(past)).isZero();
+
+		// retry-after-ms is more precise and wins over Retry-After
+		seconds.set("retry-after-ms", "1500");
+		assertThat(AdaptiveRateLimiter.retryAfter(seconds)).isEqualTo(Duration.ofMillis(1500));
+
+		HttpHeaders garbled = new HttpHeaders();
+		garbled.set(HttpHeaders.RETRY_AFTER, "soon");
+		assertThat(AdaptiveRateLimiter.retryAfter(garbled)).isNull();
+		assertThat(AdaptiveRateLimiter.retryAfter(new HttpHeaders())).isNull();
+	}
+
+	@Test
+	void quotaResetIsReadOnlyWhenNoRequestsRemain() {
+		HttpHeaders exhausted = new HttpHeaders();
+		exhausted.set("x-ratelimit-remaining-requests", "0");
+		exhausted.set("x-ratelimit-reset-requests", "1m30s");
+		assertThat(AdaptiveRateLimiter.quotaReset(exhausted)).isEqualTo(Duration.ofSeconds(90));
+
+		exhausted.set("x-ratelimit-reset-requests", "2.5");
+		assertThat(AdaptiveRateLimiter.quotaReset(exhausted)).isEqualTo(Duration.ofMillis(2500));
+
+		exhausted.set("x-ratelimit-reset-requests", "250ms");
+		assertThat(AdaptiveRateLimiter.quotaReset(exhausted)).isEqualTo(Duration.ofMillis(250));
+
+		HttpHeaders remaining = new HttpHeaders();
+		remaining.set("x-ratelimit-remaining-requests", "3");
+		remaining.set("x-ratelimit-reset-requests", "10s");
+		assertThat(AdaptiveRateLimiter.quotaReset(remaining)).isNull();
+	}
+
+	@Test
+	void throttledResponsePausesForRetryAfter() {
+		limiter.filter(request, clientRequest -> Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS)
+				.header(HttpHeaders.RETRY_AFTER, "5")
+				.build()))
+			.block();
+
+		assertThat(limiter.isSaturated()).isTrue();
+		assertThat(meterRegistry.get("azure.openai.limiter.pause").gauge().value()).isBetween(4.0, 5.0);
+	}
+
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await(5, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,39 @@
+package com.example.soravideogenerator.controller;
+
+import com.example.soravideogenerator.model.BatchStatus;
+import com.example.soravideogenerator.service.BatchSubmissionService;
+import com.example.soravideogenerator.service.CostEstimationService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchControllerTests {
+
+	private final BatchSubmissionService batchSubmissionService = mock(BatchSubmissionService.class);
+
+	private final WebTestClient client = WebTestClient.bindToController(
+			new BatchController(batchSubmissionService, mock(CostEstimationService.class)))
+		.build();
+
+	@Test
+	void acceptedBatchPointsAtItsStatus() {
+		BatchStatus status = new BatchStatus();
+		status.setBatchId("batch-1");
+		status.setTotal(1);
+		status.setPending(1);
+		when(batchSubmissionService.submit(any(), any())).thenReturn(status);
+
+		client.post().uri("/api/batches")
+			.contentType(MediaType.APPLICATION_JSON)
+			.bodyValue("{\"requests\":[{\"prompt\":\"a cat\",\"resolution\":\"1280x720\",\"duration\":5}]}")
+			.exchange()
+			.expectStatus().isAccepted()
+			.expectHeader().valueEquals(HttpHeaders.LOCATION, "/api/batches/batch-1")
+			.expectBody().jsonPath("$.batchId").isEqualTo("batch-1");
+	}
+}
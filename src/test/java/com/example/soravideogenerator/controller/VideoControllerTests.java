@@ -0,0 +1,140 @@
+package com.example.soravideogenerator.controller;
+
+import com.example.soravideogenerator.model.VideoResponse;
+import com.example.soravideogenerator.service.CostEstimationService;
+import com.example.soravideogenerator.service.JobRegistry;
+import com.example.soravideogenerator.service.JobStatusCache;
+import com.example.soravideogenerator.service.JobSubmissionService;
+import com.example.soravideogenerator.service.SoraVideoService;
+import com.example.soravideogenerator.service.VideoCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VideoControllerTests {
+
+	private static final byte[] VIDEO = "0123456789".getBytes(StandardCharsets.US_ASCII);
+
+	@TempDir
+	Path cacheDirectory;
+
+	private final SoraVideoService soraVideoService = mock(SoraVideoService.class);
+
+	private final JobStatusCache jobStatusCache = mock(JobStatusCache.class);
+
+	private final JobRegistry jobRegistry = mock(JobRegistry.class);
+
+	private VideoCacheService videoCacheService;
+
+	private WebTestClient client;
+
+	@BeforeEach
+	void setUp() {
+		VideoResponse completed = new VideoResponse("job-1", "succeeded");
+		completed.setGenerationId("gen-1");
+		when(jobStatusCache.getStatus("job-1")).thenReturn(Mono.just(completed));
+		when(jobRegistry.find(any())).thenReturn(Optional.empty());
+		upstream(null, Mono.fromSupplier(() -> ResponseEntity.ok().contentLength(VIDEO.length).body(body(VIDEO))));
+		videoCacheService = new VideoCacheService(true, cacheDirectory.toString(), DataSize.ofMegabytes(1),
+				Duration.ofHours(1), true, new SimpleMeterRegistry());
+		client = WebTestClient.bindToController(new VideoController(soraVideoService, mock(CostEstimationService.class),
+				videoCacheService, jobStatusCache, jobRegistry, mock(JobSubmissionService.class), Duration.ofHours(24)))
+			.build();
+	}
+
+	private void upstream(String range, Mono<ResponseEntity<Flux<DataBuffer>>> response) {
+		when(soraVideoService.downloadVideoContent(eq("job-1"), eq("gen-1"), range == null ? isNull() : eq(range), any()))
+			.thenAnswer(invocation -> {
+				Function<ResponseEntity<Flux<DataBuffer>>, Publisher<Object>> handler = invocation.getArgument(3);
+				return response.flatMapMany(handler);
+			});
+	}
+
+	private static Flux<DataBuffer> body(byte[] bytes) {
+		return Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(bytes));
+	}
+
+	@Test
+	void rangeMissingTheCacheIsForwardedUpstreamAndCachedInTheBackground() {
+		upstream("bytes=2-5", Mono.just(ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+				.header(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+				.contentLength(4)
+				.body(body("2345".getBytes(StandardCharsets.US_ASCII)))));
+
+		client.get().uri("/api/download/job-1").header(HttpHeaders.RANGE, "bytes=2-5")
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+			.expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10")
+			.expectHeader().valueEquals(HttpHeaders.ETAG, "\"gen-1\"")
+			.expectBody(String.class).isEqualTo("2345");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> videoCacheService.lookup("gen-1").isPresent());
+		assertThat(videoCacheService.lookup("gen-1").get().isRemuxed()).isFalse();
+
+		// Later seeks are served from the cached copy, under the same ETag
+		client.get().uri("/api/download/job-1").header(HttpHeaders.RANGE, "bytes=7-")
+			.header(HttpHeaders.IF_RANGE, "\"gen-1\"")
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.PARTIAL_CONTENT)
+			.expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10")
+			.expectBody(String.class).isEqualTo("789");
+	}
+
+	@Test
+	void rangeBeyondTheEndIsNotSatisfiable() {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CONTENT_RANGE, "bytes */10");
+		upstream("bytes=20-", Mono.error(WebClientResponseException.create(416, "Range Not Satisfiable", headers,
+				new byte[0], StandardCharsets.UTF_8)));
+
+		client.get().uri("/api/download/job-1").header(HttpHeaders.RANGE, "bytes=20-")
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+			.expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */10");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> videoCacheService.lookup("gen-1").isPresent());
+		client.get().uri("/api/download/job-1").header(HttpHeaders.RANGE, "bytes=20-")
+			.exchange()
+			.expectStatus().isEqualTo(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+			.expectHeader().valueEquals(HttpHeaders.CONTENT_RANGE, "bytes */10");
+	}
+
+	@Test
+	void matchingETagIsNotModified() {
+		client.get().uri("/api/download/job-1").header(HttpHeaders.IF_NONE_MATCH, "\"gen-1\"")
+			.header(HttpHeaders.RANGE, "bytes=0-3")
+			.exchange()
+			.expectStatus().isNotModified()
+			.expectBody().isEmpty();
+
+		verify(soraVideoService, never()).downloadVideoContent(any(), any(), any(), any());
+	}
+}
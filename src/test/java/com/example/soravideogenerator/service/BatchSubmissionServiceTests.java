@@ -0,0 +1,131 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.BatchRequest;
+import com.example.soravideogenerator.model.BatchStatus;
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BatchSubmissionServiceTests {
+
+	private final JobSubmissionService jobSubmissionService = mock(JobSubmissionService.class);
+
+	private final JobRegistry jobRegistry = mock(JobRegistry.class);
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+
+	private BatchSubmissionService service(int maxConcurrency) {
+		when(jobRegistry.find(any())).thenReturn(Optional.empty());
+		return new BatchSubmissionService(jobSubmissionService, jobRegistry, maxConcurrency, 1000, Duration.ofHours(24));
+	}
+
+	/**
+	 * Answer each submission after a delay, with the result the prompt asks for
+	 */
+	private void upstream() {
+		when(jobSubmissionService.submit(any(), isNull(), eq("alice"), anyBoolean())).thenAnswer(invocation -> {
+			String prompt = invocation.<VideoRequest>getArgument(0).getPrompt();
+			return Mono.defer(() -> {
+				maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+				Mono<VideoResponse> response = switch (prompt) {
+					case "error" -> Mono.error(new QueueFullException("The service is at capacity"));
+					case "rejected" -> Mono.just(new VideoResponse("Daily budget exceeded", false));
+					default -> Mono.just(new VideoResponse("job-" + prompt, "queued"));
+				};
+				// Counted as done before the result reaches the batch, which starts the next item
+				return response.delaySubscription(Duration.ofMillis(50))
+					.doOnSuccess(result -> inFlight.decrementAndGet())
+					.doOnError(error -> inFlight.decrementAndGet());
+			});
+		});
+	}
+
+	private static BatchRequest batch(String... prompts) {
+		List<VideoRequest> requests = new ArrayList<>();
+		for (String prompt : prompts) {
+			requests.add(new VideoRequest(prompt, "1280x720", 5));
+		}
+		return new BatchRequest(requests);
+	}
+
+	private static BatchStatus awaitFinished(BatchSubmissionService service, String batchId) {
+		await().atMost(Duration.ofSeconds(5)).until(() -> service.getStatus(batchId).get().getPending() == 0);
+		return service.getStatus(batchId).get();
+	}
+
+	@Test
+	void itemsAreSubmittedWithBoundedConcurrency() {
+		upstream();
+		BatchSubmissionService service = service(3);
+
+		BatchStatus accepted = service.submit(batch("0", "1", "2", "3", "4", "5", "6", "7", "8", "9"), "alice");
+		assertThat(accepted.getTotal()).isEqualTo(10);
+
+		BatchStatus finished = awaitFinished(service, accepted.getBatchId());
+		assertThat(finished.getSubmitted()).isEqualTo(10);
+		assertThat(maxInFlight.get()).isBetween(2, 3);
+	}
+
+	@Test
+	void failedItemDoesNotFailTheBatch() {
+		upstream();
+		BatchSubmissionService service = service(2);
+
+		BatchStatus finished = awaitFinished(service,
+				service.submit(batch("0", "error", "rejected", "3"), "alice").getBatchId());
+
+		assertThat(finished.getSubmitted()).isEqualTo(2);
+		assertThat(finished.getFailed()).isEqualTo(2);
+		assertThat(finished.getItems()).extracting(BatchStatus.Item::getState)
+			.containsExactly("submitted", "failed", "failed", "submitted");
+		assertThat(finished.getItems().get(1).getMessage()).isEqualTo("The service is at capacity");
+		assertThat(finished.getItems().get(2).getMessage()).isEqualTo("Daily budget exceeded");
+		assertThat(finished.getItems().get(3).getJobId()).isEqualTo("job-3");
+	}
+
+	@Test
+	void totalsFollowTheJobsInTheRegistry() {
+		upstream();
+		BatchSubmissionService service = service(4);
+		String batchId = service.submit(batch("0", "1", "error"), "alice").getBatchId();
+		awaitFinished(service, batchId);
+
+		JobRecord succeeded = new JobRecord("job-0", new VideoRequest("0", "1280x720", 5), BigDecimal.ONE);
+		succeeded.setStatus("succeeded");
+		when(jobRegistry.find("job-0")).thenReturn(Optional.of(succeeded));
+
+		BatchStatus status = service.getStatus(batchId).get();
+		assertThat(status.getTotal()).isEqualTo(3);
+		assertThat(status.getPending()).isZero();
+		assertThat(status.getSubmitted()).isEqualTo(2);
+		assertThat(status.getFailed()).isEqualTo(1);
+		assertThat(status.getCompleted()).isEqualTo(1);
+		assertThat(status.getItems()).extracting(BatchStatus.Item::getJobStatus)
+			.containsExactly("succeeded", "queued", null);
+	}
+
+	@Test
+	void unknownBatchHasNoStatus() {
+		assertThat(service(1).getStatus("missing")).isEmpty();
+	}
+}
@@ -0,0 +1,95 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.BatchEstimate;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CostEstimationServiceTests {
+
+	private final CostEstimationService service = new CostEstimationService(new ObjectMapper(),
+			new ClassPathResource("pricing/sora-prices.json"));
+
+	@Test
+	void estimatesUseMidpointOfVariablePrices() {
+		assertThat(service.calculateEstimatedCost("480x480", 10)).isEqualByComparingTo("1.50");
+		assertThat(service.calculateEstimatedCost("1080x1080", 5)).isEqualByComparingTo("3.40");
+		assertThat(service.calculateEstimatedCost("1920x1080", 10)).isEqualByComparingTo("15.80");
+		assertThat(service.getCostRange("1920x1080", 10)).containsExactly(new BigDecimal("13.00"), new BigDecimal("18.50"));
+		assertThat(service.estimateMicros("1080x1080", 5)).isEqualTo(3_400_000L);
+	}
+
+	@Test
+	void unknownResolutionsUseFallbackPrice() {
+		assertThat(service.calculateEstimatedCost("640x640", 10)).isEqualByComparingTo("13.00");
+		assertThat(service.getCostBreakdown("640x640", 10)).contains("Resolution: 640x640");
+	}
+
+	@Test
+	void batchIsPricedInOneCall() {
+		BatchEstimate estimate = service.estimateBatch(List.of(
+				new VideoRequest("a", "480x480", 10),
+				new VideoRequest("b", "1920x1080", 10)));
+
+		assertThat(estimate.getPriceSheetVersion()).isEqualTo("2025-06");
+		assertThat(estimate.getEstimatedTotal()).isEqualByComparingTo("17.30");
+		assertThat(estimate.getMinTotal()).isEqualByComparingTo("14.50");
+		assertThat(estimate.getMaxTotal()).isEqualByComparingTo("20.00");
+		assertThat(estimate.getItems()).hasSize(2);
+	}
+
+	@Test
+	void everyVariantIsBilledAsAVideo() {
+		assertThat(service.calculateEstimatedCost("1080x1080", 5, 3)).isEqualByComparingTo("10.20");
+		assertThat(service.getCostBreakdown("1080x1080", 5, 1)).isEqualTo(service.getCostBreakdown("1080x1080", 5));
+		assertThat(service.getCostBreakdown("1080x1080", 5, 3)).contains("3 variants × $3.40 = $10.20");
+
+		BatchEstimate estimate = service.estimateBatch(List.of(
+				new VideoRequest("a", "480x480", 10, 2),
+				new VideoRequest("b", "1920x1080", 10)));
+		assertThat(estimate.getEstimatedTotal()).isEqualByComparingTo("18.80");
+		assertThat(estimate.getMinTotal()).isEqualByComparingTo("16.00");
+		assertThat(estimate.getItems().get(0).getVariants()).isEqualTo(2);
+		assertThat(estimate.getItems().get(0).getEstimatedCost()).isEqualByComparingTo("3.00");
+	}
+
+	@Test
+	void changedSheetIsReloadedAndInvalidSheetIsIgnored(@TempDir Path directory) throws IOException {
+		Path sheet = directory.resolve("prices.json");
+		writeSheet(sheet, "v1", "0.15", 1);
+		CostEstimationService reloadable = new CostEstimationService(new ObjectMapper(), new FileSystemResource(sheet));
+		assertThat(reloadable.calculateEstimatedCost("480x480", 10)).isEqualByComparingTo("1.50");
+
+		writeSheet(sheet, "v2", "0.20", 2);
+		reloadable.reloadIfChanged();
+		assertThat(reloadable.getPriceSheetVersion()).isEqualTo("v2");
+		assertThat(reloadable.calculateEstimatedCost("480x480", 10)).isEqualByComparingTo("2.00");
+
+		writeSheet(sheet, "v3", "-1", 3);
+		reloadable.reloadIfChanged();
+		assertThat(reloadable.getPriceSheetVersion()).isEqualTo("v2");
+	}
+
+	private static void writeSheet(Path file, String version, String price, int generation) throws IOException {
+		Files.writeString(file, """
+				{"version": "%s", "fallbackPerSecond": "1.30",
+				 "resolutions": {"480x480": {"minPerSecond": "%s", "maxPerSecond": "%s"}}}
+				""".formatted(version, price, price));
+		// Distinct modification times even on file systems with coarse timestamps
+		Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(generation)));
+	}
+
+}
@@ -0,0 +1,108 @@
+package com.example.soravideogenerator.service;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EndpointPoolTests {
+
+	private final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private EndpointPool.Endpoint endpoint(String name, double weight, ExchangeFunction exchange) {
+		return new EndpointPool.Endpoint(name, weight, null, WebClient.builder().exchangeFunction(exchange),
+				circuitBreakerRegistry, true, Duration.ofMinutes(10), Duration.ofSeconds(5), meterRegistry);
+	}
+
+	private EndpointPool.Endpoint endpoint(String name) {
+		return endpoint(name, 1);
+	}
+
+	private EndpointPool.Endpoint endpoint(String name, double weight) {
+		return endpoint(name, weight, request -> Mono.just(ClientResponse.create(HttpStatus.OK).build()));
+	}
+
+	private static String chooseRepeatedly(EndpointPool pool) {
+		String first = pool.choose().getName();
+		for (int i = 0; i < 20; i++) {
+			assertThat(pool.choose().getName()).isEqualTo(first);
+		}
+		return first;
+	}
+
+	@Test
+	void routesNewJobsToTheFasterEndpoint() {
+		EndpointPool.Endpoint east = endpoint("east");
+		EndpointPool.Endpoint west = endpoint("west");
+		east.observe(Duration.ofMillis(800).toNanos());
+		west.observe(Duration.ofMillis(100).toNanos());
+
+		assertThat(chooseRepeatedly(new EndpointPool(List.of(east, west)))).isEqualTo("west");
+	}
+
+	@Test
+	void weightsShiftTrafficTowardsLargerDeployments() {
+		EndpointPool.Endpoint east = endpoint("east", 4);
+		EndpointPool.Endpoint west = endpoint("west");
+		east.observe(Duration.ofMillis(200).toNanos());
+		west.observe(Duration.ofMillis(100).toNanos());
+
+		assertThat(chooseRepeatedly(new EndpointPool(List.of(east, west)))).isEqualTo("east");
+	}
+
+	@Test
+	void avoidsEndpointsWithOutstandingRequests() {
+		EndpointPool.Endpoint east = endpoint("east", 1, request -> Mono.never());
+		EndpointPool.Endpoint west = endpoint("west");
+		Disposable pending = east.getWebClient().get().uri("http://east/jobs").retrieve().toBodilessEntity().subscribe();
+		try {
+			assertThat(chooseRepeatedly(new EndpointPool(List.of(east, west)))).isEqualTo("west");
+		} finally {
+			pending.dispose();
+		}
+	}
+
+	@Test
+	void serverErrorsPushTrafficAway() {
+		EndpointPool.Endpoint east = endpoint("east", 1,
+				request -> Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build()));
+		EndpointPool.Endpoint west = endpoint("west");
+		west.observe(Duration.ofSeconds(1).toNanos());
+
+		east.getWebClient().get().uri("http://east/jobs").retrieve().toBodilessEntity()
+			.onErrorResume(error -> Mono.empty()).block();
+
+		assertThat(chooseRepeatedly(new EndpointPool(List.of(east, west)))).isEqualTo("west");
+	}
+
+	@Test
+	void ejectsEndpointsWithAnOpenCircuitBreaker() {
+		EndpointPool.Endpoint east = endpoint("east");
+		EndpointPool.Endpoint west = endpoint("west");
+		east.observe(Duration.ofMillis(800).toNanos());
+		west.getCreateBreaker().transitionToOpenState();
+
+		assertThat(west.getCreateBreaker().getName()).isEqualTo("createJob-west");
+		assertThat(chooseRepeatedly(new EndpointPool(List.of(east, west)))).isEqualTo("east");
+	}
+
+	@Test
+	void jobsWithoutAKnownEndpointGoToTheFirstOne() {
+		EndpointPool pool = new EndpointPool(List.of(endpoint("east"), endpoint("west")));
+
+		assertThat(pool.get("west").getName()).isEqualTo("west");
+		assertThat(pool.get(null).getName()).isEqualTo("east");
+		assertThat(pool.get("removed").getName()).isEqualTo("east");
+	}
+}
@@ -0,0 +1,133 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobPriority;
+import com.example.soravideogenerator.model.JobRecord;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JobQueueTests {
+
+	private final JobRegistry jobRegistry = mock(JobRegistry.class);
+
+	private final List<String> started = new CopyOnWriteArrayList<>();
+
+	private static EndpointPool.Endpoint endpoint(String name) {
+		return new EndpointPool.Endpoint(name, 1, null, WebClient.builder(), CircuitBreakerRegistry.ofDefaults(), true,
+				Duration.ofMinutes(10), Duration.ofSeconds(5), new SimpleMeterRegistry());
+	}
+
+	private JobQueue queue(int maxActiveJobs, int capacity, Map<String, JobPriority> priorities) {
+		return queue(new EndpointPool(List.of(endpoint("default"))), maxActiveJobs, capacity, priorities);
+	}
+
+	private JobQueue queue(EndpointPool endpointPool, int maxActiveJobsPerEndpoint, int capacity,
+			Map<String, JobPriority> priorities) {
+		return new JobQueue(jobRegistry, endpointPool, true, maxActiveJobsPerEndpoint, capacity, Duration.ofMinutes(10),
+				Duration.ofMinutes(5), Duration.ofMinutes(2), Duration.ofHours(6), Map.of(), priorities,
+				new SimpleMeterRegistry());
+	}
+
+	private void acquire(JobQueue queue, String principal, String name, boolean background) {
+		queue.acquire(principal, background).subscribe(slot -> started.add(name));
+	}
+
+	@Test
+	void freedSlotGoesToPrincipalWithFewestRunningJobs() {
+		JobQueue queue = queue(2, 10, Map.of());
+		JobQueue.Slot first = queue.acquire("alice", false).block();
+		queue.acquire("alice", false).block();
+		acquire(queue, "alice", "alice-3", false);
+		acquire(queue, "alice", "alice-4", false);
+		acquire(queue, "bob", "bob-1", false);
+		assertThat(started).isEmpty();
+		assertThat(queue.status("bob").getPosition()).isZero();
+
+		queue.release(first);
+
+		assertThat(started).containsExactly("bob-1");
+		assertThat(queue.status("alice").getPrincipalWaiting()).isEqualTo(2);
+	}
+
+	@Test
+	void higherPriorityClassGoesFirst() {
+		JobQueue queue = queue(1, 10, Map.of("ops", JobPriority.HIGH));
+		JobQueue.Slot running = queue.acquire("alice", false).block();
+		acquire(queue, "batch", "batch-1", true);
+		acquire(queue, "alice", "alice-2", false);
+		acquire(queue, "ops", "ops-1", false);
+
+		queue.release(running);
+		assertThat(started).containsExactly("ops-1");
+	}
+
+	@Test
+	void fullQueueRejectsWithPositionAndWait() {
+		JobQueue queue = new JobQueue(jobRegistry, new EndpointPool(List.of(endpoint("default"))), true, 1, 1,
+				Duration.ofMinutes(1), Duration.ofMinutes(5), Duration.ofMinutes(2), Duration.ofHours(6), Map.of(), Map.of(),
+				new SimpleMeterRegistry());
+		queue.acquire("alice", false).block();
+
+		assertThatThrownBy(() -> queue.acquire("bob", false).block())
+			.isInstanceOf(QueueFullException.class)
+			.hasMessageContaining("number 1 in the queue")
+			.hasMessageContaining("2 minutes");
+
+		acquire(queue, "bob", "bob-1", true);
+		assertThatThrownBy(() -> queue.acquire("carol", true).block())
+			.isInstanceOf(QueueFullException.class)
+			.hasMessageContaining("1 are waiting");
+	}
+
+	@Test
+	void slotIsHeldUntilJobEnds() {
+		JobQueue queue = queue(1, 10, Map.of());
+		JobQueue.Slot slot = queue.acquire("alice", false).block();
+		queue.bind(slot, "job-1");
+		acquire(queue, "bob", "bob-1", false);
+
+		queue.release(slot);
+		assertThat(started).isEmpty();
+
+		JobRecord finished = new JobRecord();
+		finished.setStatus("succeeded");
+		when(jobRegistry.find(any())).thenReturn(Optional.of(finished));
+		queue.releaseStale();
+		assertThat(started).containsExactly("bob-1");
+	}
+
+	@Test
+	void slotGoesToAnEndpointWithRoomInItsQuota() {
+		EndpointPool.Endpoint east = endpoint("east");
+		EndpointPool.Endpoint west = endpoint("west");
+		east.observe(Duration.ofMillis(100).toNanos());
+		west.observe(Duration.ofMillis(800).toNanos());
+		JobQueue queue = queue(new EndpointPool(List.of(east, west)), 1, 10, Map.of());
+
+		JobQueue.Slot first = queue.acquire("alice", false).block();
+		JobQueue.Slot second = queue.acquire("bob", false).block();
+		acquire(queue, "carol", "carol-1", false);
+
+		assertThat(first.getEndpoint()).isEqualTo("east");
+		assertThat(queue.endpoint(first).getName()).isEqualTo("east");
+		assertThat(second.getEndpoint()).isEqualTo("west");
+		assertThat(queue.endpoint(second).getName()).isEqualTo("west");
+		assertThat(started).isEmpty();
+
+		queue.release(first);
+		assertThat(started).containsExactly("carol-1");
+	}
+}
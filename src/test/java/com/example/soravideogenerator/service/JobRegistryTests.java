@@ -0,0 +1,92 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobRecord;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JobRegistryTests {
+
+	private final ObjectMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+
+	@TempDir
+	Path directory;
+
+	private JobRegistry registry() {
+		return new JobRegistry(objectMapper, new SimpleMeterRegistry(), directory.resolve("jobs.jsonl").toString());
+	}
+
+	private static void create(JobRegistry registry, String jobId) {
+		registry.recordCreated(jobId, new VideoRequest("A cat on a skateboard", "1080x1080", 5), new BigDecimal("2.00"),
+				"alice", "queued", "east");
+	}
+
+	private long lines() throws IOException {
+		return Files.readAllLines(directory.resolve("jobs.jsonl"), StandardCharsets.UTF_8).size();
+	}
+
+	@Test
+	void jobsAreReplayedAfterRestart() {
+		JobRegistry registry = registry();
+		create(registry, "job-1");
+		create(registry, "job-2");
+		registry.recordStatus(new VideoResponse("job-1", "running"));
+		registry.recordStatus(new VideoResponse("job-1", "succeeded"));
+		registry.close();
+
+		JobRegistry restarted = registry();
+		JobRecord finished = restarted.find("job-1").orElseThrow();
+		assertThat(finished.getStatus()).isEqualTo("succeeded");
+		assertThat(finished.getEndpoint()).isEqualTo("east");
+		assertThat(finished.getHistory()).extracting(JobRecord.StatusChange::getStatus)
+			.containsExactly("queued", "running", "succeeded");
+		assertThat(restarted.activeJobs()).extracting(JobRecord::getJobId).containsExactly("job-2");
+	}
+
+	@Test
+	void tornLastLineIsSkippedAndDoesNotCorruptTheNextAppend() throws IOException {
+		JobRegistry registry = registry();
+		create(registry, "job-1");
+		registry.close();
+		Files.writeString(directory.resolve("jobs.jsonl"), "{\"jobId\":\"job-2\",\"sta", StandardOpenOption.APPEND);
+
+		JobRegistry restarted = registry();
+		assertThat(restarted.find("job-1")).isPresent();
+		assertThat(restarted.find("job-2")).isEmpty();
+		create(restarted, "job-3");
+		restarted.close();
+
+		JobRegistry again = registry();
+		assertThat(again.find("job-1")).isPresent();
+		assertThat(again.find("job-3")).isPresent();
+	}
+
+	@Test
+	void logIsCompactedAsItGrows() throws IOException {
+		JobRegistry registry = registry();
+		create(registry, "job-1");
+		for (int i = 0; i < 150; i++) {
+			registry.recordStatus(new VideoResponse("job-1", i % 2 == 0 ? "running" : "processing"));
+		}
+		registry.close();
+
+		assertThat(lines()).isLessThan(100);
+		JobRegistry restarted = registry();
+		JobRecord record = restarted.find("job-1").orElseThrow();
+		assertThat(record.getStatus()).isEqualTo("processing");
+		assertThat(record.getHistory()).hasSize(151);
+	}
+}
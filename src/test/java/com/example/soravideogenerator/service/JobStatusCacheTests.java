@@ -0,0 +1,71 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoResponse;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JobStatusCacheTests {
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	private JobStatusCache cacheReturning(String status, Duration upstreamDelay) {
+		SoraVideoService service = mock(SoraVideoService.class);
+		when(service.checkJobStatus("job-1")).thenReturn(Mono.defer(() -> {
+			upstreamCalls.incrementAndGet();
+			return Mono.just(new VideoResponse("job-1", status)).delayElement(upstreamDelay);
+		}));
+		return new JobStatusCache(service, mock(JobPoller.class), mock(JobRegistry.class),
+				Duration.ofSeconds(5), Duration.ofHours(1), Duration.ofMinutes(10),
+				Duration.ofSeconds(2), Duration.ofMinutes(30));
+	}
+
+	@Test
+	void concurrentLookupsShareOneUpstreamCall() {
+		JobStatusCache cache = cacheReturning("running", Duration.ofMillis(100));
+
+		StepVerifier.create(Mono.zip(cache.getStatus("job-1"), cache.getStatus("job-1"), cache.getStatus("job-1")))
+			.assertNext(statuses -> assertThat(statuses.getT1().getStatus()).isEqualTo("running"))
+			.verifyComplete();
+
+		assertThat(upstreamCalls).hasValue(1);
+	}
+
+	@Test
+	void invalidateForcesNextLookupUpstream() {
+		JobStatusCache cache = cacheReturning("succeeded", Duration.ZERO);
+
+		cache.getStatus("job-1").block();
+		cache.getStatus("job-1").block();
+		assertThat(upstreamCalls).hasValue(1);
+
+		cache.invalidate("job-1");
+		cache.getStatus("job-1").block();
+		assertThat(upstreamCalls).hasValue(2);
+	}
+
+	@Test
+	void failedLookupsAreNotCached() {
+		SoraVideoService service = mock(SoraVideoService.class);
+		when(service.checkJobStatus("job-1")).thenReturn(Mono.fromCallable(() -> {
+			upstreamCalls.incrementAndGet();
+			return new VideoResponse("Failed to check job status.", false);
+		}));
+		JobStatusCache cache = new JobStatusCache(service, mock(JobPoller.class), mock(JobRegistry.class),
+				Duration.ofSeconds(5), Duration.ofHours(1), Duration.ofMinutes(10),
+				Duration.ofSeconds(2), Duration.ofMinutes(30));
+
+		cache.getStatus("job-1").block();
+		cache.getStatus("job-1").block();
+
+		assertThat(upstreamCalls).hasValue(2);
+	}
+
+}
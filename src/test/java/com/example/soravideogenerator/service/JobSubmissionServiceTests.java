@@ -0,0 +1,134 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JobSubmissionServiceTests {
+
+	private final AtomicInteger upstreamCalls = new AtomicInteger();
+
+	private final JobRegistry jobRegistry = mock(JobRegistry.class);
+
+	private JobQueue queue(int maxActiveJobs) {
+		EndpointPool endpointPool = new EndpointPool(List.of(new EndpointPool.Endpoint("default", 1, null,
+				WebClient.builder(), CircuitBreakerRegistry.ofDefaults(), false, Duration.ofMinutes(10),
+				Duration.ofSeconds(5), new SimpleMeterRegistry())));
+		return new JobQueue(jobRegistry, endpointPool, true, maxActiveJobs, 100, Duration.ofMinutes(2), Duration.ofMinutes(5),
+				Duration.ofMinutes(2), Duration.ofHours(6), Map.of(), Map.of(), new SimpleMeterRegistry());
+	}
+
+	private JobSubmissionService serviceReturning(boolean success) {
+		return serviceReturning(success, queue(10));
+	}
+
+	private JobSubmissionService serviceReturning(boolean success, JobQueue jobQueue) {
+		SoraVideoService soraVideoService = mock(SoraVideoService.class);
+		when(soraVideoService.generateVideo(any(), any())).thenAnswer(invocation -> Mono.defer(() -> {
+			int call = upstreamCalls.incrementAndGet();
+			VideoResponse response = success
+					? new VideoResponse("job-" + call, "queued")
+					: new VideoResponse("Failed to generate video. Please try again.", false);
+			return Mono.just(response).delayElement(Duration.ofMillis(100));
+		}));
+		when(jobRegistry.find(any())).thenReturn(Optional.empty());
+		SpendingLedger spendingLedger = new SpendingLedger(jobRegistry, true, Duration.ofDays(1),
+				BigDecimal.ZERO, BigDecimal.ZERO, Duration.ofHours(6), new SimpleMeterRegistry());
+		return new JobSubmissionService(soraVideoService, new CostEstimationService(new ObjectMapper(),
+				new ClassPathResource("pricing/sora-prices.json")), jobRegistry,
+				mock(JobPoller.class), spendingLedger, jobQueue, true, Duration.ofMinutes(10), Duration.ofHours(24),
+				new SimpleMeterRegistry());
+	}
+
+	@Test
+	void concurrentIdenticalSubmissionsCreateOneJob() {
+		JobSubmissionService service = serviceReturning(true);
+
+		StepVerifier.create(Mono.zip(
+				service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5)),
+				service.submit(new VideoRequest("  A cat on a   skateboard ", "1080x1080", 5)),
+				service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5))))
+			.assertNext(responses -> {
+				assertThat(responses.getT1().getJobId()).isEqualTo("job-1");
+				assertThat(responses.getT2().getJobId()).isEqualTo("job-1");
+				assertThat(responses.getT3().getJobId()).isEqualTo("job-1");
+			})
+			.verifyComplete();
+
+		assertThat(upstreamCalls).hasValue(1);
+	}
+
+	@Test
+	void promptsDifferingInCaseAreDifferentJobs() {
+		JobSubmissionService service = serviceReturning(true);
+
+		VideoResponse first = service.submit(new VideoRequest("A sign that says OPEN", "1080x1080", 5)).block();
+		VideoResponse second = service.submit(new VideoRequest("A sign that says open", "1080x1080", 5)).block();
+
+		assertThat(first.getJobId()).isNotEqualTo(second.getJobId());
+		assertThat(upstreamCalls).hasValue(2);
+	}
+
+	@Test
+	void busyQueueReturnsTicketThatLeadsToTheJob() {
+		JobQueue queue = queue(1);
+		JobQueue.Slot running = queue.acquire("bob", false).block();
+		JobSubmissionService service = serviceReturning(true, queue);
+
+		VideoResponse ticket = service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5)).block();
+
+		assertThat(JobSubmissionService.isTicket(ticket.getJobId())).isTrue();
+		assertThat(ticket.getStatus()).isEqualTo("waiting");
+		assertThat(ticket.getMessage()).contains("number 1 in the queue");
+		assertThat(upstreamCalls).hasValue(0);
+
+		queue.release(running);
+
+		StepVerifier.create(service.watchQueued(ticket.getJobId()).last())
+			.assertNext(created -> assertThat(created.getJobId()).isEqualTo("job-1"))
+			.verifyComplete();
+		assertThat(service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5)).block().getJobId())
+			.isEqualTo("job-1");
+	}
+
+	@Test
+	void idempotencyKeyCannotBeReusedForDifferentRequest() {
+		JobSubmissionService service = serviceReturning(true);
+
+		service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5), "key-1", null).block();
+		VideoResponse reused = service.submit(new VideoRequest("A dog on a skateboard", "1080x1080", 5), "key-1", null).block();
+
+		assertThat(reused.isSuccess()).isFalse();
+		assertThat(upstreamCalls).hasValue(1);
+	}
+
+	@Test
+	void failedSubmissionsAreNotRemembered() {
+		JobSubmissionService service = serviceReturning(false);
+
+		service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5)).block();
+		service.submit(new VideoRequest("A cat on a skateboard", "1080x1080", 5)).block();
+
+		assertThat(upstreamCalls).hasValue(2);
+	}
+
+}
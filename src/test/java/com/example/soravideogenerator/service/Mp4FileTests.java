@@ -0,0 +1,183 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.VideoMetadata;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class Mp4FileTests {
+
+	private static final byte[] FTYP = box("ftyp", "isom".getBytes(StandardCharsets.ISO_8859_1), new byte[4]);
+	private static final byte[] FIRST_SAMPLE = "first-sample".getBytes(StandardCharsets.ISO_8859_1);
+	private static final byte[] SECOND_SAMPLE = "second-sample".getBytes(StandardCharsets.ISO_8859_1);
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void movesMoovInFrontOfMediaAndShiftsChunkOffsets() throws IOException {
+		Path original = write("original.mp4", false, false);
+
+		Mp4File mp4 = Mp4File.read(original);
+		assertThat(mp4.isFaststart()).isFalse();
+
+		Path faststart = directory.resolve("faststart.mp4");
+		assertThat(mp4.writeFaststart(faststart)).isTrue();
+
+		byte[] bytes = Files.readAllBytes(faststart);
+		assertThat(bytes).hasSize((int) Files.size(original));
+		assertThat(Mp4File.read(faststart).isFaststart()).isTrue();
+		assertThat(typeAt(bytes, FTYP.length)).isEqualTo("moov");
+		assertSamplesAtChunkOffsets(bytes, "stco");
+	}
+
+	@Test
+	void shiftsSixtyFourBitChunkOffsets() throws IOException {
+		Path original = write("original.mp4", false, true);
+
+		Path faststart = directory.resolve("faststart.mp4");
+		assertThat(Mp4File.read(original).writeFaststart(faststart)).isTrue();
+
+		assertSamplesAtChunkOffsets(Files.readAllBytes(faststart), "co64");
+	}
+
+	@Test
+	void leavesFaststartFilesAlone() throws IOException {
+		Mp4File mp4 = Mp4File.read(write("faststart.mp4", true, false));
+
+		assertThat(mp4.isFaststart()).isTrue();
+		assertThat(mp4.writeFaststart(directory.resolve("copy.mp4"))).isFalse();
+		assertThat(directory.resolve("copy.mp4")).doesNotExist();
+	}
+
+	@Test
+	void readsMetadataFromMovieHeaderAndVideoTrack() throws IOException {
+		Path file = write("original.mp4", false, false);
+
+		VideoMetadata metadata = Mp4File.read(file).metadata();
+
+		assertThat(metadata.getDurationSeconds()).isEqualTo(8.0);
+		assertThat(metadata.getWidth()).isEqualTo(1920);
+		assertThat(metadata.getHeight()).isEqualTo(1080);
+		assertThat(metadata.getCodec()).isEqualTo("avc1");
+		assertThat(metadata.getBitrate()).isEqualTo(Files.size(file) * 8 / 8);
+		assertThat(metadata.isFaststart()).isFalse();
+	}
+
+	@Test
+	void rejectsFilesThatAreNotMp4() throws IOException {
+		Path file = directory.resolve("random.bin");
+		byte[] random = new byte[4096];
+		new Random(42).nextBytes(random);
+		Files.write(file, random);
+
+		assertThatThrownBy(() -> Mp4File.read(file)).isInstanceOf(IOException.class);
+	}
+
+	/**
+	 * Write ftyp, mdat and moov, with moov either before or after the media data
+	 */
+	private Path write(String name, boolean moovFirst, boolean wideOffsets) throws IOException {
+		byte[] media = concat(FIRST_SAMPLE, new byte[500], SECOND_SAMPLE, new byte[500]);
+		byte[] mdat = box("mdat", media);
+		// The chunk table has the same size either way, so offsets can be computed from a first draft
+		int moovSize = moov(new long[2], wideOffsets).length;
+		long mediaStart = FTYP.length + (moovFirst ? moovSize : 0) + 8;
+		byte[] moov = moov(new long[] {mediaStart, mediaStart + FIRST_SAMPLE.length + 500}, wideOffsets);
+
+		Path file = directory.resolve(name);
+		Files.write(file, moovFirst ? concat(FTYP, moov, mdat) : concat(FTYP, mdat, moov));
+		return file;
+	}
+
+	private static byte[] moov(long[] chunkOffsets, boolean wide) {
+		ByteBuffer mvhd = ByteBuffer.allocate(100);
+		mvhd.putInt(0).putInt(0).putInt(0).putInt(1000).putInt(8000);
+
+		ByteBuffer tkhd = ByteBuffer.allocate(84);
+		tkhd.position(76);
+		tkhd.putInt(1920 << 16).putInt(1080 << 16);
+
+		ByteBuffer hdlr = ByteBuffer.allocate(25);
+		hdlr.position(8);
+		hdlr.put("vide".getBytes(StandardCharsets.ISO_8859_1));
+
+		ByteBuffer stsd = ByteBuffer.allocate(8);
+		stsd.putInt(0).putInt(1);
+		byte[] sampleEntry = box("avc1", new byte[8]);
+
+		ByteBuffer offsets = ByteBuffer.allocate(8 + chunkOffsets.length * (wide ? 8 : 4));
+		offsets.putInt(0).putInt(chunkOffsets.length);
+		for (long offset : chunkOffsets) {
+			if (wide) {
+				offsets.putLong(offset);
+			} else {
+				offsets.putInt((int) offset);
+			}
+		}
+
+		byte[] stbl = box("stbl", box("stsd", stsd.array(), sampleEntry), box(wide ? "co64" : "stco", offsets.array()));
+		byte[] mdia = box("mdia", box("hdlr", hdlr.array()), box("minf", stbl));
+		return box("moov", box("mvhd", mvhd.array()), box("trak", box("tkhd", tkhd.array()), mdia));
+	}
+
+	private static void assertSamplesAtChunkOffsets(byte[] file, String table) {
+		int index = indexOf(file, table.getBytes(StandardCharsets.ISO_8859_1));
+		ByteBuffer buffer = ByteBuffer.wrap(file);
+		int count = buffer.getInt(index + 8);
+		assertThat(count).isEqualTo(2);
+		long[] offsets = new long[count];
+		for (int i = 0; i < count; i++) {
+			offsets[i] = table.equals("co64")
+				? buffer.getLong(index + 12 + i * 8)
+				: Integer.toUnsignedLong(buffer.getInt(index + 12 + i * 4));
+		}
+		assertThat(Arrays.copyOfRange(file, (int) offsets[0], (int) offsets[0] + FIRST_SAMPLE.length)).isEqualTo(FIRST_SAMPLE);
+		assertThat(Arrays.copyOfRange(file, (int) offsets[1], (int) offsets[1] + SECOND_SAMPLE.length)).isEqualTo(SECOND_SAMPLE);
+	}
+
+	private static String typeAt(byte[] file, int offset) {
+		return new String(file, offset + 4, 4, StandardCharsets.ISO_8859_1);
+	}
+
+	private static int indexOf(byte[] haystack, byte[] needle) {
+		outer:
+		for (int i = 0; i <= haystack.length - needle.length; i++) {
+			for (int j = 0; j < needle.length; j++) {
+				if (haystack[i + j] != needle[j]) {
+					continue outer;
+				}
+			}
+			return i;
+		}
+		throw new AssertionError("No " + new String(needle, StandardCharsets.ISO_8859_1) + " box");
+	}
+
+	private static byte[] box(String type, byte[]... payload) {
+		byte[] content = concat(payload);
+		return ByteBuffer.allocate(8 + content.length)
+			.putInt(8 + content.length)
+			.put(type.getBytes(StandardCharsets.ISO_8859_1))
+			.put(content)
+			.array();
+	}
+
+	private static byte[] concat(byte[]... parts) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.writeBytes(part);
+		}
+		return out.toByteArray();
+	}
+}
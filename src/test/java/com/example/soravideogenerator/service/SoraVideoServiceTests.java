@@ -0,0 +1,135 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.config.AzureOpenAIConfig;
+import com.example.soravideogenerator.model.VideoRequest;
+import com.example.soravideogenerator.model.VideoResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SoraVideoServiceTests {
+
+	private final BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+		.maxConcurrentCalls(2)
+		.maxWaitDuration(Duration.ZERO)
+		.build());
+
+	private EndpointPool endpointPool;
+
+	private SoraVideoService service(ExchangeFunction exchange) {
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		endpointPool = new EndpointPool(List.of(new EndpointPool.Endpoint("default", 1, null,
+				WebClient.builder().exchangeFunction(exchange), CircuitBreakerRegistry.ofDefaults(), false,
+				Duration.ofMinutes(10), Duration.ofSeconds(5), meterRegistry)));
+		JobRegistry jobRegistry = mock(JobRegistry.class);
+		when(jobRegistry.endpointOf(any())).thenReturn(Optional.empty());
+		AzureOpenAIConfig config = mock(AzureOpenAIConfig.class);
+		when(config.getApiVersion()).thenReturn("preview");
+		when(config.getCreateTimeout()).thenReturn(Duration.ofSeconds(5));
+		when(config.getDownloadTimeout()).thenReturn(Duration.ofSeconds(5));
+		return new SoraVideoService(endpointPool, jobRegistry, WebClient.builder().exchangeFunction(exchange).build(),
+				config, bulkheadRegistry, meterRegistry);
+	}
+
+	private static ExchangeFunction respond(HttpStatus status) {
+		return request -> Mono.just(ClientResponse.create(status).body("video bytes").build());
+	}
+
+	private int availablePermits() {
+		Bulkhead bulkhead = bulkheadRegistry.bulkhead(SoraVideoService.DOWNLOAD_CONTENT);
+		return bulkhead.getMetrics().getAvailableConcurrentCalls();
+	}
+
+	@Test
+	void throttledCreateIsRetriedWithoutBackingOffOnTopOfTheLimiter() {
+		AtomicInteger calls = new AtomicInteger();
+		SoraVideoService service = service(request -> Mono.just(calls.getAndIncrement() == 0
+				? ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).build()
+				: ClientResponse.create(HttpStatus.OK)
+					.header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+					.body("{\"id\":\"job-1\",\"status\":\"queued\"}")
+					.build()));
+
+		long start = System.nanoTime();
+		VideoResponse response = service.generateVideo(new VideoRequest("A cat on a skateboard", "1080x1080", 5),
+				endpointPool::choose).block();
+
+		assertThat(response.getJobId()).isEqualTo("job-1");
+		assertThat(calls).hasValue(2);
+		// A server error would back off for a second first; the limiter alone paces throttled calls
+		assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+	}
+
+	@Test
+	void permitIsReturnedWhenTheBodyIsRead() {
+		SoraVideoService service = service(respond(HttpStatus.OK));
+
+		List<byte[]> chunks = service.downloadVideoContent("job-1", "gen-1", null,
+				upstream -> upstream.getBody().map(buffer -> {
+					byte[] bytes = new byte[buffer.readableByteCount()];
+					buffer.read(bytes);
+					return bytes;
+				}))
+			.collectList()
+			.block();
+
+		assertThat(chunks).isNotEmpty();
+		assertThat(availablePermits()).isEqualTo(2);
+	}
+
+	@Test
+	void permitIsReturnedWhenTheBodyIsDropped() {
+		SoraVideoService service = service(respond(HttpStatus.OK));
+
+		service.downloadVideoContent("job-1", "gen-1", null, upstream -> Mono.empty()).blockLast();
+		service.downloadVideoContent("job-1", "gen-1", null, upstream -> Mono.error(new IllegalStateException("rejected")))
+			.onErrorResume(error -> Mono.empty())
+			.blockLast();
+
+		assertThat(availablePermits()).isEqualTo(2);
+	}
+
+	@Test
+	void permitIsReturnedWhenTheRelayIsCancelled() {
+		SoraVideoService service = service(respond(HttpStatus.OK));
+
+		Disposable relay = service.downloadVideoContent("job-1", "gen-1", null, upstream -> Mono.never()).subscribe();
+		assertThat(availablePermits()).isEqualTo(1);
+		relay.dispose();
+
+		assertThat(availablePermits()).isEqualTo(2);
+	}
+
+	@Test
+	void permitIsReturnedWhenTheUpstreamRejectsTheDownload() {
+		SoraVideoService service = service(respond(HttpStatus.NOT_FOUND));
+
+		assertThatThrownBy(() -> service.downloadVideoContent("job-1", "gen-1", null, upstream -> Mono.empty()).blockLast())
+			.isInstanceOf(WebClientResponseException.NotFound.class);
+
+		assertThat(availablePermits()).isEqualTo(2);
+	}
+}
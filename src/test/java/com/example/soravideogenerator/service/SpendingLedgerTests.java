@@ -0,0 +1,112 @@
+package com.example.soravideogenerator.service;
+
+import com.example.soravideogenerator.model.JobRecord;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class SpendingLedgerTests {
+
+	private SpendingLedger ledger(String globalLimit, String principalLimit) {
+		return new SpendingLedger(mock(JobRegistry.class), true, Duration.ofDays(1),
+				new BigDecimal(globalLimit), new BigDecimal(principalLimit), Duration.ofHours(6),
+				new SimpleMeterRegistry());
+	}
+
+	private static JobRecord finished(String jobId, String status) {
+		JobRecord record = new JobRecord();
+		record.setJobId(jobId);
+		record.setStatus(status);
+		return record;
+	}
+
+	@Test
+	void rejectsJobsOverThePrincipalBudget() {
+		SpendingLedger ledger = ledger("0", "10.00");
+
+		ledger.reserve("alice", new BigDecimal("6.00"));
+		assertThatThrownBy(() -> ledger.reserve("alice", new BigDecimal("6.00")))
+			.isInstanceOf(BudgetExceededException.class);
+		ledger.reserve("bob", new BigDecimal("6.00"));
+	}
+
+	@Test
+	void failedJobsAreRefundedAndSucceededJobsCharged() {
+		SpendingLedger ledger = ledger("10.00", "0");
+
+		ledger.bind(ledger.reserve("alice", new BigDecimal("4.00")), "job-1");
+		ledger.bind(ledger.reserve("alice", new BigDecimal("4.00")), "job-2");
+		ledger.settle(finished("job-1", "failed"));
+		ledger.settle(finished("job-2", "succeeded"));
+		ledger.release(ledger.reserve("alice", new BigDecimal("1.00")));
+
+		assertThat(ledger.status("alice").getGlobal().getSpent()).isEqualByComparingTo("4.00");
+		assertThat(ledger.status("alice").getGlobal().getReserved()).isEqualByComparingTo("0.00");
+		assertThat(ledger.status("alice").getGlobal().getRemaining()).isEqualByComparingTo("6.00");
+	}
+
+	@Test
+	void idlePrincipalsAreDroppedWhenTheWindowRolls() throws InterruptedException {
+		// Windows are aligned to the epoch, so start right after a boundary to roll exactly once
+		Thread.sleep(500 - System.currentTimeMillis() % 500);
+		SpendingLedger ledger = new SpendingLedger(mock(JobRegistry.class), true, Duration.ofMillis(500),
+				new BigDecimal("0"), new BigDecimal("10.00"), Duration.ofHours(6), new SimpleMeterRegistry());
+
+		ledger.bind(ledger.reserve("alice", new BigDecimal("4.00")), "job-1");
+		ledger.release(ledger.reserve("bob", new BigDecimal("4.00")));
+		ledger.status("carol");
+		assertThat(ledger.trackedPrincipals()).isEqualTo(2);
+
+		Thread.sleep(550);
+		ledger.sweep();
+
+		assertThat(ledger.trackedPrincipals()).isEqualTo(1);
+		assertThat(ledger.status("alice").getPrincipalUsage().getReserved()).isEqualByComparingTo("4.00");
+		assertThat(ledger.status("bob").getPrincipalUsage().getRemaining()).isEqualByComparingTo("10.00");
+	}
+
+	@Test
+	void concurrentReservationsNeverOverspend() throws InterruptedException {
+		StripedBudget budget = new StripedBudget(1_000_000, 8);
+		AtomicInteger granted = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			Thread thread = new Thread(() -> {
+				try {
+					start.await();
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < 1_000; i++) {
+					if (budget.tryReserve(700)) {
+						granted.incrementAndGet();
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		// 1,000,000 / 700 = 1428 reservations fit; the pooled path must find the crumbs left in other cells
+		assertThat(granted).hasValue(1_428);
+		assertThat(budget.remainingMicros()).isEqualTo(1_000_000 - 1_428 * 700);
+		assertThat(budget.reservedMicros()).isEqualTo(1_428 * 700);
+	}
+
+}
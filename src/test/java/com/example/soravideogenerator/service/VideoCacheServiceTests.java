@@ -0,0 +1,80 @@
+package com.example.soravideogenerator.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+class VideoCacheServiceTests {
+
+	@TempDir
+	Path directory;
+
+	private VideoCacheService cache() {
+		return new VideoCacheService(true, directory.toString(), DataSize.ofMegabytes(1), Duration.ofHours(1), true,
+				new SimpleMeterRegistry());
+	}
+
+	private static Flux<DataBuffer> content() {
+		return Flux.just("first ", "second ", "third").map(chunk ->
+				DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	private static String relay(Flux<DataBuffer> streamed) {
+		return DataBufferUtils.join(streamed)
+			.map(buffer -> buffer.toString(StandardCharsets.US_ASCII))
+			.block();
+	}
+
+	private long partialFiles() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.toString().endsWith(".part")).count();
+		}
+	}
+
+	@Test
+	void streamedVideoIsCached() throws IOException {
+		VideoCacheService cache = cache();
+
+		assertThat(relay(cache.cacheWhileStreaming("gen-1", null, 18, content()))).isEqualTo("first second third");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> cache.lookup("gen-1").isPresent());
+		assertThat(Files.readString(cache.lookup("gen-1").get().getPath())).isEqualTo("first second third");
+		assertThat(partialFiles()).isZero();
+	}
+
+	@Test
+	void failedDiskWriteKeepsStreamingAndDropsTheFile() throws IOException {
+		Path readOnly = Files.createFile(directory.resolve("read-only"));
+		VideoCacheService cache = new VideoCacheService(true, directory.toString(), DataSize.ofMegabytes(1),
+				Duration.ofHours(1), true, new SimpleMeterRegistry()) {
+			@Override
+			AsynchronousFileChannel openPartial(Path partial) throws IOException {
+				// Created so it can be cleaned up, but written through a channel that refuses writes
+				Files.createFile(partial);
+				return AsynchronousFileChannel.open(readOnly, StandardOpenOption.READ);
+			}
+		};
+
+		assertThat(relay(cache.cacheWhileStreaming("gen-1", null, 18, content()))).isEqualTo("first second third");
+
+		await().atMost(Duration.ofSeconds(5)).until(() -> partialFiles() == 0);
+		assertThat(cache.lookup("gen-1")).isEmpty();
+	}
+}